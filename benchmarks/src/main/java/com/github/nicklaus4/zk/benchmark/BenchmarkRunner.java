@@ -0,0 +1,28 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs benchmarks with the gc profiler and writes JSON results to compare across versions,
+ * to jmh-result.json or the file of -Djmh.result. other arguments are passed to JMH as is.
+ *
+ * @author weishibai
+ * @date 2026/10/18 6:05 PM
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("jmh.result", "jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
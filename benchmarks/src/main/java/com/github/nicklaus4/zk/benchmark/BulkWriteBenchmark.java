@@ -0,0 +1,91 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.model.ZkWriteResult;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * publishing many keys, a setToZk loop vs pipelined vs transactional bulk writes.
+ * nodes are created by the first invocation and updated by later ones.
+ *
+ * @author weishibai
+ * @date 2026/10/17 7:30 PM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BulkWriteBenchmark {
+
+    @Param({"1000"})
+    private int keys;
+
+    private ZkServerState zk;
+
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        this.zk = zk;
+    }
+
+    @Benchmark
+    public int perKeyLoop() {
+        List<ZkWrite> writes = writes("loop");
+        for (ZkWrite write : writes) {
+            ZkNodeUtils.setToZk(zk.curator(), write.getPath(), write.getData());
+        }
+        return writes.size();
+    }
+
+    @Benchmark
+    public int pipelined() {
+        return succeeded(ZkNodeUtils.setAllToZk(zk.curator(), writes("pipelined")));
+    }
+
+    @Benchmark
+    public int transactional() {
+        return succeeded(ZkNodeUtils.setAllToZkInTransactions(zk.curator(), writes("transactional")));
+    }
+
+    private List<ZkWrite> writes(String root) {
+        round++;
+        List<ZkWrite> writes = new ArrayList<>(keys);
+        for (int i = 0; i < keys; i++) {
+            writes.add(ZkWrite.of("/benchmark/bulk/" + root + "/n" + i, ("value-" + round + "-" + i).getBytes(UTF_8)));
+        }
+        return writes;
+    }
+
+    private static int succeeded(List<ZkWriteResult> results) {
+        int succeeded = 0;
+        for (ZkWriteResult result : results) {
+            if (!result.isSuccess()) {
+                throw new IllegalStateException("write of " + result.getPath() + " failed: " + result.getCode());
+            }
+            succeeded++;
+        }
+        return succeeded;
+    }
+}
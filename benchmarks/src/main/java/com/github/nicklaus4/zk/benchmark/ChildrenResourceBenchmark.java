@@ -0,0 +1,166 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import com.github.nicklaus4.zk.ZkChildrenResource;
+import com.github.nicklaus4.zk.ZkTreeNodeResource;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * a flat directory of children behind ZkChildrenResource vs ZkTreeNodeResource, full and incremental.
+ * measures one child update until the resource is rebuilt, run with -prof gc for the allocation per
+ * event. the heap retained by each resource is reported as the secondary result retainedBytes.
+ *
+ * @author weishibai
+ * @date 2026/10/18 3:20 PM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChildrenResourceBenchmark {
+
+    private static final String PATH = "/benchmark/children";
+
+    @Param({"10000"})
+    private int children;
+
+    @Param({"children", "tree", "incrementalTree"})
+    private String kind;
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private ZkServerState zk;
+
+    private AsyncResourceLoader<Integer> resource;
+
+    private int round;
+
+    /**
+     * used heap grown by building the resource, measured once per trial
+     */
+    private long retainedBytes;
+
+    /**
+     * retained heap as a secondary result, next to the score of every kind
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+
+        public long retainedBytes;
+
+        private boolean reported;
+
+        @Setup(Level.Iteration)
+        public void report(ChildrenResourceBenchmark benchmark, IterationParams iteration) {
+            // events are summed over the measurement iterations, count the one-off size in the first
+            retainedBytes = 0;
+            if (!reported && iteration.getType() == IterationType.MEASUREMENT) {
+                retainedBytes = benchmark.retainedBytes;
+                reported = true;
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        this.zk = zk;
+        List<ZkWrite> writes = new ArrayList<>(children);
+        for (int i = 0; i < children; i++) {
+            writes.add(ZkWrite.of(PATH + "/instance-" + i, ("10.0.0." + i + ":8080").getBytes(UTF_8)));
+        }
+        ZkNodeUtils.setAllToZk(zk.curator(), writes);
+
+        long before = usedHeap();
+        resource = newResource();
+        resource.get();
+        retainedBytes = Math.max(0, usedHeap() - before);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((Closeable) resource).close();
+    }
+
+    @Benchmark
+    public Integer updateOneChild(Retained retained) {
+        int before = builds.get();
+        ZkNodeUtils.setToZk(zk.curator(), PATH + "/instance-0", ("10.0.0.0:" + round++).getBytes(UTF_8));
+        while (builds.get() == before) {
+            LockSupport.parkNanos(10_000);
+        }
+        return resource.get();
+    }
+
+    private AsyncResourceLoader<Integer> newResource() {
+        switch (kind) {
+            case "children":
+                return ZkChildrenResource.<Integer>newBuilder()
+                        .path(PATH)
+                        .curator(zk.curator())
+                        .factory(c -> {
+                            builds.incrementAndGet();
+                            return c.size();
+                        })
+                        .build();
+            case "tree":
+                return ZkTreeNodeResource.<Integer>newBuilder()
+                        .path(PATH)
+                        .curator(zk.curator())
+                        .factory(map -> {
+                            builds.incrementAndGet();
+                            return map.size();
+                        })
+                        .build();
+            case "incrementalTree":
+                return ZkTreeNodeResource.<Integer>newBuilder()
+                        .path(PATH)
+                        .curator(zk.curator())
+                        .incremental()
+                        .factory(map -> {
+                            builds.incrementAndGet();
+                            return map.size();
+                        })
+                        .build();
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.factory.ZkClientCachedFactory;
+
+/**
+ * ZkClientCachedFactory.get() of an already connected client, i.e. the lookup alone
+ *
+ * @author weishibai
+ * @date 2026/10/18 5:45 PM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientFactoryBenchmark {
+
+    private String connectString;
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        connectString = zk.connectString();
+        ZkClientCachedFactory.get(connectString);
+        ZkClientCachedFactory.get(connectString, "benchmark");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CuratorFramework get1Thread() {
+        return ZkClientCachedFactory.get(connectString);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public CuratorFramework get16Threads() {
+        return ZkClientCachedFactory.get(connectString);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public CuratorFramework getNamespace16Threads() {
+        return ZkClientCachedFactory.get(connectString, "benchmark");
+    }
+}
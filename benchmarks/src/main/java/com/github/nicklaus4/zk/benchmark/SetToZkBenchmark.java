@@ -0,0 +1,70 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * ZkNodeUtils.setToZk throughput of existing nodes by payload size, one node per thread
+ *
+ * @author weishibai
+ * @date 2026/10/18 5:55 PM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SetToZkBenchmark {
+
+    @Param({"128", "16384"})
+    private int payloadBytes;
+
+    private ZkServerState zk;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        this.zk = zk;
+        this.payload = new byte[payloadBytes];
+    }
+
+    @State(Scope.Thread)
+    public static class Node {
+
+        private String path;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            path = "/benchmark/set/" + Thread.currentThread().getId();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void set1Thread(Node node) {
+        ZkNodeUtils.setToZk(zk.curator(), node.path, payload);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void set8Threads(Node node) {
+        ZkNodeUtils.setToZk(zk.curator(), node.path, payload);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.ZkTreeNodeResource;
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * latency from one leaf update to the rebuilt ZkTreeNodeResource by tree size. the full mode walks
+ * the TreeCache on every change, incremental applies the event to a persistent map instead. both
+ * include the zk write and event delivery, see {@link TreeWalkBenchmark} for the walk alone.
+ *
+ * @author weishibai
+ * @date 2026/10/18 5:30 PM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeRefreshBenchmark {
+
+    private static final int FANOUT = 100;
+
+    @Param({"1000", "10000", "100000"})
+    private int nodes;
+
+    @Param({"full", "incremental"})
+    private String mode;
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private ZkServerState zk;
+
+    private ZkTreeNodeResource<Integer> resource;
+
+    private String path;
+
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        this.zk = zk;
+        this.path = "/benchmark/tree-" + nodes;
+        List<ZkWrite> writes = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            writes.add(ZkWrite.of(leaf(i), ("value-" + i).getBytes(UTF_8)));
+        }
+        ZkNodeUtils.setAllToZk(zk.curator(), writes);
+
+        ZkTreeNodeResource.Builder<Integer> builder = ZkTreeNodeResource.<Integer>newBuilder()
+                .path(path)
+                .curator(zk.curator())
+                .factory(map -> {
+                    builds.incrementAndGet();
+                    return map.size();
+                });
+        if ("incremental".equals(mode)) {
+            builder = builder.incremental();
+        }
+        resource = builder.build();
+        resource.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resource.close();
+    }
+
+    @Benchmark
+    public Integer refreshAfterUpdate() {
+        int before = builds.get();
+        ZkNodeUtils.setToZk(zk.curator(), leaf(round % nodes), ("round-" + round++).getBytes(UTF_8));
+        while (builds.get() == before) {
+            LockSupport.parkNanos(10_000);
+        }
+        return resource.get();
+    }
+
+    private String leaf(int i) {
+        return path + "/g" + i / FANOUT + "/n" + i % FANOUT;
+    }
+}
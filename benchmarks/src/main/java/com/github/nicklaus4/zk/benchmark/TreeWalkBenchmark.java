@@ -0,0 +1,86 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.ZkTreeNodeResource;
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * cost of the full rebuild ZkTreeNodeResource does on every change without incremental mode, over a
+ * TreeCache that already synced, so no zk round trip or event is measured. the factory only counts
+ * the nodes, leaving the walk itself; gc.alloc.rate.norm under -prof gc is what a refresh allocates.
+ * it hands back the same instance every time, so no replaced value is queued for cleanup.
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:20 PM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeWalkBenchmark {
+
+    private static final int FANOUT = 100;
+
+    private static final Object BUILT = new Object();
+
+    @Param({"1000", "10000", "100000"})
+    private int nodes;
+
+    private ZkTreeNodeResource<Object> resource;
+
+    private volatile int walked;
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        String path = "/benchmark/walk-" + nodes;
+        List<ZkWrite> writes = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            writes.add(ZkWrite.of(path + "/g" + i / FANOUT + "/n" + i % FANOUT, ("value-" + i).getBytes(UTF_8)));
+        }
+        ZkNodeUtils.setAllToZk(zk.curator(), writes);
+
+        resource = ZkTreeNodeResource.newBuilder()
+                .path(path)
+                .curator(zk.curator())
+                .factory(map -> {
+                    walked = map.size();
+                    return BUILT;
+                })
+                .build();
+        // waits for the TreeCache to sync
+        resource.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resource.close();
+    }
+
+    @Benchmark
+    public int walk() throws Exception {
+        resource.rebuildFully();
+        return walked;
+    }
+}
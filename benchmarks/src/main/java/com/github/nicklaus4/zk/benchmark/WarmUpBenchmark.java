@@ -0,0 +1,108 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.ZkNodeResource;
+import com.github.nicklaus4.zk.factory.ZkResourceWarmer;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * boot time of many node resources, one by one vs bulk warm-up. both variants stop once every
+ * resource is watched, i.e. its NodeCache is attached, so the background attach of the bulk path is
+ * measured and no attach is left running when the invocation tears the resources down.
+ *
+ * @author weishibai
+ * @date 2026/10/17 11:50 AM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WarmUpBenchmark {
+
+    private static final String ROOT = "/benchmark/warmup";
+
+    @Param({"1000"})
+    private int paths;
+
+    private ZkServerState zk;
+
+    private List<ZkNodeResource<String>> resources;
+
+    @Setup(Level.Trial)
+    public void writeNodes(ZkServerState zk) {
+        this.zk = zk;
+        for (int i = 0; i < paths; i++) {
+            ZkNodeUtils.setToZk(zk.curator(), ROOT + "/n" + i, ("value-" + i).getBytes(UTF_8));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void buildResources() {
+        resources = new ArrayList<>(paths);
+        for (int i = 0; i < paths; i++) {
+            resources.add(ZkNodeResource.<String>newBuilder()
+                    .withNodeFactory(ROOT + "/n" + i, zk.curator())
+                    .withBuildFactory(bytes -> new String(bytes, UTF_8))
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeResources() {
+        resources.forEach(ZkNodeResource::closeQuietly);
+    }
+
+    @Benchmark
+    public int sequentialGet() {
+        int size = 0;
+        for (ZkNodeResource<String> resource : resources) {
+            size += resource.get().length();
+        }
+        awaitWatched();
+        return size;
+    }
+
+    @Benchmark
+    public int bulkWarmUp() {
+        ZkResourceWarmer.newBuilder()
+                .client(zk.curator())
+                .build()
+                .warmUp(resources)
+                .join();
+        int size = 0;
+        for (ZkNodeResource<String> resource : resources) {
+            size += resource.get().length();
+        }
+        awaitWatched();
+        return size;
+    }
+
+    private void awaitWatched() {
+        CompletableFuture.allOf(resources.stream()
+                .map(ZkNodeResource::whenWatched)
+                .toArray(CompletableFuture[]::new))
+                .join();
+    }
+}
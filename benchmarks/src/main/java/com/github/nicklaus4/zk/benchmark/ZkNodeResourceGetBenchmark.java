@@ -0,0 +1,80 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nicklaus4.zk.ZkNodeResource;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * steady-state ZkNodeResource.get() throughput by reader thread count
+ *
+ * @author weishibai
+ * @date 2026/10/16 10:20 AM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZkNodeResourceGetBenchmark {
+
+    private static final String PATH = "/benchmark/get";
+
+    private ZkNodeResource<String> resource;
+
+    @Setup(Level.Trial)
+    public void setUp(ZkServerState zk) {
+        ZkNodeUtils.setToZk(zk.curator(), PATH, "value".getBytes(UTF_8));
+        resource = ZkNodeResource.<String>newBuilder()
+                .withNodeFactory(PATH, zk.curator())
+                .withBuildFactory(bytes -> new String(bytes, UTF_8))
+                .build();
+        resource.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        resource.closeQuietly();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String get1Thread() {
+        return resource.get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String get4Threads() {
+        return resource.get();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String get16Threads() {
+        return resource.get();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String get64Threads() {
+        return resource.get();
+    }
+}
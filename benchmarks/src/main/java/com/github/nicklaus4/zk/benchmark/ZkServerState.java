@@ -0,0 +1,51 @@
+package com.github.nicklaus4.zk.benchmark;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * in-process zk server shared by one benchmark trial
+ *
+ * @author weishibai
+ * @date 2026/10/16 10:12 AM
+ */
+@State(Scope.Benchmark)
+public class ZkServerState {
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        if (curator != null) {
+            curator.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    public String connectString() {
+        return server.getConnectString();
+    }
+
+    public CuratorFramework curator() {
+        return curator;
+    }
+}
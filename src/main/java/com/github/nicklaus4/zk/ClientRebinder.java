@@ -0,0 +1,120 @@
+package com.github.nicklaus4.zk;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.executor.ResourceExecutors;
+import com.github.nicklaus4.zk.factory.ZkClientPool;
+
+/**
+ * moves the caches of a resource to a fresh client once a {@link ZkClientPool} replaced the one they
+ * run on, a cache on the closed client would never update again.
+ *
+ * listens only between {@link #register()}, once a cache is attached, and {@link #unregister()}, so a
+ * resource never loaded or never closed is not held by the pool. when the client supplier of the
+ * resource hands out the stopped client again, e.g. a fixed client, the caches are kept as they are.
+ *
+ * @author weishibai
+ * @date 2026/10/18 9:50 PM
+ */
+final class ClientRebinder implements BiConsumer<CuratorFramework, CuratorFramework> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientRebinder.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 60 * 1000;
+
+    private final String name;
+
+    private final Supplier<CuratorFramework> bound;
+
+    private final Supplier<CuratorFramework> source;
+
+    private final Runnable rebind;
+
+    private boolean registered;
+
+    private volatile boolean unregistered;
+
+    /**
+     * set once the stopped client could not be replaced, later checks stay quiet
+     */
+    private volatile boolean keptReported;
+
+    private ClientRebinder(String name, Supplier<CuratorFramework> bound, Supplier<CuratorFramework> source,
+            Runnable rebind) {
+        this.name = name;
+        this.bound = bound;
+        this.source = source;
+        this.rebind = rebind;
+    }
+
+    /**
+     * @param bound client the caches run on, null while none is attached
+     * @param source client supplier the resource builds its caches from
+     * @param rebind run on {@link ResourceExecutors#bootstrap()} once that client is stopped and source
+     * hands out another one, retried with backoff while it throws
+     */
+    static ClientRebinder create(String name, Supplier<CuratorFramework> bound, Supplier<CuratorFramework> source,
+            Runnable rebind) {
+        return new ClientRebinder(name, bound, source, rebind);
+    }
+
+    /**
+     * start listening to the pool, called whenever a cache is attached. does nothing once registered
+     * or unregistered.
+     */
+    synchronized void register() {
+        if (registered || unregistered) {
+            return;
+        }
+        registered = true;
+        ZkClientPool.addGlobalRebuildListener(this);
+    }
+
+    @Override
+    public void accept(CuratorFramework dead, CuratorFramework fresh) {
+        // the pool closed the dead client already, a namespace facade reports the state of its client
+        CuratorFramework client = bound.get();
+        if (client == null || client.getState() != CuratorFrameworkState.STOPPED) {
+            return;
+        }
+        ResourceExecutors.bootstrap().execute(() -> rebind(client, 0));
+    }
+
+    private void rebind(CuratorFramework stopped, int attempt) {
+        if (unregistered) {
+            return;
+        }
+        try {
+            CuratorFramework next = source.get();
+            if (next == stopped || next.getState() == CuratorFrameworkState.STOPPED) {
+                if (!keptReported) {
+                    keptReported = true;
+                    LOGGER.error("zk client of {} was stopped and its supplier has no other one, keep its caches. "
+                            + "build it from a client supplier to follow replaced clients.", name);
+                }
+                return;
+            }
+            LOGGER.warn("zk client of {} was replaced, rebind its caches.", name);
+            rebind.run();
+        } catch (Throwable e) {
+            long delayMs = Math.min(MAX_RETRY_BACKOFF_MS, 1000L << Math.min(attempt, 16));
+            LOGGER.error("fail to rebind caches of {}, retry in {}ms", name, delayMs, e);
+            ResourceExecutors.bootstrap().schedule(() -> rebind(stopped, attempt + 1), delayMs, MILLISECONDS);
+        }
+    }
+
+    synchronized void unregister() {
+        unregistered = true;
+        if (registered) {
+            ZkClientPool.removeGlobalRebuildListener(this);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.nicklaus4.zk;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.NodeCacheListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.factory.ZkClientPool;
+
+/**
+ * one NodeCache per client and path shared by every holder, closed with the last release
+ *
+ * @author weishibai
+ * @date 2026/10/18 6:40 PM
+ */
+final class SharedNodeCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedNodeCache.class);
+
+    @GuardedBy("CACHES")
+    private static final Map<Key, SharedNodeCache> CACHES = new HashMap<>();
+
+    static {
+        ZkClientPool.addGlobalRebuildListener((dead, fresh) -> evictStopped());
+    }
+
+    private final Key key;
+
+    @GuardedBy("CACHES")
+    private int refs;
+
+    @GuardedBy("this")
+    private volatile NodeCache cache;
+
+    private SharedNodeCache(Key key) {
+        this.key = key;
+    }
+
+    /**
+     * started and synced, every acquire needs a {@link #release()}
+     */
+    static SharedNodeCache acquire(CuratorFramework client, String path) {
+        SharedNodeCache shared;
+        synchronized (CACHES) {
+            shared = CACHES.computeIfAbsent(new Key(client, path), SharedNodeCache::new);
+            shared.refs++;
+        }
+        try {
+            shared.ensureStarted();
+        } catch (RuntimeException e) {
+            shared.release();
+            throw e;
+        }
+        return shared;
+    }
+
+    /**
+     * caches of a replaced client are never handed out again, each closes once its holders, which
+     * rebind to the replacement, released it
+     */
+    private static void evictStopped() {
+        synchronized (CACHES) {
+            CACHES.values().removeIf(shared -> {
+                if (shared.key.client.getState() == CuratorFrameworkState.STOPPED) {
+                    LOGGER.info("evict node cache of {} on a replaced client.", shared.key.path);
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (cache != null) {
+            return;
+        }
+        if (key.client.getState() != CuratorFrameworkState.STARTED) {
+            key.client.start();
+        }
+        NodeCache building = new NodeCache(key.client, key.path);
+        try {
+            building.start();
+            // not safety check but do it better. due to IE breaks in rebuild.
+            if (Thread.currentThread().isInterrupted()) {
+                Thread.interrupted();
+            }
+            building.rebuild();
+            cache = building;
+        } catch (Throwable e) {
+            closeQuietly(building);
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    String getPath() {
+        return key.path;
+    }
+
+    @Nullable
+    ChildData getCurrentData() {
+        NodeCache current = cache;
+        return current == null ? null : current.getCurrentData();
+    }
+
+    /**
+     * @return removes the listener
+     */
+    Runnable addListener(NodeCacheListener listener) {
+        NodeCache current = cache;
+        current.getListenable().addListener(listener);
+        return () -> current.getListenable().removeListener(listener);
+    }
+
+    void release() {
+        synchronized (CACHES) {
+            if (--refs > 0) {
+                return;
+            }
+            CACHES.remove(key, this);
+        }
+        synchronized (this) {
+            if (cache != null) {
+                closeQuietly(cache);
+                cache = null;
+            }
+        }
+    }
+
+    private void closeQuietly(NodeCache nodeCache) {
+        try {
+            nodeCache.close();
+        } catch (Throwable e) {
+            LOGGER.warn("fail to close node cache of {}", key.path, e);
+        }
+    }
+
+    /**
+     * clients compared by identity, each has its own session and namespace
+     */
+    private static final class Key {
+
+        private final CuratorFramework client;
+
+        private final String path;
+
+        Key(CuratorFramework client, String path) {
+            this.client = client;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return client == other.client && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(client), path);
+        }
+    }
+}
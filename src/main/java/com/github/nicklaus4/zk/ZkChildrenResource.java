@@ -0,0 +1,632 @@
+package com.github.nicklaus4.zk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static java.lang.Thread.holdsLock;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.apache.curator.framework.recipes.cache.PathChildrenCache.StartMode.POST_INITIALIZED_EVENT;
+import static org.apache.curator.utils.ThreadUtils.newThreadFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.executor.AsyncInitializer;
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.github.nicklaus4.zk.executor.EventCoalescer;
+import com.github.nicklaus4.zk.executor.KeyedSerialExecutor;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
+import com.github.nicklaus4.zk.model.SortedChildren;
+import com.github.nicklaus4.zk.model.ThrowableFunction;
+
+/**
+ * resource built from the direct children of one node, e.g. a directory of service instances.
+ * watches a single level with a PathChildrenCache instead of a recursive TreeCache.
+ *
+ * @author weishibai
+ * @date 2026/10/18 2:40 PM
+ */
+public class ZkChildrenResource<E> implements AsyncResourceLoader<E>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZkChildrenResource.class);
+
+    private final Object lock = new Object();
+
+    private final ThrowableFunction<SortedChildren, E, Exception> factory;
+
+    private final Predicate<E> cleanup;
+
+    private final long waitStopPeriod;
+
+    private final CleanupScheduler cleanupScheduler;
+
+    private final BiConsumer<E, E> onResourceChange;
+
+    private final Supplier<CuratorFramework> curatorFrameworkFactory;
+
+    private final String path;
+
+    private final boolean cacheData;
+
+    private final EventCoalescer coalescer;
+
+    private final KeyedSerialExecutor keyedEventExecutor;
+
+    private final AsyncInitializer<E> asyncInitializer = new AsyncInitializer<>();
+
+    private final ZkResourceMetrics metrics;
+
+    private final String metricsName;
+
+    private final long createdNanos = System.nanoTime();
+
+    @GuardedBy("lock")
+    private PathChildrenCache childrenCache;
+
+    /**
+     * client childrenCache runs on
+     */
+    @GuardedBy("lock")
+    private volatile CuratorFramework childrenClient;
+
+    private final ClientRebinder rebinder;
+
+    /**
+     * also runs coalesced rebuilds
+     */
+    @GuardedBy("lock")
+    private volatile ExecutorService eventExecutor;
+
+    /**
+     * maintained from events once the cache initialized
+     */
+    @GuardedBy("lock")
+    private volatile SortedChildren children;
+
+    /**
+     * children changed since the resource was built
+     */
+    @GuardedBy("lock")
+    private boolean dirty;
+
+    @GuardedBy("lock")
+    private boolean firstValuePublished;
+
+    @GuardedBy("lock")
+    private long mzxid;
+
+    @GuardedBy("lock")
+    private volatile E resource;
+
+    @GuardedBy("lock")
+    private volatile boolean closed;
+
+    public static <E> Builder<E> newBuilder() {
+        return new Builder<>();
+    }
+
+    public ZkChildrenResource(Builder<E> builder) {
+        this.factory = builder.factory;
+        this.cleanup = builder.cleanup;
+        this.waitStopPeriod = builder.waitStopPeriod;
+        this.cleanupScheduler = builder.cleanupScheduler;
+        this.onResourceChange = builder.onResourceChange;
+        this.curatorFrameworkFactory = builder.curatorFrameworkFactory;
+        this.path = builder.path;
+        this.cacheData = builder.cacheData;
+        this.keyedEventExecutor = builder.keyedEventExecutor;
+        this.metrics = builder.metrics;
+        this.metricsName = builder.metricsName != null ? builder.metricsName : builder.path;
+        this.rebinder = ClientRebinder.create(metricsName, () -> childrenClient, curatorFrameworkFactory,
+                this::rebind);
+        this.coalescer = builder.coalesceWindow > 0 ? new EventCoalescer(builder.coalesceScheduler,
+                command -> eventExecutor.execute(command), builder.coalesceWindow, builder.coalesceMaxStaleness,
+                builder.coalesceUnit, () -> {
+                    try {
+                        rebuild();
+                    } catch (Exception e) {
+                        LOGGER.error("fail to rebuild children resource, path:{}", path, e);
+                    }
+                }) : null;
+    }
+
+    private void ensureChildrenCacheReady() {
+        assert holdsLock(lock);
+        if (childrenCache != null) {
+            return;
+        }
+        eventExecutor = keyedEventExecutor != null ? keyedEventExecutor.lane(path)
+                : newSingleThreadExecutor(newThreadFactory("PathChildrenCache-[" + path + "]"));
+        try {
+            CountDownLatch countDownLatch = new CountDownLatch(1);
+            CuratorFramework client = curatorFrameworkFactory.get();
+            PathChildrenCache target = new PathChildrenCache(client, path, cacheData, false, eventExecutor);
+            target.getListenable().addListener((c, event) -> {
+                if (target != childrenCache) {
+                    // left over from a cache replaced by rebind
+                    return;
+                }
+                if (event.getType() == PathChildrenCacheEvent.Type.INITIALIZED) {
+                    countDownLatch.countDown();
+                    return;
+                }
+                if (countDownLatch.getCount() > 0) {
+                    LOGGER.debug("ignore event before initialized:{}=>{}", event.getType(), path);
+                    return;
+                }
+                if (event.getData() == null) {
+                    LOGGER.info("ignore event:{} for children of:{}", event.getType(), path);
+                    return;
+                }
+                metrics.onEventReceived(metricsName);
+                apply(event);
+                if (coalescer != null) {
+                    coalescer.submit();
+                } else {
+                    rebuild();
+                }
+            });
+            childrenCache = target;
+            childrenClient = client;
+            target.start(POST_INITIALIZED_EVENT);
+            awaitUninterruptibly(countDownLatch);
+            rebinder.register();
+            // later events wait for the lock and apply on top of this
+            children = SortedChildren.copyOf(target.getCurrentData());
+        } catch (Exception e) {
+            if (childrenCache != null) {
+                try {
+                    childrenCache.close();
+                } catch (Exception closeError) {
+                    e.addSuppressed(closeError);
+                }
+                childrenCache = null;
+                childrenClient = null;
+            }
+            eventExecutor.shutdownNow();
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * move to a PathChildrenCache on the replacement client and rebuild from the children it synced
+     */
+    private void rebind() {
+        synchronized (lock) {
+            if (closed || resource == null) {
+                return;
+            }
+            if (childrenCache != null) {
+                closeChildrenCache();
+            }
+            ensureChildrenCacheReady();
+            mzxid = maxMzxid(children);
+            dirty = true;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            LOGGER.error("fail to rebuild children resource after rebind, path:{}", path, e);
+        }
+    }
+
+    private void closeChildrenCache() {
+        assert holdsLock(lock);
+        try {
+            childrenCache.close();
+        } catch (Exception e) {
+            LOGGER.warn("fail to close children cache of {}", path, e);
+        }
+        childrenCache = null;
+        childrenClient = null;
+        eventExecutor.shutdown();
+    }
+
+    private void apply(PathChildrenCacheEvent event) {
+        ChildData data = event.getData();
+        synchronized (lock) {
+            switch (event.getType()) {
+                case CHILD_ADDED:
+                case CHILD_UPDATED:
+                    children = children.with(data);
+                    if (data.getStat() != null) {
+                        mzxid = Math.max(mzxid, data.getStat().getMzxid());
+                    }
+                    break;
+                case CHILD_REMOVED:
+                    children = children.without(SortedChildren.nameOf(data.getPath()));
+                    break;
+                default:
+                    return;
+            }
+            dirty = true;
+        }
+    }
+
+    private void rebuild() throws Exception {
+        E oldResource;
+        synchronized (lock) {
+            if (closed || resource == null || !dirty) {
+                return;
+            }
+            oldResource = resource;
+            resource = doFactory();
+            published();
+            metrics.onEventApplied(metricsName);
+            cleanup(resource, oldResource);
+        }
+    }
+
+    private E doFactory() throws Exception {
+        assert holdsLock(lock);
+        final SortedChildren current = children;
+        E built = timed(() -> factory.apply(current));
+        dirty = false;
+        return built;
+    }
+
+    private E timed(Callable<E> build) throws Exception {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final E built = build.call();
+            success = true;
+            return built;
+        } finally {
+            metrics.onFactory(metricsName, System.nanoTime() - start, success);
+        }
+    }
+
+    private void published() {
+        assert holdsLock(lock);
+        if (!firstValuePublished) {
+            firstValuePublished = true;
+            metrics.onFirstValue(metricsName, System.nanoTime() - createdNanos);
+        }
+        metrics.onVersion(metricsName, mzxid);
+    }
+
+    private static long maxMzxid(Collection<ChildData> children) {
+        long max = 0;
+        for (ChildData data : children) {
+            if (data.getStat() != null) {
+                max = Math.max(max, data.getStat().getMzxid());
+            }
+        }
+        return max;
+    }
+
+    private void cleanup(E currentResource, E oldResource) {
+        if (oldResource != null) {
+            if (currentResource != oldResource) {
+                cleanupScheduler.submit("[" + oldResource.getClass().getSimpleName() + "] of " + path,
+                        () -> cleanup.test(oldResource), waitStopPeriod, () -> {
+                            if (onResourceChange != null) {
+                                onResourceChange.accept(currentResource, oldResource);
+                            }
+                        }, nanos -> metrics.onCleanupQueued(metricsName, nanos));
+                return;
+            }
+        }
+
+        if (onResourceChange != null) {
+            onResourceChange.accept(currentResource, oldResource);
+        }
+    }
+
+    /**
+     * child events that were folded into another rebuild, always 0 without coalescing
+     */
+    public long getCoalescedEventCount() {
+        return coalescer == null ? 0 : coalescer.getCoalescedEventCount();
+    }
+
+    /**
+     * children the current resource was built from, or newer ones not yet applied
+     */
+    @Nullable
+    public SortedChildren currentChildren() {
+        return children;
+    }
+
+    @Override
+    public E get() {
+        metrics.onGet(metricsName);
+        if (closed) {
+            throw new IllegalStateException("zkNode has been closed.");
+        }
+
+        if (null == resource) {
+            synchronized (lock) {
+                if (closed) {
+                    throw new IllegalStateException("zkNode has been closed.");
+                }
+
+                if (null == resource) {
+                    ensureChildrenCacheReady();
+                    try {
+                        mzxid = maxMzxid(children);
+                        resource = doFactory();
+                        published();
+                        if (onResourceChange != null) {
+                            onResourceChange.accept(resource, null);
+                        }
+                    } catch (Exception e) {
+                        throwIfUnchecked(e);
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }
+        return resource;
+    }
+
+    @Override
+    public CompletableFuture<E> getAsync() {
+        if (closed) {
+            CompletableFuture<E> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("zkNode has been closed."));
+            return failed;
+        }
+
+        E current = resource;
+        if (current != null) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return asyncInitializer.load(this::get);
+    }
+
+    public static class Builder<E> {
+
+        private ThrowableFunction<SortedChildren, E, Exception> factory;
+
+        private String path;
+
+        private boolean cacheData = true;
+
+        private Supplier<CuratorFramework> curatorFrameworkFactory;
+
+        private Predicate<E> cleanup;
+
+        private long waitStopPeriod;
+
+        private CleanupScheduler cleanupScheduler;
+
+        private KeyedSerialExecutor keyedEventExecutor;
+
+        private BiConsumer<E, E> onResourceChange;
+
+        private long coalesceWindow;
+
+        private long coalesceMaxStaleness;
+
+        private TimeUnit coalesceUnit;
+
+        private ScheduledExecutorService coalesceScheduler;
+
+        private ZkResourceMetrics metrics;
+
+        private String metricsName;
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> path(String path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * @param factory gets an immutable snapshot it may retain
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> factory(ThrowableFunction<SortedChildren, E, Exception> factory) {
+            this.factory = factory;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> childDataFactory(ThrowableFunction<Collection<ChildData>, E, Exception> factory) {
+            checkNotNull(factory);
+            return factory(factory::apply);
+        }
+
+        /**
+         * keep only stats of the children, for factories that need names or versions only
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> withoutData() {
+            this.cacheData = false;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> onResourceChange(BiConsumer<E, E> callback) {
+            this.onResourceChange = callback;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> curator(Supplier<CuratorFramework> curatorFactory) {
+            this.curatorFrameworkFactory = curatorFactory;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> curator(CuratorFramework curator) {
+            this.curatorFrameworkFactory = () -> curator;
+            return this;
+        }
+
+        /**
+         * ms to wait before the first cleanup attempt of a replaced resource,
+         * a failed attempt is retried by the cleanup scheduler with backoff from there
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> withWaitStopPeriod(long waitStopPeriod) {
+            this.waitStopPeriod = waitStopPeriod;
+            return this;
+        }
+
+        /**
+         * collapse child events within window into one factory call over the latest children,
+         * a continuous stream of events still rebuilds at least every maxStaleness
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> coalesce(long window, long maxStaleness, @Nonnull TimeUnit unit) {
+            return coalesce(window, maxStaleness, unit, null);
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> coalesce(long window, long maxStaleness, @Nonnull TimeUnit unit,
+                @Nullable ScheduledExecutorService scheduler) {
+            checkArgument(window > 0, "window must be positive");
+            this.coalesceWindow = window;
+            this.coalesceMaxStaleness = maxStaleness;
+            this.coalesceUnit = checkNotNull(unit);
+            this.coalesceScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * dispatch child events on a lane of a shared executor instead of a thread per resource
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> eventExecutor(@Nonnull KeyedSerialExecutor eventExecutor) {
+            this.keyedEventExecutor = checkNotNull(eventExecutor);
+            return this;
+        }
+
+        /**
+         * {@link ZkResourceMetrics#getDefault()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> metrics(@Nonnull ZkResourceMetrics metrics) {
+            return metrics(metrics, null);
+        }
+
+        /**
+         * @param name reported with every metric, null for the path
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> metrics(@Nonnull ZkResourceMetrics metrics, @Nullable String name) {
+            this.metrics = checkNotNull(metrics);
+            this.metricsName = name;
+            return this;
+        }
+
+        /**
+         * where replaced resources are released, {@link CleanupScheduler#shared()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> cleanupScheduler(@Nonnull CleanupScheduler cleanupScheduler) {
+            this.cleanupScheduler = checkNotNull(cleanupScheduler);
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> cleanup(Predicate<E> cleanup) {
+            this.cleanup = cleanup;
+            return this;
+        }
+
+        @Nonnull
+        public ZkChildrenResource<E> build() {
+            ensure();
+            return new ZkChildrenResource<>(this);
+        }
+
+        private void ensure() {
+            checkNotNull(factory, "factory is required");
+            checkNotNull(path);
+            checkNotNull(curatorFrameworkFactory);
+
+            if (onResourceChange != null) {
+                BiConsumer<E, E> target = onResourceChange;
+                onResourceChange = (t, u) -> {
+                    try {
+                        target.accept(t, u);
+                    } catch (Throwable e) {
+                        LOGGER.error("onResourceChange error: ", e);
+                    }
+                };
+            }
+
+            if (cleanupScheduler == null) {
+                cleanupScheduler = CleanupScheduler.shared();
+            }
+
+            if (metrics == null) {
+                metrics = ZkResourceMetrics.getDefault();
+            }
+
+            if (cleanup == null) {
+                cleanup(t -> {
+                    if (t instanceof Closeable) {
+                        try {
+                            ((Closeable) t).close();
+                        } catch (Throwable e) {
+                            throwIfUnchecked(e);
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return true;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        rebinder.unregister();
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        synchronized (lock) {
+            if (resource != null && cleanup != null) {
+                cleanup.test(resource);
+            }
+            if (childrenCache != null) {
+                closeChildrenCache();
+            }
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package com.github.nicklaus4.zk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.lang.Thread.holdsLock;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.executor.AsyncInitializer;
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.github.nicklaus4.zk.executor.EventCoalescer;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
+import com.github.nicklaus4.zk.model.ThrowableFunction;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * resource combined from a few nodes, e.g. a routing table with its weights and overrides.
+ *
+ * the nodes are watched through NodeCaches shared with other composites of the same client. a
+ * burst of changes over the inputs is coalesced into one combiner call over all of them, and a
+ * combination is published only when no input is older than in the published one, so a lagging
+ * read never rolls the resource back.
+ *
+ * @author weishibai
+ * @date 2026/10/18 7:10 PM
+ */
+public class ZkCompositeResource<E> implements AsyncResourceLoader<E>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZkCompositeResource.class);
+
+    private static final long DEFAULT_COALESCE_WINDOW_MS = 50;
+
+    private static final long DEFAULT_COALESCE_MAX_STALENESS_MS = 1000;
+
+    /**
+     * version of an input that was published present and is now deleted
+     */
+    private static final long DELETED = -1;
+
+    private final Object lock = new Object();
+
+    /**
+     * input name to path, in combiner order
+     */
+    private final Map<String, String> inputs;
+
+    private final ThrowableFunction<Map<String, ChildData>, E, Exception> combiner;
+
+    private final Predicate<E> cleanup;
+
+    private final long waitStopPeriod;
+
+    private final CleanupScheduler cleanupScheduler;
+
+    private final BiConsumer<E, E> onResourceChange;
+
+    private final Supplier<CuratorFramework> curatorFrameworkFactory;
+
+    private final EventCoalescer coalescer;
+
+    private final AsyncInitializer<E> asyncInitializer = new AsyncInitializer<>();
+
+    private final ZkResourceMetrics metrics;
+
+    private final String metricsName;
+
+    private final long createdNanos = System.nanoTime();
+
+    @GuardedBy("lock")
+    private final List<SharedNodeCache> caches = new ArrayList<>();
+
+    @GuardedBy("lock")
+    private final List<Runnable> listenerRemovals = new ArrayList<>();
+
+    /**
+     * client the caches run on
+     */
+    @GuardedBy("lock")
+    private volatile CuratorFramework cachesClient;
+
+    private final ClientRebinder rebinder;
+
+    /**
+     * mzxid per input of the published resource, 0 for an input never seen, {@link #DELETED} for
+     * one gone since
+     */
+    @GuardedBy("lock")
+    private long[] versions;
+
+    @GuardedBy("lock")
+    private boolean firstValuePublished;
+
+    @GuardedBy("lock")
+    private volatile E resource;
+
+    @GuardedBy("lock")
+    private volatile boolean closed;
+
+    public static <E> Builder<E> newBuilder() {
+        return new Builder<>();
+    }
+
+    public ZkCompositeResource(Builder<E> builder) {
+        this.inputs = ImmutableMap.copyOf(builder.inputs);
+        this.combiner = builder.combiner;
+        this.cleanup = builder.cleanup;
+        this.waitStopPeriod = builder.waitStopPeriod;
+        this.cleanupScheduler = builder.cleanupScheduler;
+        this.onResourceChange = builder.onResourceChange;
+        this.curatorFrameworkFactory = builder.curatorFrameworkFactory;
+        this.metrics = builder.metrics;
+        this.metricsName = builder.metricsName != null ? builder.metricsName
+                : "ZkCompositeResource" + inputs.values();
+        this.versions = new long[inputs.size()];
+        this.rebinder = ClientRebinder.create(metricsName, () -> cachesClient, curatorFrameworkFactory,
+                this::rebind);
+        this.coalescer = new EventCoalescer(builder.coalesceScheduler, builder.coalesceWindow,
+                builder.coalesceMaxStaleness, builder.coalesceUnit, this::rebuild);
+    }
+
+    private void ensureCachesReady() {
+        assert holdsLock(lock);
+        if (!caches.isEmpty()) {
+            return;
+        }
+        CuratorFramework client = curatorFrameworkFactory.get();
+        try {
+            for (String path : inputs.values()) {
+                SharedNodeCache cache = SharedNodeCache.acquire(client, path);
+                caches.add(cache);
+                listenerRemovals.add(cache.addListener(() -> {
+                    metrics.onEventReceived(metricsName);
+                    coalescer.submit();
+                }));
+            }
+        } catch (RuntimeException e) {
+            releaseCaches();
+            throw e;
+        }
+        cachesClient = client;
+        rebinder.register();
+    }
+
+    /**
+     * move to caches on the replacement client and combine what they synced
+     */
+    private void rebind() {
+        synchronized (lock) {
+            if (closed || resource == null) {
+                return;
+            }
+            releaseCaches();
+            ensureCachesReady();
+        }
+        coalescer.submit();
+    }
+
+    private void releaseCaches() {
+        assert holdsLock(lock);
+        listenerRemovals.forEach(Runnable::run);
+        listenerRemovals.clear();
+        caches.forEach(SharedNodeCache::release);
+        caches.clear();
+        cachesClient = null;
+    }
+
+    private void rebuild() {
+        E oldResource;
+        synchronized (lock) {
+            if (closed || resource == null) {
+                return;
+            }
+            oldResource = resource;
+            try {
+                if (!build()) {
+                    return;
+                }
+            } catch (Exception e) {
+                LOGGER.error("fail to rebuild composite resource, keep the old one, inputs:{}", inputs, e);
+                return;
+            }
+            published();
+            metrics.onEventApplied(metricsName);
+            cleanup(resource, oldResource);
+        }
+    }
+
+    /**
+     * combine the current inputs unless unchanged or older than the published ones
+     */
+    private boolean build() throws Exception {
+        assert holdsLock(lock);
+        ImmutableMap.Builder<String, ChildData> current = ImmutableMap.builder();
+        List<ChildData> read = new ArrayList<>(inputs.size());
+        int i = 0;
+        for (String name : inputs.keySet()) {
+            ChildData data = caches.get(i++).getCurrentData();
+            read.add(data);
+            if (data != null) {
+                current.put(name, data);
+            }
+        }
+        long[] seen = nextVersions(versions, read);
+        if (seen == null) {
+            LOGGER.warn("an input of {} is older than published {}, skip", metricsName, versionVector());
+            return false;
+        }
+        if (resource != null && Arrays.equals(seen, versions)) {
+            return false;
+        }
+        ImmutableMap<String, ChildData> combined = current.build();
+        resource = timed(() -> combiner.apply(combined));
+        versions = seen;
+        return true;
+    }
+
+    /**
+     * version vector of the inputs read, a missing node is null in read
+     *
+     * @return null when an input is older than in published
+     */
+    @Nullable
+    static long[] nextVersions(long[] published, List<ChildData> read) {
+        long[] seen = published.clone();
+        for (int i = 0; i < seen.length; i++) {
+            ChildData data = read.get(i);
+            if (data != null) {
+                long mzxid = data.getStat() != null ? data.getStat().getMzxid() : 0;
+                if (mzxid < published[i]) {
+                    return null;
+                }
+                seen[i] = mzxid;
+            } else if (published[i] > 0) {
+                // present to absent is a change too
+                seen[i] = DELETED;
+            }
+        }
+        return seen;
+    }
+
+    private E timed(Callable<E> build) throws Exception {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final E built = build.call();
+            success = true;
+            return built;
+        } finally {
+            metrics.onFactory(metricsName, System.nanoTime() - start, success);
+        }
+    }
+
+    private void published() {
+        assert holdsLock(lock);
+        if (!firstValuePublished) {
+            firstValuePublished = true;
+            metrics.onFirstValue(metricsName, System.nanoTime() - createdNanos);
+        }
+        metrics.onVersion(metricsName, Arrays.stream(versions).max().orElse(0));
+    }
+
+    private void cleanup(E currentResource, E oldResource) {
+        if (oldResource != null) {
+            if (currentResource != oldResource) {
+                cleanupScheduler.submit("[" + oldResource.getClass().getSimpleName() + "] of " + metricsName,
+                        () -> cleanup.test(oldResource), waitStopPeriod, () -> {
+                            if (onResourceChange != null) {
+                                onResourceChange.accept(currentResource, oldResource);
+                            }
+                        }, nanos -> metrics.onCleanupQueued(metricsName, nanos));
+                return;
+            }
+        }
+
+        if (onResourceChange != null) {
+            onResourceChange.accept(currentResource, oldResource);
+        }
+    }
+
+    /**
+     * input name to the mzxid it had in the current resource, 0 when the node was never seen and
+     * -1 when it was deleted
+     */
+    public Map<String, Long> versionVector() {
+        synchronized (lock) {
+            ImmutableMap.Builder<String, Long> vector = ImmutableMap.builder();
+            int i = 0;
+            for (String name : inputs.keySet()) {
+                vector.put(name, versions[i++]);
+            }
+            return vector.build();
+        }
+    }
+
+    /**
+     * input changes that were folded into another rebuild
+     */
+    public long getCoalescedEventCount() {
+        return coalescer.getCoalescedEventCount();
+    }
+
+    @Override
+    public E get() {
+        metrics.onGet(metricsName);
+        if (closed) {
+            throw new IllegalStateException("zkNode has been closed.");
+        }
+
+        if (null == resource) {
+            synchronized (lock) {
+                if (closed) {
+                    throw new IllegalStateException("zkNode has been closed.");
+                }
+
+                if (null == resource) {
+                    ensureCachesReady();
+                    try {
+                        build();
+                        published();
+                        if (onResourceChange != null) {
+                            onResourceChange.accept(resource, null);
+                        }
+                    } catch (Exception e) {
+                        throwIfUnchecked(e);
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }
+        return resource;
+    }
+
+    @Override
+    public CompletableFuture<E> getAsync() {
+        if (closed) {
+            CompletableFuture<E> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("zkNode has been closed."));
+            return failed;
+        }
+
+        E current = resource;
+        if (current != null) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return asyncInitializer.load(this::get);
+    }
+
+    public static class Builder<E> {
+
+        private final Map<String, String> inputs = new LinkedHashMap<>();
+
+        private ThrowableFunction<Map<String, ChildData>, E, Exception> combiner;
+
+        private Supplier<CuratorFramework> curatorFrameworkFactory;
+
+        private Predicate<E> cleanup;
+
+        private long waitStopPeriod;
+
+        private CleanupScheduler cleanupScheduler;
+
+        private BiConsumer<E, E> onResourceChange;
+
+        private long coalesceWindow = DEFAULT_COALESCE_WINDOW_MS;
+
+        private long coalesceMaxStaleness = DEFAULT_COALESCE_MAX_STALENESS_MS;
+
+        private TimeUnit coalesceUnit = MILLISECONDS;
+
+        private ScheduledExecutorService coalesceScheduler;
+
+        private ZkResourceMetrics metrics;
+
+        private String metricsName;
+
+        /**
+         * one input of the combiner, keyed by name
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> input(@Nonnull String name, @Nonnull String path) {
+            checkArgument(!inputs.containsKey(checkNotNull(name)), "duplicate input: %s", name);
+            inputs.put(name, checkNotNull(path));
+            return this;
+        }
+
+        /**
+         * @param combiner gets input name to data and stat in input order, a missing node has no entry
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> combiner(ThrowableFunction<Map<String, ChildData>, E, Exception> combiner) {
+            this.combiner = combiner;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> onResourceChange(BiConsumer<E, E> callback) {
+            this.onResourceChange = callback;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> curator(Supplier<CuratorFramework> curatorFactory) {
+            this.curatorFrameworkFactory = curatorFactory;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> curator(CuratorFramework curator) {
+            this.curatorFrameworkFactory = () -> curator;
+            return this;
+        }
+
+        /**
+         * ms to wait before the first cleanup attempt of a replaced resource,
+         * a failed attempt is retried by the cleanup scheduler with backoff from there
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> withWaitStopPeriod(long waitStopPeriod) {
+            this.waitStopPeriod = waitStopPeriod;
+            return this;
+        }
+
+        /**
+         * collapse input changes within window into one combiner call, 50ms and at most 1s by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> coalesce(long window, long maxStaleness, @Nonnull TimeUnit unit) {
+            return coalesce(window, maxStaleness, unit, null);
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> coalesce(long window, long maxStaleness, @Nonnull TimeUnit unit,
+                @Nullable ScheduledExecutorService scheduler) {
+            checkArgument(window > 0, "window must be positive");
+            this.coalesceWindow = window;
+            this.coalesceMaxStaleness = maxStaleness;
+            this.coalesceUnit = checkNotNull(unit);
+            this.coalesceScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * {@link ZkResourceMetrics#getDefault()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> metrics(@Nonnull ZkResourceMetrics metrics) {
+            return metrics(metrics, null);
+        }
+
+        /**
+         * @param name reported with every metric, null for one made of the paths
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> metrics(@Nonnull ZkResourceMetrics metrics, @Nullable String name) {
+            this.metrics = checkNotNull(metrics);
+            this.metricsName = name;
+            return this;
+        }
+
+        /**
+         * where replaced resources are released, {@link CleanupScheduler#shared()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> cleanupScheduler(@Nonnull CleanupScheduler cleanupScheduler) {
+            this.cleanupScheduler = checkNotNull(cleanupScheduler);
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> cleanup(Predicate<E> cleanup) {
+            this.cleanup = cleanup;
+            return this;
+        }
+
+        @Nonnull
+        public ZkCompositeResource<E> build() {
+            ensure();
+            return new ZkCompositeResource<>(this);
+        }
+
+        private void ensure() {
+            checkState(!inputs.isEmpty(), "at least one input is required");
+            checkNotNull(combiner, "combiner is required");
+            checkNotNull(curatorFrameworkFactory);
+
+            if (onResourceChange != null) {
+                BiConsumer<E, E> target = onResourceChange;
+                onResourceChange = (t, u) -> {
+                    try {
+                        target.accept(t, u);
+                    } catch (Throwable e) {
+                        LOGGER.error("onResourceChange error: ", e);
+                    }
+                };
+            }
+
+            if (cleanupScheduler == null) {
+                cleanupScheduler = CleanupScheduler.shared();
+            }
+
+            if (metrics == null) {
+                metrics = ZkResourceMetrics.getDefault();
+            }
+
+            if (cleanup == null) {
+                cleanup(t -> {
+                    if (t instanceof Closeable) {
+                        try {
+                            ((Closeable) t).close();
+                        } catch (Throwable e) {
+                            throwIfUnchecked(e);
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return true;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        rebinder.unregister();
+        coalescer.close();
+        synchronized (lock) {
+            if (resource != null && cleanup != null) {
+                cleanup.test(resource);
+            }
+            releaseCaches();
+            closed = true;
+        }
+    }
+}
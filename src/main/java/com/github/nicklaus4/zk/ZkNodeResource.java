@@ -1,14 +1,20 @@
 package com.github.nicklaus4.zk;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.util.concurrent.Futures.addCallback;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.github.nicklaus4.zk.utils.ZkNodeUtils.getPath;
-import static java.lang.Thread.MIN_PRIORITY;
+import static java.lang.Thread.holdsLock;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -17,6 +23,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
+import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.NodeCache;
 import org.apache.curator.framework.recipes.cache.NodeCacheListener;
@@ -24,11 +31,21 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.nicklaus4.zk.executor.AsyncInitializer;
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.github.nicklaus4.zk.executor.EventCoalescer;
+import com.github.nicklaus4.zk.executor.ResourceExecutors;
 import com.github.nicklaus4.zk.factory.GenericZkNodeBuilder;
-import com.github.nicklaus4.zk.model.ResourceLoader;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
+import com.github.nicklaus4.zk.model.NodeHistory;
+import com.github.nicklaus4.zk.model.Versioned;
+import com.github.nicklaus4.zk.model.VersionedResourceLoader;
+import com.github.nicklaus4.zk.snapshot.SnapshotStore;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.github.nicklaus4.zk.model.ZkNodeState;
 
 /**
@@ -37,10 +54,18 @@ import com.github.nicklaus4.zk.model.ZkNodeState;
  * @author weishibai
  * @date 2019/03/14 11:34 AM
  */
-public class ZkNodeResource<E> implements ResourceLoader<E>, AutoCloseable {
+public class ZkNodeResource<E> implements AsyncResourceLoader<E>, VersionedResourceLoader<E>, AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ZkNodeResource.class);
 
+    private static final long MAX_RECONCILE_BACKOFF_MS = 60 * 1000;
+
+    private static final long NOT_PINNED = -1;
+
+    private static final long SNAPSHOT_WRITE_WINDOW_MS = 1000;
+
+    private static final long SNAPSHOT_WRITE_MAX_DELAY_MS = 10 * 1000;
+
     private BiFunction<byte[], Stat, E> factory;
 
     private BiFunction<byte[], Stat, ListenableFuture<E>> refreshFactory;
@@ -57,29 +82,132 @@ public class ZkNodeResource<E> implements ResourceLoader<E>, AutoCloseable {
 
     private BiConsumer<ChildData, Throwable> factoryFailedListener;
 
-    private final Object lock = new Object();
+    private Function<Runnable, EventCoalescer> coalescerFactory;
+
+    private CleanupScheduler cleanupScheduler;
+
+    private SnapshotStore snapshotStore;
+
+    private String nodePath;
+
+    private String snapshotKey;
+
+    /**
+     * writes the snapshot off the NodeCache and refresh threads, null without snapshotStore
+     */
+    private EventCoalescer snapshotWriter;
+
+    /**
+     * data the snapshot writer saves next, null to delete the snapshot
+     */
+    private volatile ChildData latestSnapshotData;
+
+    private final Object snapshotWriteLock = new Object();
+
+    private boolean skipUnchanged;
+
+    private ZkResourceMetrics metrics;
 
+    private String metricsName;
+
+    /**
+     * null without history
+     */
+    private NodeHistory history;
+
+    /**
+     * kept version the resource is pinned to, zk changes are ignored meanwhile
+     */
     @GuardedBy("lock")
-    private volatile E resource;
+    private volatile long pinnedMzxid = NOT_PINNED;
 
+    /**
+     * mzxid of the data the resource was last built from
+     */
     @GuardedBy("lock")
-    private volatile boolean closed = false;
+    private long publishedMzxid;
+
+    private final long createdNanos = System.nanoTime();
+
+    @GuardedBy("lock")
+    private boolean firstValuePublished;
+
+    private final Object lock = new Object();
+
+    /**
+     * readers only ever touch this field, writers swap it under {@link #lock}
+     */
+    @GuardedBy("lock")
+    private volatile Snapshot<E> snapshot = Snapshot.unknown();
 
     private volatile boolean hasNodeListener = false;
 
     private volatile Runnable nodeCacheRemoveListener;
 
-    private volatile ZkNodeState nodeState = ZkNodeState.UNKNOWN;
+    private volatile NodeCache attachedCache;
+
+    /**
+     * completed once the first NodeCache is attached and reconciled
+     */
+    private final CompletableFuture<Void> watched = new CompletableFuture<>();
+
+    private volatile EventCoalescer coalescer;
+
+    private final AsyncInitializer<E> asyncInitializer = new AsyncInitializer<>();
+
+    /**
+     * null for a custom NodeCache supplier
+     */
+    private final ClientRebinder rebinder;
 
+    /**
+     * client of the attached NodeCache, or the one it would be started on
+     */
+    private final Supplier<CuratorFramework> nodeClient;
 
     public ZkNodeResource(GenericZkNodeBuilder<E> builder) {
-        this.factory = builder.buildFactory();
-        this.refreshFactory = builder.refreshFactory();
+        this(builder, builder.buildFactory(), builder.refreshFactory());
+    }
+
+    /**
+     * @param factory builds the first value, already wrapped by the builder, e.g. to decode payloads
+     * @param refreshFactory builds the values of later changes, wrapped alike
+     */
+    public ZkNodeResource(GenericZkNodeBuilder<E> builder, BiFunction<byte[], Stat, E> factory,
+            BiFunction<byte[], Stat, ListenableFuture<E>> refreshFactory) {
+        this.factory = factory;
+        this.refreshFactory = refreshFactory;
         this.cacheHolder = builder.cacheHolder();
         this.cleanup = builder.cleanUp();
-        this.nodeCacheShutdown = builder.nodeCacheShutdown();
+        // the builder only knows how to shut the cache down once cacheHolder has built it
+        this.nodeCacheShutdown = () -> {
+            Runnable shutdown = builder.nodeCacheShutdown();
+            if (shutdown != null) {
+                shutdown.run();
+            }
+        };
         this.onNodeChange = builder.nodeChange();
         this.emptyObject = builder.emptyObject();
+        this.coalescerFactory = builder.coalescerFactory();
+        this.cleanupScheduler = builder.cleanupScheduler();
+        this.snapshotStore = builder.snapshotStore();
+        this.snapshotKey = builder.snapshotKey();
+        this.snapshotWriter = snapshotStore == null ? null : new EventCoalescer(ResourceExecutors.bootstrap(),
+                ResourceExecutors.bootstrap(), SNAPSHOT_WRITE_WINDOW_MS, SNAPSHOT_WRITE_MAX_DELAY_MS, MILLISECONDS, this::writeSnapshot);
+        this.nodePath = builder.path();
+        this.skipUnchanged = builder.isSkipUnchanged();
+        this.history = builder.historyEntries() > 0 ? new NodeHistory(builder.historyEntries(),
+                builder.historyBytes()) : null;
+        this.metrics = builder.metrics();
+        this.metricsName = builder.metricsName() != null ? builder.metricsName()
+                : nodePath != null ? nodePath : "ZkNodeResource@" + Integer.toHexString(System.identityHashCode(this));
+        final Supplier<CuratorFramework> curatorFactory = builder.curatorFactory();
+        this.nodeClient = curatorFactory == null ? () -> null : () -> {
+            final CuratorFramework attached = builder.nodeCacheClient();
+            return attached != null ? attached : curatorFactory.get();
+        };
+        this.rebinder = nodePath != null && curatorFactory != null ? ClientRebinder.create(metricsName,
+                builder::nodeCacheClient, curatorFactory, this::rebind) : null;
         this.factoryFailedListener = (child, e) -> {
             final List<BiConsumer<ChildData, Throwable>> listeners = builder.factoryFailedListeners();
             listeners.forEach(listener -> {
@@ -99,63 +227,296 @@ public class ZkNodeResource<E> implements ResourceLoader<E>, AutoCloseable {
     }
 
     public E get() {
-        if (closed) {
+        metrics.onGet(metricsName);
+        final Snapshot<E> current = snapshot;
+        if (current.state == ZkNodeState.EXIST) {
+            return current.resource;
+        }
+
+        if (current.closed) {
             throw new IllegalStateException("zkNode has been closed.");
         }
 
-        if (nodeState == ZkNodeState.NON_EXIST) {
+        if (current.state == ZkNodeState.NON_EXIST) {
             return emptyObject;
         }
 
         synchronized (lock) {
-            if (closed) {
+            final Snapshot<E> thisSnapshot = snapshot;
+            if (thisSnapshot.closed) {
                 throw new IllegalStateException("zkNode has been closed.");
             }
 
-            if (null == resource) {
-                final NodeCache nodeCache = cacheHolder.get();
-                addNodeListener(nodeCache);
+            if (thisSnapshot.state != ZkNodeState.UNKNOWN) {
+                return thisSnapshot.state == ZkNodeState.EXIST ? thisSnapshot.resource : emptyObject;
+            }
 
-                final ChildData currentData = nodeCache.getCurrentData();
-                if (null == currentData || null == currentData.getData()) {
-                    nodeState = ZkNodeState.NON_EXIST;
-                    LOGGER.warn("current path {} is empty.", getPath(nodeCache));
-                    return emptyObject;
+            if (snapshotStore != null && !hasNodeListener) {
+                final ChildData saved = snapshotStore.loadNode(snapshotKey);
+                if (saved != null && saved.getData() != null) {
+                    try {
+                        return bootFrom(saved);
+                    } catch (Exception e) {
+                        LOGGER.warn("fail to build from snapshot {}, boot from zk.", snapshotKey, e);
+                        snapshotStore.delete(snapshotKey);
+                    }
                 }
+            }
 
-                nodeState = ZkNodeState.EXIST;
-                try {
-                    resource = factory.apply(currentData.getData(), currentData.getStat());
-                    if (null != onNodeChange) {
-                        onNodeChange.accept(resource, emptyObject);
-                    }
-                } catch (Exception e) {
-                    factoryFailedListener.accept(currentData, e);
-                    throwIfUnchecked(e);
-                    throw new RuntimeException(e);
+            final NodeCache nodeCache = cacheHolder.get();
+            addNodeListener(nodeCache);
+            watched.complete(null);
+
+            final ChildData currentData = nodeCache.getCurrentData();
+            if (null == currentData || null == currentData.getData()) {
+                swapIn(Snapshot.nonExist(), null);
+                saveSnapshot(null);
+                LOGGER.warn("current path {} is empty.", getPath(nodeCache));
+                return emptyObject;
+            }
+
+            try {
+                final E built = build(currentData);
+                swapIn(exist(built, currentData), currentData);
+                saveSnapshot(currentData);
+                if (null != onNodeChange) {
+                    onNodeChange.accept(built, emptyObject);
+                }
+                return built;
+            } catch (Exception e) {
+                factoryFailedListener.accept(currentData, e);
+                throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * version is the mzxid of the node the value was built from, grows by one when the node is deleted
+     */
+    @Override
+    public Versioned<E> getVersioned() {
+        get();
+        final Snapshot<E> current = snapshot;
+        if (current.closed) {
+            throw new IllegalStateException("zkNode has been closed.");
+        }
+        return current.versioned;
+    }
+
+    /**
+     * publish a value built from data fetched elsewhere, e.g. by a bulk read at boot,
+     * and attach the NodeCache in background. does nothing once loaded.
+     *
+     * @return false when already loaded or closed
+     */
+    public boolean prime(@Nonnull ChildData data) {
+        checkNotNull(data);
+        checkNotNull(data.getData(), "cannot prime from a missing node");
+        if (snapshot.closed || snapshot.state != ZkNodeState.UNKNOWN || hasNodeListener) {
+            return false;
+        }
+        // build outside the lock, readers and the NodeCache thread never wait on the factory
+        final E built;
+        try {
+            built = build(data);
+        } catch (Exception e) {
+            factoryFailedListener.accept(data, e);
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+        synchronized (lock) {
+            if (snapshot.closed || snapshot.state != ZkNodeState.UNKNOWN || hasNodeListener) {
+                // loaded or closed meanwhile
+                if (built != null && built != emptyObject) {
+                    cleanup.test(built);
                 }
+                return false;
             }
+            booted(data, built);
+        }
+        saveSnapshot(data);
+        return true;
+    }
+
+    /**
+     * completes once the resource follows zk: right after the first get, or once the NodeCache
+     * is attached in background after a prime or a snapshot boot. fails when closed before.
+     */
+    public CompletableFuture<Void> whenWatched() {
+        return watched;
+    }
+
+    /**
+     * data and stat the NodeCache holds right now, e.g. as seed of
+     * {@link com.github.nicklaus4.zk.utils.ZkNodeUtils#update(org.apache.curator.framework.CuratorFramework,
+     * ChildData, java.util.function.UnaryOperator)}. null before the cache is attached or when the node is missing.
+     */
+    @Nullable
+    public ChildData currentData() {
+        NodeCache cache = attachedCache;
+        return cache == null ? null : cache.getCurrentData();
+    }
+
+    /**
+     * versions kept with {@link GenericZkNodeBuilder#withHistory(int, long)}, newest first
+     */
+    public List<ChildData> history() {
+        checkState(history != null, "history of %s is not enabled", metricsName);
+        return history.entries();
+    }
+
+    /**
+     * publish the value of a kept version, rebuilt from its bytes, and ignore zk changes until
+     * {@link #unpin()}
+     *
+     * @param mzxid of a version in {@link #history()}
+     */
+    public void pinTo(long mzxid) {
+        checkState(history != null, "history of %s is not enabled", metricsName);
+        final ChildData data = history.find(mzxid);
+        checkArgument(data != null, "version %s of %s is not kept", mzxid, metricsName);
+        // build outside the lock, readers and the NodeCache thread never wait on the factory
+        final E built = build(data);
+        final E oldResource;
+        synchronized (lock) {
+            if (snapshot.closed) {
+                if (built != null && built != emptyObject) {
+                    cleanup.test(built);
+                }
+                throw new IllegalStateException("zkNode has been closed.");
+            }
+            pinnedMzxid = mzxid;
+            oldResource = snapshot.resource;
+            swapIn(exist(built, data), data);
+        }
+        LOGGER.warn("{} pinned to mzxid {}.", metricsName, mzxid);
+        cleanup(built, oldResource, attachedCache);
+    }
+
+    /**
+     * pin to the newest kept version older than the published one
+     *
+     * @return mzxid pinned to
+     */
+    public long rollback() {
+        checkState(history != null, "history of %s is not enabled", metricsName);
+        final ChildData previous;
+        synchronized (lock) {
+            previous = history.before(publishedMzxid);
+        }
+        checkState(previous != null, "no version of %s older than %s is kept", metricsName, publishedMzxid);
+        pinTo(previous.getStat().getMzxid());
+        return previous.getStat().getMzxid();
+    }
+
+    /**
+     * follow zk again, starting from its current data. the refresh runs like one for a node event,
+     * through the coalescer or on {@link ResourceExecutors#bootstrap()}, not on the caller.
+     */
+    public void unpin() {
+        final EventCoalescer thisCoalescer;
+        final NodeCache cache;
+        synchronized (lock) {
+            pinnedMzxid = NOT_PINNED;
+            thisCoalescer = coalescer;
+            cache = attachedCache;
+        }
+        if (cache == null) {
+            return;
+        }
+        if (thisCoalescer != null) {
+            thisCoalescer.submit();
+        } else {
+            ResourceExecutors.bootstrap().execute(() -> refresh(cache));
+        }
+    }
+
+    public boolean isPinned() {
+        return pinnedMzxid != NOT_PINNED;
+    }
+
+    /**
+     * node path when built with a path, null for a custom NodeCache supplier
+     */
+    @Nullable
+    public String getNodePath() {
+        return nodePath;
+    }
+
+    /**
+     * client the NodeCache runs on, or would be started on before it is attached,
+     * null for a custom NodeCache supplier
+     */
+    @Nullable
+    public CuratorFramework getNodeClient() {
+        return nodeClient.get();
+    }
+
+    @Override
+    public CompletableFuture<E> getAsync() {
+        final Snapshot<E> current = snapshot;
+        if (current.state == ZkNodeState.EXIST) {
+            return CompletableFuture.completedFuture(current.resource);
+        }
+
+        if (current.closed) {
+            CompletableFuture<E> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("zkNode has been closed."));
+            return failed;
         }
-        return resource;
+
+        if (current.state == ZkNodeState.NON_EXIST) {
+            return CompletableFuture.completedFuture(emptyObject);
+        }
+        return asyncInitializer.load(this::get);
     }
 
     public boolean hasClosed() {
-        return closed;
+        return snapshot.closed;
+    }
+
+    /**
+     * node changes that were folded into another refresh, always 0 without coalescing
+     */
+    public long getCoalescedEventCount() {
+        EventCoalescer thisCoalescer = coalescer;
+        return thisCoalescer == null ? 0 : thisCoalescer.getCoalescedEventCount();
     }
 
     @Override
     public void close() throws Exception {
+        if (rebinder != null) {
+            rebinder.unregister();
+        }
         synchronized (lock) {
-            if (nodeCacheShutdown != null) {
-                nodeCacheShutdown.run();
-            }
+            // each step on its own, one failing must not keep the value from being released
             if (nodeCacheRemoveListener != null) {
-                nodeCacheRemoveListener.run();
+                closeStep("remove the listener", nodeCacheRemoveListener);
+            }
+            if (coalescer != null) {
+                closeStep("close the coalescer", coalescer::close);
+            }
+            if (snapshotWriter != null) {
+                closeStep("close the snapshot writer", snapshotWriter::close);
             }
+            if (nodeCacheShutdown != null) {
+                closeStep("close the node cache", nodeCacheShutdown);
+            }
+            final E resource = snapshot.resource;
+            snapshot = Snapshot.closed();
+            watched.completeExceptionally(new IllegalStateException("zkNode has been closed."));
             if (resource != null && resource != emptyObject && cleanup != null) {
                 cleanup.test(resource);
             }
-            closed = true;
+        }
+    }
+
+    private void closeStep(String step, Runnable action) {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            LOGGER.warn("fail to {} of {} on close.", step, metricsName, e);
         }
     }
 
@@ -171,61 +532,300 @@ public class ZkNodeResource<E> implements ResourceLoader<E>, AutoCloseable {
 
     private void addNodeListener(NodeCache cache) {
         if (!hasNodeListener) {
-            NodeCacheListener nodeCacheListener = () -> {
-                E oldResource;
-                synchronized (lock) {
-                    ChildData data = cache.getCurrentData();
-                    oldResource = resource;
-                    if (data != null && data.getData() != null) {
-                        nodeState = ZkNodeState.EXIST;
-                        ListenableFuture<E> future = refreshFactory.apply(data.getData(), data.getStat());
-                        addCallback(future, new FutureCallback<E>() {
-
-                            @Override
-                            public void onSuccess(@Nullable E result) {
-                                resource = result;
-                                cleanup(resource, oldResource, cache);
-                            }
-
-                            @Override
-                            public void onFailure(Throwable t) {
-                                factoryFailedListener.accept(data, t);
-                                LOGGER.error("", t);
-                            }
-                        }, directExecutor());
-                    } else {
-                        nodeState = ZkNodeState.NON_EXIST;
-                        resource = null;
-                        cleanup(resource, oldResource, cache);
-                    }
-                }
-            };
+            NodeCacheListener nodeCacheListener;
+            if (coalescerFactory != null) {
+                EventCoalescer thisCoalescer = coalescerFactory.apply(() -> refresh(cache));
+                coalescer = thisCoalescer;
+                nodeCacheListener = () -> {
+                    metrics.onEventReceived(metricsName);
+                    thisCoalescer.submit();
+                };
+            } else {
+                nodeCacheListener = () -> {
+                    metrics.onEventReceived(metricsName);
+                    refresh(cache);
+                };
+            }
             cache.getListenable().addListener(nodeCacheListener);
+            if (rebinder != null) {
+                rebinder.register();
+            }
+            attachedCache = cache;
             nodeCacheRemoveListener = () -> cache.getListenable().removeListener(nodeCacheListener);
             hasNodeListener = true;
         }
     }
 
+    /**
+     * build outside the lock so readers and the NodeCache thread never wait on a slow factory
+     */
+    private void refresh(NodeCache cache) {
+        if (pinnedMzxid != NOT_PINNED) {
+            LOGGER.info("{} is pinned to mzxid {}, ignore change.", metricsName, pinnedMzxid);
+            return;
+        }
+        ChildData data = cache.getCurrentData();
+        if (data != null && data.getData() != null) {
+            if (skipUnchanged && keepUnchanged(data)) {
+                return;
+            }
+            final long start = System.nanoTime();
+            ListenableFuture<E> future = refreshFactory.apply(data.getData(), data.getStat());
+            addCallback(future, new FutureCallback<E>() {
+
+                @Override
+                public void onSuccess(@Nullable E result) {
+                    metrics.onFactory(metricsName, System.nanoTime() - start, true);
+                    if (publish(exist(result, data), data, cache)) {
+                        saveSnapshot(data);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    metrics.onFactory(metricsName, System.nanoTime() - start, false);
+                    factoryFailedListener.accept(data, t);
+                    LOGGER.error("", t);
+                }
+            }, directExecutor());
+        } else if (publish(Snapshot.nonExist(), null, cache)) {
+            saveSnapshot(null);
+        }
+    }
+
+    /**
+     * @return false when dropped because the resource was closed meanwhile or a newer write is published
+     */
+    private boolean publish(Snapshot<E> next, @Nullable ChildData data, NodeCache cache) {
+        E oldResource;
+        synchronized (lock) {
+            if (snapshot.closed || pinnedMzxid != NOT_PINNED || isStale(next)) {
+                // closed or pinned meanwhile, or a build for an older event finished last
+                if (next.resource != null && next.resource != emptyObject) {
+                    cleanup.test(next.resource);
+                }
+                return false;
+            }
+            if (next.state == ZkNodeState.NON_EXIST) {
+                // remember the last write, a build for it finishing after the delete must not revive it
+                next = Snapshot.nonExist(snapshot.mzxid);
+            }
+            oldResource = snapshot.resource;
+            swapIn(next, data);
+        }
+        metrics.onEventApplied(metricsName);
+        cleanup(next.resource, oldResource, cache);
+        return true;
+    }
+
+    /**
+     * @return true when next was built from a write older than the published one, or from the last
+     * write before the node was deleted
+     */
+    private boolean isStale(Snapshot<E> next) {
+        assert holdsLock(lock);
+        final Snapshot<E> current = snapshot;
+        if (next.state != ZkNodeState.EXIST || next.mzxid <= 0) {
+            return false;
+        }
+        if (next.mzxid < current.mzxid) {
+            LOGGER.info("drop value of {} built from mzxid {}, mzxid {} is published already.", metricsName,
+                    next.mzxid, current.mzxid);
+            return true;
+        }
+        return current.state == ZkNodeState.NON_EXIST && next.mzxid <= current.mzxid;
+    }
+
+    /**
+     * @return true when data holds the same write or the same bytes as the published resource,
+     * which then stays as is
+     */
+    private boolean keepUnchanged(ChildData data) {
+        final Snapshot<E> current = snapshot;
+        if (current.state != ZkNodeState.EXIST || current.digest == null || data.getStat() == null) {
+            return false;
+        }
+        if (current.mzxid == data.getStat().getMzxid()) {
+            return true;
+        }
+        if (!current.digest.equals(digest(data.getData()))) {
+            return false;
+        }
+        synchronized (lock) {
+            if (snapshot != current) {
+                // published or closed meanwhile, let the regular path sort it out
+                return false;
+            }
+            swapIn(new Snapshot<>(current.resource, ZkNodeState.EXIST, false, data.getStat().getMzxid(),
+                    current.digest), data);
+        }
+        LOGGER.debug("content of {} unchanged at mzxid {}, skip rebuilding.", nodePath, data.getStat().getMzxid());
+        saveSnapshot(data);
+        return true;
+    }
+
+    private Snapshot<E> exist(E resource, ChildData data) {
+        final long mzxid = data.getStat() == null ? 0 : data.getStat().getMzxid();
+        if (!skipUnchanged || mzxid == 0) {
+            return new Snapshot<>(resource, ZkNodeState.EXIST, false, mzxid, null);
+        }
+        return new Snapshot<>(resource, ZkNodeState.EXIST, false, mzxid, digest(data.getData()));
+    }
+
+    private E build(ChildData data) {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final E built = factory.apply(data.getData(), data.getStat());
+            success = true;
+            return built;
+        } finally {
+            metrics.onFactory(metricsName, System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * publish next together with its version in a single write
+     *
+     * @param data null when the node does not exist
+     */
+    private void swapIn(Snapshot<E> next, @Nullable ChildData data) {
+        assert holdsLock(lock);
+        if (!firstValuePublished) {
+            firstValuePublished = true;
+            metrics.onFirstValue(metricsName, System.nanoTime() - createdNanos);
+        }
+        final long mzxid = data != null && data.getStat() != null ? data.getStat().getMzxid() : 0;
+        if (mzxid > 0) {
+            publishedMzxid = mzxid;
+            if (history != null && data.getData() != null) {
+                history.record(data);
+            }
+        }
+        snapshot = next.withVersion(Versioned.next(snapshot.versioned,
+                next.state == ZkNodeState.EXIST ? next.resource : emptyObject, mzxid));
+        if (mzxid > 0) {
+            metrics.onVersion(metricsName, mzxid);
+        }
+    }
+
+    private static HashCode digest(byte[] data) {
+        return Hashing.murmur3_128().hashBytes(data);
+    }
+
+    private E bootFrom(ChildData data) {
+        assert holdsLock(lock);
+        return booted(data, build(data));
+    }
+
+    /**
+     * publish a value built from data fetched elsewhere and attach the NodeCache in background
+     */
+    private E booted(ChildData data, E built) {
+        assert holdsLock(lock);
+        swapIn(exist(built, data), data);
+        if (null != onNodeChange) {
+            onNodeChange.accept(built, emptyObject);
+        }
+        ResourceExecutors.bootstrap().execute(() -> reconcile(data, 0));
+        return built;
+    }
+
+    /**
+     * move to a NodeCache on the replacement client, the attached one runs on a closed client
+     */
+    private void rebind() {
+        final ChildData last;
+        synchronized (lock) {
+            if (snapshot.closed || !hasNodeListener) {
+                return;
+            }
+            last = attachedCache.getCurrentData();
+            nodeCacheRemoveListener.run();
+            if (coalescer != null) {
+                coalescer.close();
+            }
+            try {
+                nodeCacheShutdown.run();
+            } catch (Throwable e) {
+                LOGGER.warn("fail to close node cache of {}", metricsName, e);
+            }
+            attachedCache = null;
+            hasNodeListener = false;
+        }
+        reconcile(last, 0);
+    }
+
+    /**
+     * attach the node cache after booting from a snapshot or a rebind, retried with backoff while zk
+     * is unreachable
+     *
+     * @param saved data the published resource was built from, null when unknown
+     */
+    private void reconcile(@Nullable ChildData saved, int attempt) {
+        if (hasClosed()) {
+            return;
+        }
+        final NodeCache nodeCache;
+        try {
+            nodeCache = cacheHolder.get();
+        } catch (Throwable e) {
+            long delayMs = Math.min(MAX_RECONCILE_BACKOFF_MS, 1000L << Math.min(attempt, 16));
+            LOGGER.warn("fail to start node cache of {}, serve the current value and retry in {}ms", metricsName,
+                    delayMs, e);
+            ResourceExecutors.bootstrap().schedule(() -> reconcile(saved, attempt + 1), delayMs, MILLISECONDS);
+            return;
+        }
+
+        synchronized (lock) {
+            if (snapshot.closed) {
+                nodeCacheShutdown.run();
+                return;
+            }
+            addNodeListener(nodeCache);
+        }
+
+        ChildData current = nodeCache.getCurrentData();
+        if (current == null || current.getStat() == null || saved == null || saved.getStat() == null
+                || current.getStat().getMzxid() != saved.getStat().getMzxid()) {
+            refresh(nodeCache);
+        }
+        watched.complete(null);
+    }
+
+    private void saveSnapshot(@Nullable ChildData data) {
+        if (snapshotWriter != null) {
+            latestSnapshotData = data;
+            snapshotWriter.submit();
+        }
+    }
+
+    private void writeSnapshot() {
+        // a run overtaken by a newer one must not write its older data last
+        synchronized (snapshotWriteLock) {
+            final ChildData data = latestSnapshotData;
+            if (data == null) {
+                snapshotStore.delete(snapshotKey);
+            } else {
+                snapshotStore.saveNode(snapshotKey, data);
+            }
+        }
+    }
+
     private void cleanup(E currentResource, E oldResource, NodeCache nodeCache) {
         if (oldResource != null && oldResource != emptyObject) {
             if (currentResource != oldResource) {
-                new ThreadFactoryBuilder() //
-                        .setNameFormat("old [" + oldResource.getClass().getSimpleName()
-                                + "] cleanup thread-[%d]")
-                        .setUncaughtExceptionHandler(
-                                (t, e) -> LOGGER.error("fail to cleanup resource, path:{}, {}",
-                                        getPath(nodeCache), oldResource.getClass().getSimpleName(), e)) //
-                        .setPriority(MIN_PRIORITY) //
-                        .setDaemon(true) //
-                        .build() //
-                        .newThread(() -> {
+                cleanupScheduler.submit("[" + oldResource.getClass().getSimpleName() + "] of " + getPath(nodeCache),
+                        () -> {
+                            // single attempt, the predicate result is not a retry signal for node resources
                             cleanup.test(oldResource);
+                            return true;
+                        }, 0, () -> {
                             if (onNodeChange != null) {
                                 onNodeChange.accept(currentResource, oldResource);
                             }
-                        }).start();
+                        }, nanos -> metrics.onCleanupQueued(metricsName, nanos));
                 return;
-
             }
         }
 
@@ -234,5 +834,75 @@ public class ZkNodeResource<E> implements ResourceLoader<E>, AutoCloseable {
         }
     }
 
+    /**
+     * published resource and node state, swapped as a whole so that get() is a single volatile read
+     */
+    private static final class Snapshot<E> {
+
+        private static final Snapshot<?> UNKNOWN = new Snapshot<>(null, ZkNodeState.UNKNOWN, false, 0, null);
+
+        private static final Snapshot<?> NON_EXIST = new Snapshot<>(null, ZkNodeState.NON_EXIST, false, 0, null);
+
+        private static final Snapshot<?> CLOSED = new Snapshot<>(null, ZkNodeState.UNKNOWN, true, 0, null);
+
+        private final E resource;
+
+        private final ZkNodeState state;
+
+        private final boolean closed;
+
+        /**
+         * write the resource was built from, for a missing node the last write seen before the delete
+         */
+        private final long mzxid;
+
+        /**
+         * only tracked with skipUnchanged
+         */
+        @Nullable
+        private final HashCode digest;
+
+        /**
+         * resource with its version, null until published
+         */
+        @Nullable
+        private final Versioned<E> versioned;
+
+        private Snapshot(E resource, ZkNodeState state, boolean closed, long mzxid, @Nullable HashCode digest) {
+            this(resource, state, closed, mzxid, digest, null);
+        }
+
+        private Snapshot(E resource, ZkNodeState state, boolean closed, long mzxid, @Nullable HashCode digest,
+                @Nullable Versioned<E> versioned) {
+            this.resource = resource;
+            this.state = state;
+            this.closed = closed;
+            this.mzxid = mzxid;
+            this.digest = digest;
+            this.versioned = versioned;
+        }
+
+        Snapshot<E> withVersion(Versioned<E> versioned) {
+            return new Snapshot<>(resource, state, closed, mzxid, digest, versioned);
+        }
+
+        static <E> Snapshot<E> nonExist(long lastMzxid) {
+            return lastMzxid == 0 ? nonExist() : new Snapshot<>(null, ZkNodeState.NON_EXIST, false, lastMzxid, null);
+        }
 
+        @SuppressWarnings("unchecked")
+        static <E> Snapshot<E> unknown() {
+            return (Snapshot<E>) UNKNOWN;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <E> Snapshot<E> nonExist() {
+            return (Snapshot<E>) NON_EXIST;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <E> Snapshot<E> closed() {
+            return (Snapshot<E>) CLOSED;
+        }
+    }
 }
@@ -0,0 +1,705 @@
+package com.github.nicklaus4.zk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static java.lang.Thread.holdsLock;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.curator.framework.recipes.cache.TreeCacheEvent.Type.CONNECTION_LOST;
+import static org.apache.curator.framework.recipes.cache.TreeCacheEvent.Type.CONNECTION_SUSPENDED;
+import static org.apache.curator.framework.recipes.cache.TreeCacheEvent.Type.INITIALIZED;
+import static org.apache.curator.utils.ThreadUtils.newThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.executor.AsyncInitializer;
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.github.nicklaus4.zk.executor.KeyedSerialExecutor;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
+import com.github.nicklaus4.zk.model.ShardManifest;
+import com.github.nicklaus4.zk.model.ThrowableFunction;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * one resource split over the children of a node: the node holds a {@link ShardManifest}, each
+ * listed child holds a shard. shards are decoded in parallel and only those whose data changed
+ * since the last build, then merged in manifest order. a new resource is published only once the
+ * manifest and every shard version it pins are in place and decoded, never a mix of old and new.
+ * write with {@link com.github.nicklaus4.zk.utils.ZkNodeUtils#setShardsToZk}.
+ *
+ * @author weishibai
+ * @date 2026/10/18 4:40 PM
+ */
+public class ZkShardedResource<S, E> implements AsyncResourceLoader<E>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZkShardedResource.class);
+
+    private final Object lock = new Object();
+
+    private final ThrowableFunction<ChildData, S, Exception> shardDecoder;
+
+    private final ThrowableFunction<Map<String, S>, E, Exception> merger;
+
+    private final ForkJoinPool decodePool;
+
+    private final Predicate<E> cleanup;
+
+    private final long waitStopPeriod;
+
+    private final long firstLoadTimeoutNanos;
+
+    private final CleanupScheduler cleanupScheduler;
+
+    private final BiConsumer<E, E> onResourceChange;
+
+    private final Supplier<CuratorFramework> curatorFrameworkFactory;
+
+    private final String path;
+
+    private final KeyedSerialExecutor keyedEventExecutor;
+
+    private final AsyncInitializer<E> asyncInitializer = new AsyncInitializer<>();
+
+    private final ZkResourceMetrics metrics;
+
+    private final String metricsName;
+
+    private final long createdNanos = System.nanoTime();
+
+    @GuardedBy("lock")
+    private TreeCache treeCache;
+
+    /**
+     * client treeCache runs on
+     */
+    @GuardedBy("lock")
+    private volatile CuratorFramework treeClient;
+
+    private final ClientRebinder rebinder;
+
+    @GuardedBy("lock")
+    private ExecutorService eventExecutor;
+
+    /**
+     * manifest the resource was built from
+     */
+    @GuardedBy("lock")
+    private ShardManifest manifest;
+
+    /**
+     * decoded shards of the resource by name
+     */
+    @GuardedBy("lock")
+    private Map<String, Decoded<S>> decoded = Collections.emptyMap();
+
+    @GuardedBy("lock")
+    private boolean firstValuePublished;
+
+    @GuardedBy("lock")
+    private long mzxid;
+
+    @GuardedBy("lock")
+    private volatile E resource;
+
+    @GuardedBy("lock")
+    private volatile boolean closed;
+
+    public static <S, E> Builder<S, E> newBuilder() {
+        return new Builder<>();
+    }
+
+    public ZkShardedResource(Builder<S, E> builder) {
+        this.shardDecoder = builder.shardDecoder;
+        this.merger = builder.merger;
+        this.decodePool = builder.decodePool;
+        this.cleanup = builder.cleanup;
+        this.waitStopPeriod = builder.waitStopPeriod;
+        this.firstLoadTimeoutNanos = builder.firstLoadTimeoutNanos;
+        this.cleanupScheduler = builder.cleanupScheduler;
+        this.onResourceChange = builder.onResourceChange;
+        this.curatorFrameworkFactory = builder.curatorFrameworkFactory;
+        this.path = builder.path;
+        this.keyedEventExecutor = builder.keyedEventExecutor;
+        this.metrics = builder.metrics;
+        this.metricsName = builder.metricsName != null ? builder.metricsName : builder.path;
+        this.rebinder = ClientRebinder.create(metricsName, () -> treeClient, curatorFrameworkFactory,
+                this::rebind);
+    }
+
+    private void ensureTreeCacheReady() {
+        assert holdsLock(lock);
+        if (treeCache != null) {
+            return;
+        }
+        eventExecutor = keyedEventExecutor != null ? keyedEventExecutor.lane(path)
+                : newSingleThreadExecutor(newThreadFactory("ShardCache-[" + path + "]"));
+        try {
+            CountDownLatch countDownLatch = new CountDownLatch(1);
+            CuratorFramework client = curatorFrameworkFactory.get();
+            TreeCache target = TreeCache.newBuilder(client, path) //
+                    .setCacheData(true) //
+                    .setMaxDepth(1) //
+                    .setExecutor(eventExecutor)
+                    .build();
+            target.getListenable().addListener((c, event) -> {
+                if (target != treeCache) {
+                    // left over from a cache replaced by rebind
+                    return;
+                }
+                if (event.getType() == INITIALIZED) {
+                    countDownLatch.countDown();
+                    return;
+                }
+                if (countDownLatch.getCount() > 0) {
+                    LOGGER.debug("ignore event before initialized:{}=>{}", event.getType(), path);
+                    return;
+                }
+                if (event.getType() == CONNECTION_SUSPENDED || event.getType() == CONNECTION_LOST) {
+                    LOGGER.info("ignore event:{} for sharded node:{}", event.getType(), path);
+                    return;
+                }
+                metrics.onEventReceived(metricsName);
+                rebuild();
+            });
+            treeCache = target;
+            treeClient = client;
+            target.start();
+            awaitUninterruptibly(countDownLatch);
+            rebinder.register();
+        } catch (Exception e) {
+            if (treeCache != null) {
+                treeCache.close();
+                treeCache = null;
+                treeClient = null;
+            }
+            eventExecutor.shutdownNow();
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * move to a TreeCache on the replacement client, only shards it finds changed are decoded again
+     */
+    private void rebind() {
+        synchronized (lock) {
+            if (closed || resource == null) {
+                return;
+            }
+            if (treeCache != null) {
+                closeTreeCache();
+            }
+            ensureTreeCacheReady();
+        }
+        rebuild();
+    }
+
+    private void closeTreeCache() {
+        assert holdsLock(lock);
+        try {
+            treeCache.close();
+        } catch (Throwable e) {
+            LOGGER.warn("fail to close shard cache of {}", path, e);
+        }
+        treeCache = null;
+        treeClient = null;
+        eventExecutor.shutdown();
+    }
+
+    private void rebuild() {
+        E oldResource;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (resource == null) {
+                // a first get may be waiting for the shards to match the manifest
+                lock.notifyAll();
+                return;
+            }
+            oldResource = resource;
+            try {
+                if (!build()) {
+                    return;
+                }
+            } catch (Exception e) {
+                LOGGER.error("fail to rebuild sharded resource, keep the old one, path:{}", path, e);
+                return;
+            }
+            published();
+            metrics.onEventApplied(metricsName);
+            cleanup(resource, oldResource);
+        }
+    }
+
+    /**
+     * decode what changed and swap resource, manifest and decoded shards together
+     *
+     * @return false when nothing changed or the shards do not match the manifest yet
+     */
+    private boolean build() throws Exception {
+        assert holdsLock(lock);
+        ChildData manifestData = treeCache.getCurrentData(path);
+        if (manifestData == null) {
+            throw new IllegalStateException("no sharded node at " + path);
+        }
+        ShardManifest newManifest = ShardManifest.parse(manifestData.getData());
+        Map<String, ChildData> shards = treeCache.getCurrentChildren(path);
+        long newMzxid = manifestData.getStat() != null ? manifestData.getStat().getMzxid() : 0;
+
+        List<ChildData> changed = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : newManifest.getShards().entrySet()) {
+            ChildData shard = shards == null ? null : shards.get(entry.getKey());
+            if (shard == null || shard.getStat() == null || entry.getValue() != ShardManifest.ANY_VERSION
+                    && shard.getStat().getVersion() != entry.getValue()) {
+                LOGGER.debug("shard {} of {} not at manifest version {} yet", entry.getKey(), path, entry.getValue());
+                return false;
+            }
+            newMzxid = Math.max(newMzxid, shard.getStat().getMzxid());
+            Decoded<S> previous = decoded.get(entry.getKey());
+            // mzxid rather than version, which restarts when a shard is recreated
+            if (previous == null || previous.mzxid != shard.getStat().getMzxid()) {
+                changed.add(shard);
+            }
+        }
+        if (changed.isEmpty() && newManifest.equals(manifest)) {
+            return false;
+        }
+
+        Map<String, Decoded<S>> newDecoded = decodeAll(changed);
+        ImmutableMap.Builder<String, Decoded<S>> nextDecoded = ImmutableMap.builder();
+        ImmutableMap.Builder<String, S> merged = ImmutableMap.builder();
+        for (String name : newManifest.getShards().keySet()) {
+            Decoded<S> shard = newDecoded.containsKey(name) ? newDecoded.get(name) : decoded.get(name);
+            nextDecoded.put(name, shard);
+            merged.put(name, shard.value);
+        }
+        ImmutableMap<String, S> mergedShards = merged.build();
+        resource = timed(() -> merger.apply(mergedShards));
+        decoded = nextDecoded.build();
+        manifest = newManifest;
+        mzxid = newMzxid;
+        return true;
+    }
+
+    /**
+     * build the first resource, waiting out a write caught halfway: every event on the tree wakes
+     * the wait to try again, until the shards match the manifest or the first load timeout passes
+     */
+    private void buildFirst() throws Exception {
+        assert holdsLock(lock);
+        final long deadline = System.nanoTime() + firstLoadTimeoutNanos;
+        while (!build()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IllegalStateException("shards of " + path + " do not match its manifest after "
+                        + NANOSECONDS.toMillis(firstLoadTimeoutNanos) + "ms");
+            }
+            LOGGER.debug("wait up to {}ms for shards of {} to match its manifest", NANOSECONDS.toMillis(remaining),
+                    path);
+            try {
+                NANOSECONDS.timedWait(lock, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for shards of " + path, e);
+            }
+            if (closed) {
+                throw new IllegalStateException("zkNode has been closed.");
+            }
+        }
+    }
+
+    private Map<String, Decoded<S>> decodeAll(List<ChildData> shards) throws Exception {
+        Map<String, Decoded<S>> result = new HashMap<>();
+        if (shards.size() == 1) {
+            ChildData shard = shards.get(0);
+            result.put(nameOf(shard), new Decoded<>(shard.getStat().getMzxid(), shardDecoder.apply(shard)));
+            return result;
+        }
+        List<ForkJoinTask<S>> tasks = new ArrayList<>(shards.size());
+        for (ChildData shard : shards) {
+            tasks.add(decodePool.submit(() -> shardDecoder.apply(shard)));
+        }
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                ChildData shard = shards.get(i);
+                result.put(nameOf(shard), new Decoded<>(shard.getStat().getMzxid(), tasks.get(i).get()));
+            }
+        } catch (ExecutionException e) {
+            tasks.forEach(task -> task.cancel(false));
+            Throwable cause = e.getCause();
+            throwIfInstanceOf(cause, Exception.class);
+            throwIfUnchecked(cause);
+            throw new RuntimeException(cause);
+        }
+        return result;
+    }
+
+    private static String nameOf(ChildData shard) {
+        return shard.getPath().substring(shard.getPath().lastIndexOf('/') + 1);
+    }
+
+    private E timed(Callable<E> build) throws Exception {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final E built = build.call();
+            success = true;
+            return built;
+        } finally {
+            metrics.onFactory(metricsName, System.nanoTime() - start, success);
+        }
+    }
+
+    private void published() {
+        assert holdsLock(lock);
+        if (!firstValuePublished) {
+            firstValuePublished = true;
+            metrics.onFirstValue(metricsName, System.nanoTime() - createdNanos);
+        }
+        metrics.onVersion(metricsName, mzxid);
+    }
+
+    private void cleanup(E currentResource, E oldResource) {
+        if (oldResource != null) {
+            if (currentResource != oldResource) {
+                cleanupScheduler.submit("[" + oldResource.getClass().getSimpleName() + "] of " + path,
+                        () -> cleanup.test(oldResource), waitStopPeriod, () -> {
+                            if (onResourceChange != null) {
+                                onResourceChange.accept(currentResource, oldResource);
+                            }
+                        }, nanos -> metrics.onCleanupQueued(metricsName, nanos));
+                return;
+            }
+        }
+
+        if (onResourceChange != null) {
+            onResourceChange.accept(currentResource, oldResource);
+        }
+    }
+
+    /**
+     * manifest of the current resource, null before the first build
+     */
+    @Nullable
+    public ShardManifest currentManifest() {
+        synchronized (lock) {
+            return manifest;
+        }
+    }
+
+    @Override
+    public E get() {
+        metrics.onGet(metricsName);
+        if (closed) {
+            throw new IllegalStateException("zkNode has been closed.");
+        }
+
+        if (null == resource) {
+            synchronized (lock) {
+                if (closed) {
+                    throw new IllegalStateException("zkNode has been closed.");
+                }
+
+                if (null == resource) {
+                    ensureTreeCacheReady();
+                    try {
+                        buildFirst();
+                        published();
+                        if (onResourceChange != null) {
+                            onResourceChange.accept(resource, null);
+                        }
+                    } catch (Exception e) {
+                        throwIfUnchecked(e);
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }
+        return resource;
+    }
+
+    @Override
+    public CompletableFuture<E> getAsync() {
+        if (closed) {
+            CompletableFuture<E> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("zkNode has been closed."));
+            return failed;
+        }
+
+        E current = resource;
+        if (current != null) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return asyncInitializer.load(this::get);
+    }
+
+    private static final class Decoded<S> {
+
+        private final long mzxid;
+
+        private final S value;
+
+        Decoded(long mzxid, S value) {
+            this.mzxid = mzxid;
+            this.value = value;
+        }
+    }
+
+    public static class Builder<S, E> {
+
+        private ThrowableFunction<ChildData, S, Exception> shardDecoder;
+
+        private ThrowableFunction<Map<String, S>, E, Exception> merger;
+
+        private ForkJoinPool decodePool;
+
+        private String path;
+
+        private Supplier<CuratorFramework> curatorFrameworkFactory;
+
+        private Predicate<E> cleanup;
+
+        private long waitStopPeriod;
+
+        private long firstLoadTimeoutNanos = SECONDS.toNanos(10);
+
+        private CleanupScheduler cleanupScheduler;
+
+        private KeyedSerialExecutor keyedEventExecutor;
+
+        private BiConsumer<E, E> onResourceChange;
+
+        private ZkResourceMetrics metrics;
+
+        private String metricsName;
+
+        /**
+         * node holding the manifest, shards are its children
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> path(String path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * called concurrently for different shards, must not touch shared state unguarded
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> shardDecoder(ThrowableFunction<ChildData, S, Exception> shardDecoder) {
+            this.shardDecoder = shardDecoder;
+            return this;
+        }
+
+        /**
+         * @param merger gets shard name to decoded shard in manifest order
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> merger(ThrowableFunction<Map<String, S>, E, Exception> merger) {
+            this.merger = merger;
+            return this;
+        }
+
+        /**
+         * where shards are decoded, {@link ForkJoinPool#commonPool()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> decodePool(@Nonnull ForkJoinPool decodePool) {
+            this.decodePool = checkNotNull(decodePool);
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> onResourceChange(BiConsumer<E, E> callback) {
+            this.onResourceChange = callback;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> curator(Supplier<CuratorFramework> curatorFactory) {
+            this.curatorFrameworkFactory = curatorFactory;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> curator(CuratorFramework curator) {
+            this.curatorFrameworkFactory = () -> curator;
+            return this;
+        }
+
+        /**
+         * ms to wait before the first cleanup attempt of a replaced resource,
+         * a failed attempt is retried by the cleanup scheduler with backoff from there
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> withWaitStopPeriod(long waitStopPeriod) {
+            this.waitStopPeriod = waitStopPeriod;
+            return this;
+        }
+
+        /**
+         * how long the first get waits for shards still being written to match the manifest,
+         * 10s by default, 0 to fail at once
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> firstLoadTimeout(long timeout, @Nonnull TimeUnit unit) {
+            checkArgument(timeout >= 0, "negative timeout");
+            this.firstLoadTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * dispatch events on a lane of a shared executor instead of a thread per resource
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> eventExecutor(@Nonnull KeyedSerialExecutor eventExecutor) {
+            this.keyedEventExecutor = checkNotNull(eventExecutor);
+            return this;
+        }
+
+        /**
+         * {@link ZkResourceMetrics#getDefault()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> metrics(@Nonnull ZkResourceMetrics metrics) {
+            return metrics(metrics, null);
+        }
+
+        /**
+         * @param name reported with every metric, null for the path
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> metrics(@Nonnull ZkResourceMetrics metrics, @Nullable String name) {
+            this.metrics = checkNotNull(metrics);
+            this.metricsName = name;
+            return this;
+        }
+
+        /**
+         * where replaced resources are released, {@link CleanupScheduler#shared()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> cleanupScheduler(@Nonnull CleanupScheduler cleanupScheduler) {
+            this.cleanupScheduler = checkNotNull(cleanupScheduler);
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<S, E> cleanup(Predicate<E> cleanup) {
+            this.cleanup = cleanup;
+            return this;
+        }
+
+        @Nonnull
+        public ZkShardedResource<S, E> build() {
+            ensure();
+            return new ZkShardedResource<>(this);
+        }
+
+        private void ensure() {
+            checkNotNull(shardDecoder, "shardDecoder is required");
+            checkNotNull(merger, "merger is required");
+            checkNotNull(path);
+            checkNotNull(curatorFrameworkFactory);
+
+            if (onResourceChange != null) {
+                BiConsumer<E, E> target = onResourceChange;
+                onResourceChange = (t, u) -> {
+                    try {
+                        target.accept(t, u);
+                    } catch (Throwable e) {
+                        LOGGER.error("onResourceChange error: ", e);
+                    }
+                };
+            }
+
+            if (decodePool == null) {
+                decodePool = ForkJoinPool.commonPool();
+            }
+
+            if (cleanupScheduler == null) {
+                cleanupScheduler = CleanupScheduler.shared();
+            }
+
+            if (metrics == null) {
+                metrics = ZkResourceMetrics.getDefault();
+            }
+
+            if (cleanup == null) {
+                cleanup(t -> {
+                    if (t instanceof Closeable) {
+                        try {
+                            ((Closeable) t).close();
+                        } catch (Throwable e) {
+                            throwIfUnchecked(e);
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return true;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        rebinder.unregister();
+        synchronized (lock) {
+            if (resource != null && cleanup != null) {
+                cleanup.test(resource);
+            }
+            if (treeCache != null) {
+                closeTreeCache();
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+}
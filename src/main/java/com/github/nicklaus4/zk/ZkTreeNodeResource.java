@@ -1,11 +1,12 @@
 package com.github.nicklaus4.zk;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
-import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
-import static java.lang.Thread.MIN_PRIORITY;
 import static java.lang.Thread.holdsLock;
+import static java.util.Collections.emptyList;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.commons.lang3.StringUtils.removeStart;
@@ -15,27 +16,54 @@ import static org.apache.curator.framework.recipes.cache.TreeCacheEvent.Type.INI
 import static org.apache.curator.utils.ThreadUtils.newThreadFactory;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.nicklaus4.zk.model.ResourceLoader;
+import com.github.nicklaus4.zk.executor.AsyncInitializer;
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.github.nicklaus4.zk.executor.EventCoalescer;
+import com.github.nicklaus4.zk.executor.KeyedSerialExecutor;
+import com.github.nicklaus4.zk.executor.RefreshPipeline;
+import com.github.nicklaus4.zk.executor.ResourceExecutors;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.model.DeltaFactory;
+import com.github.nicklaus4.zk.model.StatField;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
 import com.github.nicklaus4.zk.model.ThrowableFunction;
+import com.github.nicklaus4.zk.model.TreeDelta;
+import com.github.nicklaus4.zk.model.Versioned;
+import com.github.nicklaus4.zk.model.VersionedResourceLoader;
+import com.github.nicklaus4.zk.snapshot.SnapshotStore;
+import com.github.nicklaus4.zk.utils.CompactTree;
+import com.github.nicklaus4.zk.utils.PathGlob;
+import com.github.nicklaus4.zk.utils.PersistentHashMap;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * zk tree node resource
@@ -43,100 +71,608 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
  * @author weishibai
  * @date 2019/03/27 11:11 AM
  */
-public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
+public class ZkTreeNodeResource<E> implements AsyncResourceLoader<E>, VersionedResourceLoader<E>, Closeable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ZkTreeNodeResource.class);
 
+    private static final long SNAPSHOT_WRITE_WINDOW_MS = 1000;
+
+    private static final long SNAPSHOT_WRITE_MAX_DELAY_MS = 10 * 1000;
+
     private final Object lock = new Object();
 
     private final ThrowableFunction<Map<String, ChildData>, E, Exception> factory;
 
+    /**
+     * not null only in incremental mode
+     */
+    private final DeltaFactory<E> deltaFactory;
+
     private final Predicate<E> cleanup;
 
+    /**
+     * stages a built resource passes before it is published, null for none
+     */
+    private final RefreshPipeline<E> refreshPipeline;
+
     private final long waitStopPeriod;
 
+    private final CleanupScheduler cleanupScheduler;
+
     private final BiConsumer<E, E> onResourceChange;
 
     private final Supplier<CuratorFramework> curatorFrameworkFactory;
 
     private final String path;
 
+    private final EventCoalescer coalescer;
+
+    /**
+     * levels below path the TreeCache walks, -1 for no limit
+     */
+    private final int maxDepth;
+
+    /**
+     * relative paths handed to factories, null for all
+     */
+    private final Predicate<String> selector;
+
+    /**
+     * prunes subtrees the TreeCache need not watch, null for none
+     */
+    private final TreeCacheSelector treeSelector;
+
+    /**
+     * relative paths whose payload is kept, null to keep every payload in the TreeCache
+     */
+    private final Predicate<String> payloadFilter;
+
+    /**
+     * payloads seen before the TreeCache initialized, the TreeCache itself keeps none with payloadFilter
+     */
+    private final Map<String, ChildData> initialPayloads = new ConcurrentHashMap<>();
+
+    private final KeyedSerialExecutor keyedEventExecutor;
+
     @GuardedBy("lock")
     private volatile TreeCache treeCache;
 
+    /**
+     * client treeCache runs on
+     */
+    @GuardedBy("lock")
+    private volatile CuratorFramework treeClient;
+
+    private final ClientRebinder rebinder;
+
+    /**
+     * also runs coalesced rebuilds
+     */
+    @GuardedBy("lock")
+    private volatile ExecutorService eventExecutor;
+
+    /**
+     * TreeCache synced and, in incremental mode, the tree map seeded from it
+     */
+    @GuardedBy("lock")
+    private boolean treeReady;
+
+    /**
+     * next rebuild must not patch the current resource
+     */
+    @GuardedBy("lock")
+    private boolean needsFullBuild;
+
+    /**
+     * bumped whenever the tree state a build starts from changes under it, i.e. on attach and
+     * publish, so a build staged outside the lock can tell it went stale
+     */
+    @GuardedBy("lock")
+    private long generation;
+
+    private final SnapshotStore snapshotStore;
+
+    private final String snapshotKey;
+
+    private final EventCoalescer snapshotWriter;
+
+    private volatile Map<String, ChildData> latestTree;
+
+    private final Object snapshotWriteLock = new Object();
+
+    private final AsyncInitializer<E> asyncInitializer = new AsyncInitializer<>();
+
+    private final ZkResourceMetrics metrics;
+
+    private final String metricsName;
+
+    private final long createdNanos = System.nanoTime();
+
+    @GuardedBy("lock")
+    private boolean firstValuePublished;
+
+    /**
+     * max mzxid over the tree the resource was last built from
+     */
+    @GuardedBy("lock")
+    private long mzxid;
+
+    /**
+     * published resource with its version, swapped as a whole, null until the first publish
+     */
     @GuardedBy("lock")
-    private volatile E resource;
+    private volatile Versioned<E> versioned;
 
     @GuardedBy("lock")
     private volatile boolean closed;
 
+    /**
+     * relative path to data, maintained from events in incremental mode
+     */
+    @GuardedBy("lock")
+    private PersistentHashMap<String, ChildData> tree = PersistentHashMap.empty();
+
+    /**
+     * changes not yet accepted by deltaFactory, kept across a failed build so none is lost
+     */
+    @GuardedBy("lock")
+    private List<TreeDelta> pendingChanges = new ArrayList<>();
+
     public static <E> Builder<E> newBuilder() {
         return new Builder<>();
     }
 
     public ZkTreeNodeResource(Builder<E> builder) {
         this.factory = builder.factory;
+        if (builder.deltaFactory != null) {
+            this.deltaFactory = builder.deltaFactory;
+        } else if (builder.incremental) {
+            this.deltaFactory = DeltaFactory.rebuilding(builder.factory);
+        } else {
+            this.deltaFactory = null;
+        }
         this.cleanup = builder.cleanup;
+        this.refreshPipeline = builder.refreshPipeline;
         this.waitStopPeriod = builder.waitStopPeriod;
+        this.cleanupScheduler = builder.cleanupScheduler;
+        this.keyedEventExecutor = builder.keyedEventExecutor;
         this.path = builder.path;
+        this.maxDepth = builder.maxDepth;
+        this.payloadFilter = builder.payloadFilter;
+        if (builder.glob != null) {
+            this.selector = builder.glob::matches;
+            this.treeSelector = globSelector(builder.glob);
+        } else {
+            this.selector = builder.selector;
+            this.treeSelector = null;
+        }
         this.onResourceChange = builder.onResourceChange;
         this.curatorFrameworkFactory = builder.curatorFrameworkFactory;
+        this.snapshotStore = builder.snapshotStore;
+        this.snapshotKey = builder.snapshotKey != null ? builder.snapshotKey : builder.path;
+        this.metrics = builder.metrics;
+        this.metricsName = builder.metricsName != null ? builder.metricsName : builder.path;
+        this.rebinder = ClientRebinder.create(metricsName, () -> treeClient, curatorFrameworkFactory,
+                this::rebind);
+        this.snapshotWriter = snapshotStore == null ? null : new EventCoalescer(ResourceExecutors.bootstrap(),
+                ResourceExecutors.bootstrap(), SNAPSHOT_WRITE_WINDOW_MS, SNAPSHOT_WRITE_MAX_DELAY_MS, MILLISECONDS,
+                this::writeSnapshot);
+        this.coalescer = builder.coalesceWindow > 0 ? new EventCoalescer(builder.coalesceScheduler,
+                command -> eventExecutor.execute(command), builder.coalesceWindow, builder.coalesceMaxStaleness,
+                builder.coalesceUnit, () -> {
+                    try {
+                        rebuild();
+                    } catch (Exception e) {
+                        LOGGER.error("fail to rebuild tree resource, path:{}", path, e);
+                    }
+                }) : null;
     }
 
     private void ensureTreeCacheReady() {
         assert holdsLock(lock);
         if (null == treeCache) {
-            try {
-                CountDownLatch countDownLatch = new CountDownLatch(1);
-                TreeCache target = TreeCache.newBuilder(curatorFrameworkFactory.get(), path) //
-                        .setCacheData(true) //
-                        .setExecutor(newSingleThreadExecutor(
-                                newThreadFactory("TreeCache-[" + path + "]")))
-                        .build();
-
-                target.getListenable().addListener((c, event) -> {
-                    if (event.getType() == INITIALIZED) {
-                        countDownLatch.countDown();
-                        return;
-                    }
+            startTreeCache(false);
+            attachTreeCache();
+        }
+    }
 
-                    if (countDownLatch.getCount() > 0) {
-                        LOGGER.debug("ignore event before initialized:{}=>{}", event.getType(), path);
-                        return;
+    /**
+     * @param attachOnInitialized attach from the INITIALIZED event instead of waiting for it here
+     */
+    private void startTreeCache(boolean attachOnInitialized) {
+        assert holdsLock(lock);
+        eventExecutor = keyedEventExecutor != null ? keyedEventExecutor.lane(path)
+                : newSingleThreadExecutor(newThreadFactory("TreeCache-[" + path + "]"));
+        try {
+            CountDownLatch countDownLatch = new CountDownLatch(1);
+            CuratorFramework client = curatorFrameworkFactory.get();
+            TreeCache.Builder cacheBuilder = TreeCache.newBuilder(client, path) //
+                    .setCacheData(payloadFilter == null) //
+                    .setExecutor(eventExecutor);
+            if (maxDepth >= 0) {
+                cacheBuilder.setMaxDepth(maxDepth);
+            }
+            if (treeSelector != null) {
+                cacheBuilder.setSelector(treeSelector);
+            }
+            TreeCache target = cacheBuilder.build();
+
+            target.getListenable().addListener((c, event) -> {
+                if (target != treeCache) {
+                    // left over from a cache replaced by rebind
+                    return;
+                }
+                if (event.getType() == INITIALIZED) {
+                    countDownLatch.countDown();
+                    if (attachOnInitialized) {
+                        reconcile();
                     }
+                    return;
+                }
 
-                    if (event.getType() == CONNECTION_SUSPENDED || event.getType() == CONNECTION_LOST) {
-                        LOGGER.info("ignore event:{} for tree node:{}", event.getType(), path);
+                if (countDownLatch.getCount() > 0) {
+                    stashPayload(event);
+                    LOGGER.debug("ignore event before initialized:{}=>{}", event.getType(), path);
+                    return;
+                }
+
+                if (event.getType() == CONNECTION_SUSPENDED || event.getType() == CONNECTION_LOST) {
+                    LOGGER.info("ignore event:{} for tree node:{}", event.getType(), path);
+                    return;
+                }
+                metrics.onEventReceived(metricsName);
+
+                if (deltaFactory != null) {
+                    TreeDelta delta = toDelta(event);
+                    if (delta == null) {
                         return;
                     }
-
-                    E oldResource;
                     synchronized (lock) {
-                        oldResource = resource;
-                        resource = doFactory();
-                        cleanup(resource, oldResource);
+                        tree = delta.isRemoved() ? tree.without(delta.getPath())
+                                : tree.with(delta.getPath(), delta.getData());
+                        pendingChanges.add(delta);
                     }
-                });
-                target.start();
+                }
+
+                if (coalescer != null) {
+                    coalescer.submit();
+                } else {
+                    rebuild();
+                }
+            });
+            treeCache = target;
+            treeClient = client;
+            target.start();
+            rebinder.register();
+            if (!attachOnInitialized) {
                 awaitUninterruptibly(countDownLatch);
-                treeCache = target;
+            }
+        } catch (Exception e) {
+            if (treeCache != null) {
+                treeCache.close();
+                treeCache = null;
+                treeClient = null;
+            }
+            eventExecutor.shutdownNow();
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void attachTreeCache() {
+        assert holdsLock(lock);
+        if (deltaFactory != null) {
+            // walk once, every later change is applied from its event
+            Map<String, ChildData> map = Maps.newHashMap();
+            generateFullTree(map, treeCache, path);
+            if (payloadFilter != null) {
+                restorePayloads(map);
+            }
+            tree = PersistentHashMap.copyOf(map);
+            pendingChanges = new ArrayList<>();
+        }
+        generation++;
+        treeReady = true;
+    }
+
+    /**
+     * move to a TreeCache on the replacement client, the resource is rebuilt in full once it synced
+     */
+    private void rebind() {
+        synchronized (lock) {
+            if (closed || resource() == null) {
+                return;
+            }
+            if (treeCache != null) {
+                closeTreeCache();
+            }
+            treeReady = false;
+            startTreeCache(true);
+        }
+    }
+
+    private void closeTreeCache() {
+        assert holdsLock(lock);
+        try {
+            treeCache.close();
+        } catch (Throwable e) {
+            LOGGER.warn("fail to close tree cache of {}", path, e);
+        }
+        treeCache = null;
+        treeClient = null;
+        eventExecutor.shutdown();
+    }
+
+    /**
+     * replace the resource built from a snapshot, or on a dead client, once the TreeCache synced
+     */
+    private void reconcile() {
+        E oldResource;
+        Build<E> build;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            attachTreeCache();
+            // any rebuild until this one is published must not patch the snapshot resource
+            needsFullBuild = true;
+            oldResource = resource();
+            try {
+                build = fullBuild();
             } catch (Exception e) {
-                throwIfUnchecked(e);
-                throw new RuntimeException(e);
+                LOGGER.error("fail to rebuild tree resource from zk, keep snapshot one, path:{}", path, e);
+                return;
+            }
+        }
+        try {
+            passStages(build.value, oldResource);
+        } catch (RuntimeException e) {
+            LOGGER.error("tree resource from zk failed the refresh pipeline, keep snapshot one, path:{}", path, e);
+            return;
+        }
+        synchronized (lock) {
+            if (!commit(build)) {
+                discard(build, oldResource);
+                return;
+            }
+            cleanup(resource(), oldResource);
+        }
+    }
+
+    /**
+     * build under the lock, pass the refresh pipeline outside it, publish unless the tree state
+     * moved on meanwhile
+     */
+    private void rebuild() throws Exception {
+        E oldResource;
+        Build<E> build;
+        synchronized (lock) {
+            if (closed || !treeReady) {
+                return;
+            }
+            oldResource = resource();
+            if (needsFullBuild || deltaFactory == null) {
+                build = fullBuild();
+            } else {
+                if (pendingChanges.isEmpty()) {
+                    return;
+                }
+                final List<TreeDelta> changes = new ArrayList<>(pendingChanges);
+                final PersistentHashMap<String, ChildData> current = tree;
+                E built = timed(() -> deltaFactory.apply(oldResource, current, changes));
+                long next = mzxid;
+                for (TreeDelta change : changes) {
+                    if (!change.isRemoved() && change.getData().getStat() != null) {
+                        next = Math.max(next, change.getData().getStat().getMzxid());
+                    }
+                }
+                build = new Build<>(built, current, next, changes.size(), false, generation);
+            }
+        }
+        // a failing stage throws here and leaves pending changes for the next rebuild
+        passStages(build.value, oldResource);
+        synchronized (lock) {
+            if (!commit(build)) {
+                discard(build, oldResource);
+                return;
             }
+            metrics.onEventApplied(metricsName);
+            cleanup(resource(), oldResource);
         }
     }
 
-    private E doFactory() throws Exception {
+    /**
+     * build from the whole current tree, ignoring the previous resource
+     */
+    private Build<E> fullBuild() throws Exception {
+        assert holdsLock(lock);
+        if (deltaFactory != null) {
+            final PersistentHashMap<String, ChildData> current = tree;
+            E built = timed(() -> deltaFactory.apply(null, current, emptyList()));
+            return new Build<>(built, current, maxMzxid(current), pendingChanges.size(), true, generation);
+        }
         Map<String, ChildData> map = Maps.newHashMap();
         generateFullTree(map, treeCache, path);
-        return factory.apply(map);
+        E built = timed(() -> factory.apply(map));
+        return new Build<>(built, map, maxMzxid(map), 0, true, generation);
+    }
+
+    /**
+     * run the refresh pipeline on a value that is not published yet, a failing stage cleans it up
+     * and throws
+     */
+    private void passStages(E built, @Nullable E current) {
+        if (refreshPipeline != null && built != null && built != current) {
+            // a delta factory may hand back the current resource, which stays as it is
+            refreshPipeline.runNow(built, cleanup);
+        }
+    }
+
+    /**
+     * publish build unless closed or the tree state it started from changed meanwhile
+     */
+    private boolean commit(Build<E> build) {
+        assert holdsLock(lock);
+        if (closed || build.generation != generation) {
+            return false;
+        }
+        generation++;
+        pendingChanges.subList(0, build.applied).clear();
+        if (build.full) {
+            needsFullBuild = false;
+        }
+        mzxid = build.mzxid;
+        saveSnapshot(build.tree);
+        published(build.value);
+        return true;
+    }
+
+    private void discard(Build<E> build, E oldResource) {
+        LOGGER.info("tree of {} changed while staging a rebuild, drop it.", path);
+        if (build.value != null && build.value != oldResource) {
+            try {
+                cleanup.test(build.value);
+            } catch (Throwable e) {
+                LOGGER.error("fail to clean up dropped resource of {}", path, e);
+            }
+        }
+    }
+
+    private void saveSnapshot(Map<String, ChildData> map) {
+        if (snapshotWriter != null) {
+            latestTree = map;
+            snapshotWriter.submit();
+        }
+    }
+
+    private void writeSnapshot() {
+        // a run overtaken by a newer one must not write its older tree last
+        synchronized (snapshotWriteLock) {
+            snapshotStore.saveTree(snapshotKey, latestTree);
+        }
+    }
+
+    private TreeDelta toDelta(TreeCacheEvent event) {
+        ChildData data = event.getData();
+        if (data == null) {
+            return null;
+        }
+        String relativePath = removeStart(data.getPath(), path);
+        if (relativePath.isEmpty()) {
+            // root itself is not part of the factory map
+            return null;
+        }
+        if (selector != null && !selector.test(relativePath)) {
+            return null;
+        }
+        switch (event.getType()) {
+            case NODE_ADDED:
+            case NODE_UPDATED:
+                return new TreeDelta(event.getType(), relativePath, keepPayload(relativePath, data));
+            case NODE_REMOVED:
+                return new TreeDelta(event.getType(), relativePath, data);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * events carry payloads even when the TreeCache does not keep them, drop the unwanted ones
+     */
+    private ChildData keepPayload(String relativePath, ChildData data) {
+        if (payloadFilter == null || data.getData() == null || payloadFilter.test(relativePath)) {
+            return data;
+        }
+        return new ChildData(data.getPath(), data.getStat(), null);
+    }
+
+    private void stashPayload(TreeCacheEvent event) {
+        if (payloadFilter == null) {
+            return;
+        }
+        TreeDelta delta = toDelta(event);
+        if (delta == null) {
+            return;
+        }
+        if (delta.isRemoved() || delta.getData().getData() == null) {
+            initialPayloads.remove(delta.getPath());
+        } else {
+            initialPayloads.put(delta.getPath(), delta.getData());
+        }
+    }
+
+    /**
+     * put back payloads of the initial walk, a stale one is left for its pending update event
+     */
+    private void restorePayloads(Map<String, ChildData> map) {
+        initialPayloads.forEach((relativePath, stashed) -> {
+            ChildData current = map.get(relativePath);
+            if (current != null && current.getStat() != null && stashed.getStat() != null
+                    && current.getStat().getMzxid() == stashed.getStat().getMzxid()) {
+                map.put(relativePath, stashed);
+            }
+        });
+        initialPayloads.clear();
+    }
+
+    private TreeCacheSelector globSelector(PathGlob glob) {
+        return new TreeCacheSelector() {
+
+            @Override
+            public boolean traverseChildren(String fullPath) {
+                String relativePath = removeStart(fullPath, path);
+                return relativePath.isEmpty() || glob.mayMatchBelow(relativePath);
+            }
+
+            @Override
+            public boolean acceptChild(String fullPath) {
+                String relativePath = removeStart(fullPath, path);
+                return glob.matches(relativePath) || glob.mayMatchBelow(relativePath);
+            }
+        };
+    }
+
+    private E timed(Callable<E> build) throws Exception {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            E built = build.call();
+            success = true;
+            return built;
+        } finally {
+            metrics.onFactory(metricsName, System.nanoTime() - start, success);
+        }
+    }
+
+    private void published(E value) {
+        assert holdsLock(lock);
+        if (!firstValuePublished) {
+            firstValuePublished = true;
+            metrics.onFirstValue(metricsName, System.nanoTime() - createdNanos);
+        }
+        versioned = Versioned.next(versioned, value, mzxid);
+        metrics.onVersion(metricsName, mzxid);
+    }
+
+    private static long maxMzxid(Map<String, ChildData> tree) {
+        long max = 0;
+        for (ChildData data : tree.values()) {
+            if (data.getStat() != null) {
+                max = Math.max(max, data.getStat().getMzxid());
+            }
+        }
+        return max;
     }
 
     private void generateFullTree(Map<String, ChildData> map, TreeCache cache, String rootPath) {
         Map<String, ChildData> thisMap = cache.getCurrentChildren(rootPath);
         if (thisMap != null) {
-            thisMap.values().forEach(c -> map.put(removeStart(c.getPath(), path), c));
+            thisMap.values().forEach(c -> {
+                String relativePath = removeStart(c.getPath(), path);
+                if (selector == null || selector.test(relativePath)) {
+                    map.put(relativePath, c);
+                }
+            });
             thisMap.values().forEach(c -> generateFullTree(map, cache, c.getPath()));
         }
     }
@@ -144,29 +680,12 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
     private void cleanup(E currentResource, E oldResource) {
         if (oldResource != null) {
             if (currentResource != oldResource) {
-                new ThreadFactoryBuilder() //
-                        .setNameFormat("old [" + oldResource.getClass().getSimpleName()
-                                + "] cleanup thread-[%d]")
-                        .setUncaughtExceptionHandler(
-                                (t, e) -> LOGGER.error("fail to cleanup resource, path:{}, {}",
-                                        path, oldResource.getClass().getSimpleName(), e)) //
-                        .setPriority(MIN_PRIORITY) //
-                        .setDaemon(true) //
-                        .build() //
-                        .newThread(() -> {
-                            do {
-                                if (waitStopPeriod > 0) {
-                                    sleepUninterruptibly(waitStopPeriod, MILLISECONDS);
-                                }
-
-                                if (cleanup.test(oldResource)) {
-                                    break;
-                                }
-                            } while (true);
+                cleanupScheduler.submit("[" + oldResource.getClass().getSimpleName() + "] of " + path,
+                        () -> cleanup.test(oldResource), waitStopPeriod, () -> {
                             if (onResourceChange != null) {
                                 onResourceChange.accept(currentResource, oldResource);
                             }
-                        }).start();
+                        }, nanos -> metrics.onCleanupQueued(metricsName, nanos));
                 return;
             }
         }
@@ -176,24 +695,42 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
         }
     }
 
+    /**
+     * tree events that were folded into another rebuild, always 0 without coalescing
+     */
+    public long getCoalescedEventCount() {
+        return coalescer == null ? 0 : coalescer.getCoalescedEventCount();
+    }
+
     @Override
     public E get() {
+        metrics.onGet(metricsName);
         if (closed) {
             throw new IllegalStateException("zkNode has been closed.");
         }
 
-        if (null == resource) {
+        if (null == resource()) {
             synchronized (lock) {
                 if (closed) {
                     throw new IllegalStateException("zkNode has been closed.");
                 }
 
-                if (null == resource) {
+                if (null == resource()) {
+                    if (snapshotStore != null && null == treeCache) {
+                        E booted = bootFromSnapshot();
+                        if (booted != null) {
+                            return booted;
+                        }
+                    }
+
                     ensureTreeCacheReady();
                     try {
-                        resource = doFactory();
+                        Build<E> build = fullBuild();
+                        // nothing published yet, readers wait for the stages either way
+                        passStages(build.value, null);
+                        commit(build);
                         if (onResourceChange != null) {
-                            onResourceChange.accept(resource, null);
+                            onResourceChange.accept(resource(), null);
                         }
                     } catch (Exception e) {
                         throwIfUnchecked(e);
@@ -202,13 +739,126 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
                 }
             }
         }
-        return resource;
+        return resource();
+    }
+
+    /**
+     * serve the last saved tree right away and let the TreeCache sync in background
+     */
+    private E bootFromSnapshot() {
+        assert holdsLock(lock);
+        Map<String, ChildData> saved = snapshotStore.loadTree(snapshotKey);
+        if (saved == null) {
+            return null;
+        }
+        E built;
+        try {
+            if (deltaFactory != null) {
+                tree = PersistentHashMap.copyOf(saved);
+                built = timed(() -> deltaFactory.apply(null, tree, emptyList()));
+            } else {
+                built = timed(() -> factory.apply(saved));
+            }
+            passStages(built, null);
+            mzxid = maxMzxid(saved);
+        } catch (Exception e) {
+            LOGGER.warn("fail to build from snapshot {}, boot from zk.", snapshotKey, e);
+            snapshotStore.delete(snapshotKey);
+            tree = PersistentHashMap.empty();
+            return null;
+        }
+        published(built);
+        if (onResourceChange != null) {
+            onResourceChange.accept(built, null);
+        }
+        startTreeCache(true);
+        return built;
+    }
+
+    /**
+     * version is the max mzxid over the tree, grows by one when a change such as a deletion did
+     * not raise it
+     */
+    @Override
+    public Versioned<E> getVersioned() {
+        get();
+        return versioned;
+    }
+
+    /**
+     * build from the whole tree and publish it, the work every change costs without incremental
+     * mode. for benchmarks to measure it without zk traffic, keeps the current value until the
+     * TreeCache synced.
+     */
+    @VisibleForTesting
+    public E rebuildFully() throws Exception {
+        get();
+        synchronized (lock) {
+            needsFullBuild = true;
+        }
+        rebuild();
+        return resource();
+    }
+
+    @Nullable
+    private E resource() {
+        final Versioned<E> current = versioned;
+        return current == null ? null : current.getValue();
+    }
+
+    @Override
+    public CompletableFuture<E> getAsync() {
+        if (closed) {
+            CompletableFuture<E> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("zkNode has been closed."));
+            return failed;
+        }
+
+        E current = resource();
+        if (current != null) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return asyncInitializer.load(this::get);
+    }
+
+    /**
+     * value built under the lock with the tree state it covers, published by commit
+     */
+    private static final class Build<E> {
+
+        private final E value;
+
+        private final Map<String, ChildData> tree;
+
+        private final long mzxid;
+
+        /**
+         * pending changes folded into value
+         */
+        private final int applied;
+
+        private final boolean full;
+
+        private final long generation;
+
+        Build(E value, Map<String, ChildData> tree, long mzxid, int applied, boolean full, long generation) {
+            this.value = value;
+            this.tree = tree;
+            this.mzxid = mzxid;
+            this.applied = applied;
+            this.full = full;
+            this.generation = generation;
+        }
     }
 
     public static class Builder<E> {
 
         private ThrowableFunction<Map<String, ChildData>, E, Exception> factory;
 
+        private DeltaFactory<E> deltaFactory;
+
+        private boolean incremental;
+
         private String path;
 
         private Supplier<CuratorFramework> curatorFrameworkFactory;
@@ -217,8 +867,38 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
 
         private long waitStopPeriod;
 
+        private CleanupScheduler cleanupScheduler;
+
+        private KeyedSerialExecutor keyedEventExecutor;
+
+        private SnapshotStore snapshotStore;
+
+        private String snapshotKey;
+
         private BiConsumer<E, E> onResourceChange;
 
+        private long coalesceWindow;
+
+        private long coalesceMaxStaleness;
+
+        private TimeUnit coalesceUnit;
+
+        private ScheduledExecutorService coalesceScheduler;
+
+        private ZkResourceMetrics metrics;
+
+        private String metricsName;
+
+        private int maxDepth = -1;
+
+        private Predicate<String> selector;
+
+        private PathGlob glob;
+
+        private Predicate<String> payloadFilter;
+
+        private RefreshPipeline<E> refreshPipeline;
+
         @CheckReturnValue
         @Nonnull
         public Builder<E> path(String path) {
@@ -233,6 +913,28 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
             return this;
         }
 
+        /**
+         * keep the tree in a persistent map updated from events rather than walking the TreeCache on
+         * every change. the full factory still runs per change but gets an immutable map it may retain.
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> incremental() {
+            this.incremental = true;
+            return this;
+        }
+
+        /**
+         * incremental mode with a factory that patches the previous resource from the changed entries
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> deltaFactory(DeltaFactory<E> deltaFactory) {
+            this.deltaFactory = deltaFactory;
+            this.incremental = true;
+            return this;
+        }
+
         @CheckReturnValue
         @Nonnull
         public Builder<E> childDataFactory(ThrowableFunction<Collection<ChildData>, E, Exception> factory) {
@@ -240,6 +942,74 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
             return factory(map -> factory.apply(map.values()));
         }
 
+        /**
+         * factory over a flat read-only view of the tree, see {@link CompactTree}
+         *
+         * @param fields stat fields the factory reads, the rest are dropped
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> compactFactory(ThrowableFunction<CompactTree, E, Exception> factory, StatField... fields) {
+            return compactFactory(factory, false, fields);
+        }
+
+        /**
+         * @param offHeap keep payloads in a direct buffer
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> compactFactory(ThrowableFunction<CompactTree, E, Exception> factory, boolean offHeap,
+                StatField... fields) {
+            checkNotNull(factory);
+            return factory(map -> factory.apply(CompactTree.of(map, offHeap, fields)));
+        }
+
+        /**
+         * watch at most depth levels below the path, 1 for the direct children only
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> maxDepth(int depth) {
+            checkArgument(depth >= 0, "negative depth: %s", depth);
+            this.maxDepth = depth;
+            return this;
+        }
+
+        /**
+         * hand factories only the nodes whose relative path passes, the rest are still watched
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> select(@Nonnull Predicate<String> selector) {
+            this.selector = checkNotNull(selector);
+            this.glob = null;
+            return this;
+        }
+
+        /**
+         * hand factories only the nodes matching a {@link PathGlob} over relative paths, subtrees
+         * that cannot match are not watched at all
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> selectGlob(@Nonnull String glob) {
+            this.glob = PathGlob.compile(glob);
+            this.selector = null;
+            return this;
+        }
+
+        /**
+         * keep payloads only for relative paths that pass, other nodes reach factories with their
+         * stat only. the TreeCache then keeps no payload at all, so this implies {@link #incremental()}.
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> dataOnlyFor(@Nonnull Predicate<String> needsData) {
+            this.payloadFilter = checkNotNull(needsData);
+            this.incremental = true;
+            return this;
+        }
+
         @CheckReturnValue
         @Nonnull
         public Builder<E> onResourceChange(BiConsumer<E, E> callback) {
@@ -261,6 +1031,10 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
             return this;
         }
 
+        /**
+         * ms to wait before the first cleanup attempt of a replaced resource,
+         * a failed attempt is retried by the cleanup scheduler with backoff from there
+         */
         @CheckReturnValue
         @Nonnull
         public Builder<E> withWaitStopPeriod(long waitStopPeriod) {
@@ -268,6 +1042,101 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
             return this;
         }
 
+        /**
+         * collapse tree events within window into one factory call over the latest tree,
+         * a continuous stream of events still rebuilds at least every maxStaleness
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> coalesce(long window, long maxStaleness, @Nonnull TimeUnit unit) {
+            return coalesce(window, maxStaleness, unit, null);
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> coalesce(long window, long maxStaleness, @Nonnull TimeUnit unit,
+                @Nullable ScheduledExecutorService scheduler) {
+            checkArgument(window > 0, "window must be positive");
+            this.coalesceWindow = window;
+            this.coalesceMaxStaleness = maxStaleness;
+            this.coalesceUnit = checkNotNull(unit);
+            this.coalesceScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * boot from the last saved tree on local disk and sync with zk in background, keyed by path
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> snapshotStore(@Nonnull SnapshotStore snapshotStore) {
+            return snapshotStore(snapshotStore, null);
+        }
+
+        /**
+         * @param key unique within the store, null for the tree path
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> snapshotStore(@Nonnull SnapshotStore snapshotStore, @Nullable String key) {
+            this.snapshotStore = checkNotNull(snapshotStore);
+            this.snapshotKey = key;
+            return this;
+        }
+
+        /**
+         * dispatch TreeCache events on a lane of a shared executor instead of a thread per resource,
+         * e.g. {@link KeyedSerialExecutor#shared()} or {@link KeyedSerialExecutor#virtualThreads()}
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> eventExecutor(@Nonnull KeyedSerialExecutor eventExecutor) {
+            this.keyedEventExecutor = checkNotNull(eventExecutor);
+            return this;
+        }
+
+        /**
+         * {@link ZkResourceMetrics#getDefault()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> metrics(@Nonnull ZkResourceMetrics metrics) {
+            return metrics(metrics, null);
+        }
+
+        /**
+         * @param name reported with every metric, null for the tree path
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> metrics(@Nonnull ZkResourceMetrics metrics, @Nullable String name) {
+            this.metrics = checkNotNull(metrics);
+            this.metricsName = name;
+            return this;
+        }
+
+        /**
+         * where replaced resources are released, {@link CleanupScheduler#shared()} by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> cleanupScheduler(@Nonnull CleanupScheduler cleanupScheduler) {
+            this.cleanupScheduler = checkNotNull(cleanupScheduler);
+            return this;
+        }
+
+        /**
+         * every built resource passes the pipeline stages before it is published. the stages of a
+         * refresh run outside the resource lock, a failing one keeps the current resource and the
+         * pending changes for the next rebuild
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> refreshPipeline(@Nonnull RefreshPipeline<? super E> refreshPipeline) {
+            this.refreshPipeline = (RefreshPipeline<E>) checkNotNull(refreshPipeline);
+            return this;
+        }
+
         @CheckReturnValue
         @Nonnull
         public Builder<E> cleanup(Predicate<E> cleanup) {
@@ -277,11 +1146,12 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
 
         @Nonnull
         public ZkTreeNodeResource<E> build() {
+            ensure();
             return new ZkTreeNodeResource<>(this);
         }
 
         private void ensure() {
-            checkNotNull(factory);
+            checkState(factory != null || deltaFactory != null, "factory or deltaFactory is required");
             checkNotNull(curatorFrameworkFactory);
 
             if (onResourceChange != null) {
@@ -295,6 +1165,14 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
                 };
             }
 
+            if (cleanupScheduler == null) {
+                cleanupScheduler = CleanupScheduler.shared();
+            }
+
+            if (metrics == null) {
+                metrics = ZkResourceMetrics.getDefault();
+            }
+
             if (cleanup == null) {
                 cleanup(t -> {
                     if (t instanceof Closeable) {
@@ -313,12 +1191,19 @@ public class ZkTreeNodeResource<E> implements ResourceLoader<E>, Closeable {
 
     @Override
     public void close() {
+        rebinder.unregister();
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        if (snapshotWriter != null) {
+            snapshotWriter.close();
+        }
         synchronized (lock) {
-            if (resource != null && cleanup != null) {
-                cleanup.test(resource);
+            if (resource() != null && cleanup != null) {
+                cleanup.test(resource());
             }
             if (treeCache != null) {
-                treeCache.close();
+                closeTreeCache();
             }
             closed = true;
         }
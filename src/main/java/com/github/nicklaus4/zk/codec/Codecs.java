@@ -0,0 +1,65 @@
+package com.github.nicklaus4.zk.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.ServiceLoader;
+
+/**
+ * built-in codecs
+ *
+ * @author weishibai
+ * @date 2026/10/17 1:40 PM
+ */
+final class Codecs {
+
+    static final NodeCodec<String> UTF8 = (data, stat) -> decodeUtf8(data);
+
+    static final NodeCodec<Properties> PROPERTIES = (data, stat) -> {
+        Properties properties = new Properties();
+        properties.load(new StringReader(decodeUtf8(data)));
+        return properties;
+    };
+
+    private static final ThreadLocal<CharsetDecoder> UTF8_DECODER = ThreadLocal.withInitial(() ->
+            UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT));
+
+    private static volatile JsonCodecProvider jsonProvider;
+
+    private Codecs() {
+    }
+
+    static String decodeUtf8(ByteBuffer data) throws CharacterCodingException {
+        CharsetDecoder decoder = UTF8_DECODER.get();
+        // decode() resets the decoder and does not move the caller's view
+        CharBuffer chars = decoder.decode(data.duplicate());
+        return chars.toString();
+    }
+
+    static JsonCodecProvider jsonProvider() {
+        JsonCodecProvider provider = jsonProvider;
+        if (provider == null) {
+            synchronized (Codecs.class) {
+                provider = jsonProvider;
+                if (provider == null) {
+                    Iterator<JsonCodecProvider> providers = ServiceLoader.load(JsonCodecProvider.class).iterator();
+                    if (!providers.hasNext()) {
+                        throw new IllegalStateException("no " + JsonCodecProvider.class.getName() + " found.");
+                    }
+                    provider = providers.next();
+                    jsonProvider = provider;
+                }
+            }
+        }
+        return provider;
+    }
+}
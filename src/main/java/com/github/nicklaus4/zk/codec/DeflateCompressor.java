@@ -0,0 +1,64 @@
+package com.github.nicklaus4.zk.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * @author weishibai
+ * @date 2026/10/17 8:16 PM
+ */
+final class DeflateCompressor implements PayloadCompressor {
+
+    static final DeflateCompressor INSTANCE = new DeflateCompressor();
+
+    private DeflateCompressor() {
+    }
+
+    @Override
+    public byte id() {
+        return DEFLATE;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+        Deflater deflater = new Deflater();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+                deflating.write(data);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] raw = new byte[rawLength];
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != rawLength) {
+                throw new IOException("corrupted deflate payload, " + inflated + " of " + rawLength + " bytes.");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.nicklaus4.zk.codec;
+
+/**
+ * json binding behind {@link NodeCodec#json(Class)}, registered in
+ * META-INF/services/com.github.nicklaus4.zk.codec.JsonCodecProvider
+ *
+ * @author weishibai
+ * @date 2026/10/17 1:46 PM
+ */
+public interface JsonCodecProvider {
+
+    /**
+     * called once per {@link NodeCodec#json(Class)}, the returned codec should keep
+     * whatever reader state it needs so decoding does not look the type up again
+     */
+    <T> NodeCodec<T> codec(Class<T> type);
+}
@@ -0,0 +1,49 @@
+package com.github.nicklaus4.zk.codec;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+import javax.annotation.Nonnull;
+
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * decodes node payload into a resource
+ *
+ * @author weishibai
+ * @date 2026/10/17 1:40 PM
+ */
+@FunctionalInterface
+public interface NodeCodec<T> {
+
+    /**
+     * @param data read-only view of the node payload, only valid during this call
+     */
+    T decode(ByteBuffer data, Stat stat) throws Exception;
+
+    /**
+     * strict utf-8, the decoder is reused per thread
+     */
+    static NodeCodec<String> utf8() {
+        return Codecs.UTF8;
+    }
+
+    /**
+     * properties in utf-8 rather than the iso-8859-1 of {@link Properties#load(java.io.InputStream)}
+     */
+    static NodeCodec<Properties> properties() {
+        return Codecs.PROPERTIES;
+    }
+
+    /**
+     * json through the first {@link JsonCodecProvider} found by {@link java.util.ServiceLoader}
+     *
+     * @throws IllegalStateException no provider on the classpath
+     */
+    static <T> NodeCodec<T> json(@Nonnull Class<T> type) {
+        checkNotNull(type);
+        return Codecs.jsonProvider().codec(type);
+    }
+}
@@ -0,0 +1,361 @@
+package com.github.nicklaus4.zk.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.model.ZkWriteResult;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+
+/**
+ * compression and chunking of node payloads.
+ *
+ * an encoded payload starts with 0xFE 'Z' 'K' and a type byte, 0xFE never appears in utf-8 so
+ * text payloads written without the codec are read as is. a payload still too large after
+ * compression is split into children of {@value #CHUNKS} and the node itself holds a manifest
+ * naming the chunk generation, swapped in by a single write once every chunk is in place.
+ * the previous generation is kept for readers still on the old manifest.
+ *
+ * @author weishibai
+ * @date 2026/10/17 8:20 PM
+ */
+public class PayloadCodec {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayloadCodec.class);
+
+    /**
+     * child of the node holding chunks, seen by tree caches above the node
+     */
+    public static final String CHUNKS = "_chunks";
+
+    private static final byte[] MAGIC = {(byte) 0xFE, 'Z', 'K'};
+
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    private static final byte TYPE_MANIFEST = 0x10;
+
+    private static final byte MANIFEST_VERSION = 1;
+
+    private static final Map<Byte, PayloadCompressor> COMPRESSORS = new ConcurrentHashMap<>();
+
+    static {
+        register(PayloadCompressor.deflate());
+        try {
+            for (PayloadCompressor compressor : ServiceLoader.load(PayloadCompressor.class)) {
+                register(compressor);
+            }
+        } catch (Throwable e) {
+            LOGGER.error("fail to load payload compressors", e);
+        }
+    }
+
+    private static final PayloadCodec DEFAULTS = newBuilder().build();
+
+    private final PayloadCompressor compressor;
+
+    private final int compressAbove;
+
+    private final int chunkSize;
+
+    private PayloadCodec(Builder builder) {
+        this.compressor = builder.compressor;
+        this.compressAbove = builder.compressAbove;
+        this.chunkSize = builder.chunkSize;
+    }
+
+    /**
+     * deflate above 4KB, chunks of 512KB
+     */
+    public static PayloadCodec defaults() {
+        return DEFAULTS;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * whether data carries a header of this codec, false for plain payloads
+     */
+    public static boolean isEncoded(@Nullable byte[] data) {
+        return data != null && data.length >= HEADER_LENGTH && data[0] == MAGIC[0] && data[1] == MAGIC[1]
+                && data[2] == MAGIC[2];
+    }
+
+    /**
+     * compress and, when needed, chunk data into path. chunks are written before the manifest
+     * so readers see either the old payload or the whole new one.
+     */
+    public void write(@Nonnull CuratorFramework client, @Nonnull String path, @Nonnull byte[] data) {
+        checkNotNull(client);
+        checkNotNull(path);
+        byte[] encoded = encode(checkNotNull(data));
+        Stat stat = new Stat();
+        String previous = generationOf(readQuietly(client, path, stat));
+        if (encoded.length <= chunkSize) {
+            ZkNodeUtils.setToZk(client, path, encoded);
+            if (stat.getNumChildren() > 0) {
+                // readers still on the old manifest keep their chunks until the next write
+                removeChunks(client, path, null, previous);
+            }
+            return;
+        }
+
+        String generation = UUID.randomUUID().toString();
+        int count = (encoded.length + chunkSize - 1) / chunkSize;
+        List<ZkWrite> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = i * chunkSize;
+            byte[] chunk = new byte[Math.min(chunkSize, encoded.length - from)];
+            System.arraycopy(encoded, from, chunk, 0, chunk.length);
+            chunks.add(ZkWrite.of(chunkPath(path, generation, i), chunk));
+        }
+        for (ZkWriteResult result : ZkNodeUtils.setAllToZk(client, chunks)) {
+            if (!result.isSuccess()) {
+                throw new RuntimeException("fail to write chunk " + result.getPath() + ": " + result.getCode(),
+                        result.getError());
+            }
+        }
+        ZkNodeUtils.setToZk(client, path, manifest(generation, count, encoded));
+        removeChunks(client, path, generation, previous);
+    }
+
+    /**
+     * payload of a node as written by {@link #write}, chunks are fetched with client.
+     * data without header is returned as is.
+     *
+     * @param client only needed for chunked payloads
+     */
+    public byte[] read(@Nullable CuratorFramework client, @Nonnull String path, byte[] data) {
+        if (!isEncoded(data)) {
+            return data;
+        }
+        try {
+            if (data[MAGIC.length] == TYPE_MANIFEST) {
+                checkNotNull(client, "a client is required to read chunked payload of %s", path);
+                data = join(client, path, data);
+            }
+            return decode(data, compressor);
+        } catch (Exception e) {
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * header and compressed data, or data itself when small or not compressible
+     */
+    public byte[] encode(@Nonnull byte[] data) {
+        if (compressor == null || data.length < compressAbove) {
+            return data;
+        }
+        try {
+            byte[] compressed = compressor.compress(data);
+            if (compressed.length + HEADER_LENGTH + 4 >= data.length) {
+                return data;
+            }
+            return ByteBuffer.allocate(HEADER_LENGTH + 4 + compressed.length)
+                    .put(MAGIC)
+                    .put(compressor.id())
+                    .putInt(data.length)
+                    .put(compressed)
+                    .array();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * inverse of {@link #encode} for a payload that is not a manifest
+     */
+    public static byte[] decode(byte[] data) throws IOException {
+        return decode(data, null);
+    }
+
+    /**
+     * @param own compressor of the codec, used before the registered ones
+     */
+    private static byte[] decode(byte[] data, @Nullable PayloadCompressor own) throws IOException {
+        if (!isEncoded(data)) {
+            return data;
+        }
+        byte type = data[MAGIC.length];
+        PayloadCompressor found = own != null && own.id() == type ? own : COMPRESSORS.get(type);
+        if (found == null) {
+            throw new IOException("no compressor registered for payload type " + type);
+        }
+        int rawLength = ByteBuffer.wrap(data, HEADER_LENGTH, 4).getInt();
+        return found.decompress(data, HEADER_LENGTH + 4, data.length - HEADER_LENGTH - 4, rawLength);
+    }
+
+    /**
+     * make a compressor readable by {@link #decode} and every codec, e.g. one of another process
+     * writing with it. a codec built with a compressor reads its own payloads without this.
+     */
+    public static void register(@Nonnull PayloadCompressor compressor) {
+        checkArgument(compressor.id() > 0 && compressor.id() < TYPE_MANIFEST, "compressor id must be in 1..15");
+        COMPRESSORS.put(compressor.id(), compressor);
+    }
+
+    static byte[] manifest(String generation, int count, byte[] encoded) {
+        CRC32 crc = new CRC32();
+        crc.update(encoded, 0, encoded.length);
+        byte[] name = generation.getBytes(UTF_8);
+        return ByteBuffer.allocate(HEADER_LENGTH + 1 + 4 + 4 + 8 + 2 + name.length)
+                .put(MAGIC)
+                .put(TYPE_MANIFEST)
+                .put(MANIFEST_VERSION)
+                .putInt(count)
+                .putInt(encoded.length)
+                .putLong(crc.getValue())
+                .putShort((short) name.length)
+                .put(name)
+                .array();
+    }
+
+    private static byte[] join(CuratorFramework client, String path, byte[] manifest) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(manifest, HEADER_LENGTH, manifest.length - HEADER_LENGTH);
+        byte version = buffer.get();
+        if (version != MANIFEST_VERSION) {
+            throw new IOException("unknown chunk manifest version " + version + " of " + path);
+        }
+        int count = buffer.getInt();
+        int length = buffer.getInt();
+        long expectedCrc = buffer.getLong();
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        String generation = new String(name, UTF_8);
+
+        ByteBuffer joined = ByteBuffer.allocate(length);
+        for (int i = 0; i < count; i++) {
+            joined.put(client.getData().forPath(chunkPath(path, generation, i)));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(joined.array(), 0, joined.position());
+        if (joined.position() != length || crc.getValue() != expectedCrc) {
+            throw new IOException("chunks of " + path + " do not match manifest " + generation);
+        }
+        return joined.array();
+    }
+
+    @Nullable
+    static String generationOf(@Nullable byte[] data) {
+        if (!isEncoded(data) || data[MAGIC.length] != TYPE_MANIFEST) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, HEADER_LENGTH + 1 + 4 + 4 + 8,
+                data.length - HEADER_LENGTH - 1 - 4 - 4 - 8);
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        return new String(name, UTF_8);
+    }
+
+    private static String chunkPath(String path, String generation, int index) {
+        return path + "/" + CHUNKS + "/" + generation + "-" + index;
+    }
+
+    @Nullable
+    private static byte[] readQuietly(CuratorFramework client, String path, Stat stat) {
+        try {
+            return client.getData().storingStatIn(stat).forPath(path);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * drop chunks of every generation but the two given, best effort
+     */
+    private static void removeChunks(CuratorFramework client, String path, @Nullable String current,
+            @Nullable String previous) {
+        String chunks = path + "/" + CHUNKS;
+        try {
+            for (String child : client.getChildren().forPath(chunks)) {
+                if ((current == null || !child.startsWith(current + "-"))
+                        && (previous == null || !child.startsWith(previous + "-"))) {
+                    ZkNodeUtils.removeFromZk(client, chunks + "/" + child);
+                }
+            }
+            if (current == null && previous == null) {
+                ZkNodeUtils.removeFromZk(client, chunks);
+            }
+        } catch (KeeperException.NoNodeException e) {
+            // never chunked
+        } catch (Exception e) {
+            LOGGER.warn("fail to remove stale chunks of {}", path, e);
+        }
+    }
+
+    public static class Builder {
+
+        private PayloadCompressor compressor = PayloadCompressor.deflate();
+
+        private int compressAbove = 4 * 1024;
+
+        private int chunkSize = 512 * 1024;
+
+        /**
+         * null to only chunk. the compressor is not registered for other codecs, see
+         * {@link PayloadCodec#register}
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder compressor(@Nullable PayloadCompressor compressor) {
+            checkArgument(compressor == null || compressor.id() > 0 && compressor.id() < TYPE_MANIFEST,
+                    "compressor id must be in 1..15");
+            this.compressor = compressor;
+            return this;
+        }
+
+        /**
+         * smaller payloads are written as is
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder compressAbove(int bytes) {
+            checkArgument(bytes >= 0, "bytes must not be negative");
+            this.compressAbove = bytes;
+            return this;
+        }
+
+        /**
+         * largest node written, keep well below jute.maxbuffer
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder chunkSize(int bytes) {
+            checkArgument(bytes > 1024, "chunk size must be above 1KB");
+            this.chunkSize = bytes;
+            return this;
+        }
+
+        @Nonnull
+        public PayloadCodec build() {
+            return new PayloadCodec(this);
+        }
+    }
+}
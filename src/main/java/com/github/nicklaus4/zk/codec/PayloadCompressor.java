@@ -0,0 +1,45 @@
+package com.github.nicklaus4.zk.codec;
+
+import java.io.IOException;
+
+/**
+ * compression of node payloads behind {@link PayloadCodec}, tagged by an id in the payload header.
+ * compressors other than deflate are found by {@link java.util.ServiceLoader}
+ * through META-INF/services/com.github.nicklaus4.zk.codec.PayloadCompressor.
+ *
+ * @author weishibai
+ * @date 2026/10/17 8:10 PM
+ */
+public interface PayloadCompressor {
+
+    byte DEFLATE = 1;
+
+    /**
+     * reserved for an lz4 provider
+     */
+    byte LZ4 = 2;
+
+    /**
+     * reserved for a zstd provider
+     */
+    byte ZSTD = 3;
+
+    /**
+     * jdk deflate at the default level
+     */
+    static PayloadCompressor deflate() {
+        return DeflateCompressor.INSTANCE;
+    }
+
+    /**
+     * written into every payload it compressed, 1 to 15, must never change for a format
+     */
+    byte id();
+
+    byte[] compress(byte[] data) throws IOException;
+
+    /**
+     * @param rawLength length of the data before compression
+     */
+    byte[] decompress(byte[] data, int offset, int length, int rawLength) throws IOException;
+}
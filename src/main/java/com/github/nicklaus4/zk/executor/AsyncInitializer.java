@@ -0,0 +1,40 @@
+package com.github.nicklaus4.zk.executor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * runs a blocking first load once on the bootstrap executor and shares its future
+ *
+ * @author weishibai
+ * @date 2026/10/17 10:12 AM
+ */
+public class AsyncInitializer<E> {
+
+    private final AtomicReference<CompletableFuture<E>> loading = new AtomicReference<>();
+
+    /**
+     * @param blockingLoad only run when no load is in progress
+     */
+    public CompletableFuture<E> load(Supplier<E> blockingLoad) {
+        CompletableFuture<E> current = loading.get();
+        if (current != null) {
+            return current;
+        }
+        CompletableFuture<E> created = new CompletableFuture<>();
+        if (!loading.compareAndSet(null, created)) {
+            return loading.get();
+        }
+        ResourceExecutors.bootstrap().execute(() -> {
+            try {
+                created.complete(blockingLoad.get());
+            } catch (Throwable e) {
+                // let the next caller try again
+                loading.compareAndSet(created, null);
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+}
@@ -0,0 +1,357 @@
+package com.github.nicklaus4.zk.executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Thread.MIN_PRIORITY;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * bounded scheduler that releases replaced resources.
+ *
+ * a cleanup returning false is retried as a new scheduled task with exponential backoff
+ * until it passes or max attempts is reached, so no thread is parked while waiting.
+ * when max pending cleanups are in flight the next ones wait in an overflow queue until a slot
+ * frees, they keep their delay and are never run on the caller, which may hold a resource lock.
+ * once shut down, cleanups still submitted get a single attempt on {@link ResourceExecutors#bootstrap()}.
+ *
+ * @author weishibai
+ * @date 2026/10/16 5:30 PM
+ */
+public class CleanupScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CleanupScheduler.class);
+
+    private static volatile CleanupScheduler shared;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final int maxPending;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMs;
+
+    private final long maxBackoffMs;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Queue<Task> overflow = new ConcurrentLinkedQueue<>();
+
+    /**
+     * set while cleanups are held in overflow, so a burst logs once instead of once per cleanup
+     */
+    private final AtomicBoolean overflowing = new AtomicBoolean();
+
+    private CleanupScheduler(Builder builder) {
+        this.maxPending = builder.maxPending;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffMs = builder.initialBackoffMs;
+        this.maxBackoffMs = builder.maxBackoffMs;
+        this.executor = new ScheduledThreadPoolExecutor(builder.threads, new ThreadFactoryBuilder()
+                .setNameFormat(builder.name + "-%d")
+                .setPriority(MIN_PRIORITY)
+                .setDaemon(true)
+                .build());
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * jvm wide default, 2 threads, never shut down
+     */
+    public static CleanupScheduler shared() {
+        if (shared == null) {
+            synchronized (CleanupScheduler.class) {
+                if (shared == null) {
+                    shared = newBuilder().build();
+                }
+            }
+        }
+        return shared;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @param name for logging, like resource type and path
+     * @param cleanup returns false when it should be retried later
+     * @param delayMs before the first attempt
+     * @param then runs once after cleanup passed or was given up
+     */
+    public void submit(@Nonnull String name, @Nonnull BooleanSupplier cleanup, long delayMs,
+            @Nonnull Runnable then) {
+        submit(name, cleanup, delayMs, then, null);
+    }
+
+    /**
+     * @param queued gets nanos from the planned start to the first attempt
+     */
+    public void submit(@Nonnull String name, @Nonnull BooleanSupplier cleanup, long delayMs,
+            @Nonnull Runnable then, @Nullable LongConsumer queued) {
+        requireNonNull(cleanup);
+        requireNonNull(then);
+        Task task = new Task(name, cleanup, then, queued, delayMs);
+        if (executor.isShutdown()) {
+            runDetached(task);
+            return;
+        }
+        if (inFlight.incrementAndGet() > maxPending) {
+            inFlight.decrementAndGet();
+            overflow.add(task);
+            if (overflowing.compareAndSet(false, true)) {
+                LOGGER.warn("cleanup queue is full({}), hold cleanups until slots free, first {}.", maxPending, name);
+            }
+            // a slot may have freed meanwhile
+            promote();
+            return;
+        }
+        schedule(task);
+    }
+
+    /**
+     * scheduled tasks waiting to run, including retries in backoff and cleanups held in overflow
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size() + overflow.size();
+    }
+
+    /**
+     * cleanups accepted and not yet passed or given up
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * scheduled cleanups still run, retries are given up and held ones get a single attempt elsewhere
+     */
+    public void shutdown() {
+        executor.shutdown();
+        promote();
+    }
+
+    /**
+     * @param task already counted in flight
+     */
+    private void schedule(Task task) {
+        try {
+            executor.schedule(() -> {
+                reportQueued(task.name, task.queued, Math.max(0, System.nanoTime() - task.plannedStart));
+                run(task.name, task.cleanup, task.then, 1, Math.max(task.delayMs, initialBackoffMs));
+            }, Math.max(0, task.plannedStart - System.nanoTime()), NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down meanwhile
+            inFlight.decrementAndGet();
+            runDetached(task);
+        }
+    }
+
+    /**
+     * move held cleanups into free slots, or hand them off once shut down
+     */
+    private void promote() {
+        while (!overflow.isEmpty()) {
+            if (executor.isShutdown()) {
+                Task task = overflow.poll();
+                if (task != null) {
+                    runDetached(task);
+                }
+                continue;
+            }
+            if (inFlight.incrementAndGet() > maxPending) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            Task task = overflow.poll();
+            if (task == null) {
+                inFlight.decrementAndGet();
+                break;
+            }
+            schedule(task);
+        }
+        if (overflowing.compareAndSet(true, false)) {
+            LOGGER.info("cleanup queue has free slots again.");
+        }
+    }
+
+    /**
+     * single attempt off the caller, which may hold a resource lock, once this scheduler is shut down
+     */
+    private static void runDetached(Task task) {
+        LOGGER.warn("cleanup scheduler is shut down, release {} once without retry.", task.name);
+        try {
+            ResourceExecutors.bootstrap().execute(() -> {
+                if (!attempt(task.name, task.cleanup)) {
+                    LOGGER.error("give up cleanup of {} after 1 attempt.", task.name);
+                }
+                runQuietly(task.name, task.then);
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("drop cleanup of {}, no executor left to run it.", task.name);
+        }
+    }
+
+    private void run(String name, BooleanSupplier cleanup, Runnable then, int attempts, long backoffMs) {
+        if (!attempt(name, cleanup)) {
+            if (attempts < maxAttempts && retry(name, cleanup, then, attempts, backoffMs)) {
+                return;
+            }
+            LOGGER.error("give up cleanup of {} after {} attempts.", name, attempts);
+        }
+        inFlight.decrementAndGet();
+        promote();
+        runQuietly(name, then);
+    }
+
+    /**
+     * @return false when shut down
+     */
+    private boolean retry(String name, BooleanSupplier cleanup, Runnable then, int attempts, long backoffMs) {
+        if (executor.isShutdown()) {
+            return false;
+        }
+        long nextBackoff = Math.min(maxBackoffMs, backoffMs * 2);
+        try {
+            executor.schedule(() -> run(name, cleanup, then, attempts + 1, nextBackoff), backoffMs, MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static boolean attempt(String name, BooleanSupplier cleanup) {
+        try {
+            return cleanup.getAsBoolean();
+        } catch (Throwable e) {
+            LOGGER.error("fail to cleanup resource {}", name, e);
+            return false;
+        }
+    }
+
+    private static void reportQueued(String name, @Nullable LongConsumer queued, long nanos) {
+        if (queued != null) {
+            try {
+                queued.accept(nanos);
+            } catch (Throwable e) {
+                LOGGER.error("fail to report queue time of cleanup {}", name, e);
+            }
+        }
+    }
+
+    private static void runQuietly(String name, Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            LOGGER.error("fail after cleanup of {}", name, e);
+        }
+    }
+
+    private static final class Task {
+
+        private final String name;
+
+        private final BooleanSupplier cleanup;
+
+        private final Runnable then;
+
+        private final LongConsumer queued;
+
+        private final long delayMs;
+
+        private final long plannedStart;
+
+        Task(String name, BooleanSupplier cleanup, Runnable then, @Nullable LongConsumer queued, long delayMs) {
+            this.name = name;
+            this.cleanup = cleanup;
+            this.then = then;
+            this.queued = queued;
+            this.delayMs = Math.max(delayMs, 0);
+            this.plannedStart = System.nanoTime() + MILLISECONDS.toNanos(this.delayMs);
+        }
+    }
+
+    public static class Builder {
+
+        private String name = "zk-resource-cleanup";
+
+        private int threads = 2;
+
+        private int maxPending = 10_000;
+
+        private int maxAttempts = 100;
+
+        private long initialBackoffMs = 100;
+
+        private long maxBackoffMs = 30_000;
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder name(@Nonnull String name) {
+            this.name = requireNonNull(name);
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder threads(int threads) {
+            checkArgument(threads > 0, "threads must be positive");
+            this.threads = threads;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder maxPending(int maxPending) {
+            checkArgument(maxPending > 0, "maxPending must be positive");
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder maxAttempts(int maxAttempts) {
+            checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * retry delay starts at max(initial backoff, first delay) and doubles up to max backoff
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder backoff(long initialBackoffMs, long maxBackoffMs) {
+            checkArgument(initialBackoffMs > 0 && maxBackoffMs >= initialBackoffMs, "invalid backoff");
+            this.initialBackoffMs = initialBackoffMs;
+            this.maxBackoffMs = maxBackoffMs;
+            return this;
+        }
+
+        @Nonnull
+        public CleanupScheduler build() {
+            return new CleanupScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.nicklaus4.zk.executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * collapses a burst of events into one run of an action.
+ *
+ * the first event schedules the action after the window, each later event inside the window
+ * pushes it out by another window but never past first event + max staleness. the action
+ * is expected to read the latest state itself. the scheduler only times the window, the action
+ * runs on an executor of its own and never overlaps itself.
+ *
+ * @author weishibai
+ * @date 2026/10/16 4:10 PM
+ */
+public class EventCoalescer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCoalescer.class);
+
+    private static volatile ScheduledExecutorService defaultScheduler;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor executor;
+
+    /**
+     * lane created for the action, shut down on close
+     */
+    @Nullable
+    private final ExecutorService ownExecutor;
+
+    private final long windowNanos;
+
+    private final long maxStalenessNanos;
+
+    private final Runnable action;
+
+    private final AtomicLong coalescedEvents = new AtomicLong();
+
+    @GuardedBy("this")
+    private boolean scheduled;
+
+    @GuardedBy("this")
+    private long firstEventAt;
+
+    @GuardedBy("this")
+    private long dueAt;
+
+    @GuardedBy("this")
+    private ScheduledFuture<?> pending;
+
+    @GuardedBy("this")
+    private boolean running;
+
+    /**
+     * due again while running, runs right after
+     */
+    @GuardedBy("this")
+    private boolean rerun;
+
+    @GuardedBy("this")
+    private boolean closed;
+
+    /**
+     * @param scheduler null for a shared single daemon thread
+     * @param maxStaleness raised to window when smaller
+     */
+    public EventCoalescer(@Nullable ScheduledExecutorService scheduler, long window, long maxStaleness,
+            @Nonnull TimeUnit unit, @Nonnull Runnable action) {
+        this(scheduler, null, window, maxStaleness, unit, action);
+    }
+
+    /**
+     * @param scheduler times the window only, null for a shared single daemon thread
+     * @param executor runs the action, null for a lane of {@link KeyedSerialExecutor#shared()}
+     * @param maxStaleness raised to window when smaller
+     */
+    public EventCoalescer(@Nullable ScheduledExecutorService scheduler, @Nullable Executor executor, long window,
+            long maxStaleness, @Nonnull TimeUnit unit, @Nonnull Runnable action) {
+        checkArgument(window > 0, "window must be positive");
+        this.scheduler = scheduler == null ? defaultScheduler() : scheduler;
+        this.ownExecutor = executor == null ? KeyedSerialExecutor.shared().lane("coalesced") : null;
+        this.executor = executor == null ? ownExecutor : executor;
+        this.windowNanos = unit.toNanos(window);
+        this.maxStalenessNanos = Math.max(windowNanos, unit.toNanos(maxStaleness));
+        this.action = requireNonNull(action);
+    }
+
+    public void submit() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long now = nanoTime();
+            if (scheduled) {
+                coalescedEvents.incrementAndGet();
+                dueAt = Math.min(now + windowNanos, firstEventAt + maxStalenessNanos);
+                return;
+            }
+            scheduled = true;
+            firstEventAt = now;
+            dueAt = now + windowNanos;
+            pending = scheduler.schedule(this::fire, windowNanos, NANOSECONDS);
+        }
+    }
+
+    /**
+     * events folded into an earlier pending run
+     */
+    public long getCoalescedEventCount() {
+        return coalescedEvents.get();
+    }
+
+    /**
+     * drop a pending run, later events are ignored. a run already started completes.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            scheduled = false;
+            rerun = false;
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    private void fire() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long remaining = dueAt - nanoTime();
+            if (remaining > 0) {
+                pending = scheduler.schedule(this::fire, remaining, NANOSECONDS);
+                return;
+            }
+            scheduled = false;
+            pending = null;
+            if (running) {
+                rerun = true;
+                return;
+            }
+            running = true;
+        }
+        try {
+            executor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                running = false;
+            }
+            LOGGER.warn("coalesced action rejected, executor is shut down.");
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                LOGGER.error("coalesced action failed: ", e);
+            }
+            synchronized (this) {
+                if (!rerun || closed) {
+                    running = false;
+                    return;
+                }
+                rerun = false;
+            }
+        }
+    }
+
+    private static ScheduledExecutorService defaultScheduler() {
+        if (defaultScheduler == null) {
+            synchronized (EventCoalescer.class) {
+                if (defaultScheduler == null) {
+                    defaultScheduler = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                            .setNameFormat("zk-resource-coalescer-%d")
+                            .setDaemon(true)
+                            .build());
+                }
+            }
+        }
+        return defaultScheduler;
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.nicklaus4.zk.executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * dispatches events of many caches on one pool while keeping each cache's events in order.
+ *
+ * every {@link #lane(String)} is a serial executor, at most one of its tasks runs at a time and
+ * in submission order, but lanes share the backing threads. shutting a lane down (TreeCache does
+ * it on close) only stops that lane.
+ *
+ * @author weishibai
+ * @date 2026/10/16 7:05 PM
+ */
+public class KeyedSerialExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    /**
+     * tasks a lane runs before yielding its thread to other lanes
+     */
+    private static final int MAX_BATCH = 64;
+
+    private static volatile KeyedSerialExecutor shared;
+
+    private final ExecutorService backing;
+
+    private final Set<Lane> lanes = Sets.newConcurrentHashSet();
+
+    /**
+     * package visible for tests that need to stop the backing pool under live lanes
+     */
+    KeyedSerialExecutor(ExecutorService backing) {
+        this.backing = backing;
+    }
+
+    /**
+     * jvm wide pool sized to the cpu count, never shut down
+     */
+    public static KeyedSerialExecutor shared() {
+        if (shared == null) {
+            synchronized (KeyedSerialExecutor.class) {
+                if (shared == null) {
+                    shared = create(Math.max(2, Runtime.getRuntime().availableProcessors()));
+                }
+            }
+        }
+        return shared;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static KeyedSerialExecutor create(int threads) {
+        checkArgument(threads > 0, "threads must be positive");
+        return new KeyedSerialExecutor(newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("zk-keyed-event-%d")
+                .setDaemon(true)
+                .build()));
+    }
+
+    /**
+     * every lane drains on its own virtual thread on JDK 21+, falls back to {@link #shared()} pool size
+     * with platform threads on older runtimes
+     */
+    @CheckReturnValue
+    @Nonnull
+    public static KeyedSerialExecutor virtualThreads() {
+        try {
+            Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new KeyedSerialExecutor((ExecutorService) method.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("virtual threads are not available on {}, use platform threads.",
+                    System.getProperty("java.version"));
+            return create(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    /**
+     * @param key for diagnostics only, two lanes with the same key are still independent
+     */
+    @CheckReturnValue
+    @Nonnull
+    public ExecutorService lane(@Nonnull String key) {
+        Lane lane = new Lane(requireNonNull(key));
+        lanes.add(lane);
+        return lane;
+    }
+
+    public int getActiveLanes() {
+        return lanes.size();
+    }
+
+    /**
+     * stop the backing pool, do not call on {@link #shared()}
+     */
+    public void shutdown() {
+        lanes.forEach(Lane::shutdown);
+        backing.shutdown();
+    }
+
+    private final class Lane extends AbstractExecutorService {
+
+        private final String key;
+
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        private volatile boolean shutdown;
+
+        Lane(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void execute(@Nonnull Runnable command) {
+            requireNonNull(command);
+            if (shutdown) {
+                throw new RejectedExecutionException("lane " + key + " has been shut down.");
+            }
+            queue.add(command);
+            schedule();
+        }
+
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                try {
+                    backing.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    running.set(false);
+                    die();
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * the backing pool is gone, nothing queued can ever run
+         */
+        private void die() {
+            shutdown = true;
+            lanes.remove(this);
+            int dropped = 0;
+            while (queue.poll() != null) {
+                dropped++;
+            }
+            LOGGER.error("backing pool rejected lane {}, drop {} queued tasks.", key, dropped);
+            terminated.countDown();
+        }
+
+        private void drain() {
+            int executed = 0;
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    LOGGER.error("fail to run task of lane {}", key, e);
+                }
+                if (++executed >= MAX_BATCH && !queue.isEmpty()) {
+                    try {
+                        // still marked running, continue on a fresh turn so other lanes get a thread
+                        backing.execute(this::drain);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        LOGGER.warn("backing pool rejected lane {}, drain in place.", key);
+                        executed = 0;
+                    }
+                }
+            }
+            running.set(false);
+            if (!queue.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    // lane is dead and its queue dropped, nobody up the stack to tell
+                }
+            } else if (shutdown) {
+                terminated.countDown();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            lanes.remove(this);
+            if (!running.get() && queue.isEmpty()) {
+                terminated.countDown();
+            }
+        }
+
+        @Nonnull
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown();
+            List<Runnable> dropped = new ArrayList<>();
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                dropped.add(task);
+            }
+            if (!running.get()) {
+                terminated.countDown();
+            }
+            return dropped;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminated.getCount() == 0;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+            return terminated.await(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.nicklaus4.zk.executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Futures.catchingAsync;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.Futures.withTimeout;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+/**
+ * stages a built value passes before it is published, e.g. validate then warm up caches, so
+ * readers only ever switch to a value that is checked and hot. each stage runs on its own
+ * executor with its own timeout, the first failing one fails the value, which is cleaned up.
+ *
+ * @author weishibai
+ * @date 2026/10/18 9:40 PM
+ */
+public final class RefreshPipeline<E> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshPipeline.class);
+
+    private final List<Stage<E>> stages;
+
+    private RefreshPipeline(List<Stage<E>> stages) {
+        this.stages = stages;
+    }
+
+    public static <E> Builder<E> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @param cleanup releases a value that failed a stage
+     * @return built once every stage passed, failed with the first failure otherwise
+     */
+    public ListenableFuture<E> run(ListenableFuture<E> built, Predicate<? super E> cleanup) {
+        ListenableFuture<E> result = built;
+        for (Stage<E> stage : stages) {
+            result = transformAsync(result, value -> stage.run(value, cleanup), directExecutor());
+        }
+        return result;
+    }
+
+    /**
+     * {@link #run(ListenableFuture, Predicate)} waiting for the result
+     */
+    public E runNow(E built, Predicate<? super E> cleanup) {
+        try {
+            return getUninterruptibly(run(immediateFuture(built), cleanup));
+        } catch (ExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static final class Stage<E> {
+
+        private final String name;
+
+        private final Consumer<? super E> action;
+
+        private final Executor executor;
+
+        private final long timeoutNanos;
+
+        Stage(String name, Consumer<? super E> action, Executor executor, long timeoutNanos) {
+            this.name = name;
+            this.action = action;
+            this.executor = executor;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        ListenableFuture<E> run(E value, Predicate<? super E> cleanup) {
+            if (value == null) {
+                return immediateFuture(null);
+            }
+            ListenableFutureTask<E> task = ListenableFutureTask.create(() -> {
+                action.accept(value);
+                return value;
+            });
+            executor.execute(task);
+            ListenableFuture<E> timed = timeoutNanos > 0
+                    ? withTimeout(task, timeoutNanos, NANOSECONDS, ResourceExecutors.stages()) : task;
+            return catchingAsync(timed, Throwable.class, t -> {
+                try {
+                    cleanup.test(value);
+                } catch (Throwable e) {
+                    LOGGER.error("fail to clean up value failed at stage {}", name, e);
+                }
+                return immediateFailedFuture(new IllegalStateException("refresh stage " + name + " failed", t));
+            }, directExecutor());
+        }
+    }
+
+    public static final class Builder<E> {
+
+        private final ImmutableList.Builder<Stage<E>> stages = ImmutableList.builder();
+
+        /**
+         * fail the value when check returns false, on {@link ResourceExecutors#stages()} without timeout
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> validate(@Nonnull Predicate<? super E> check) {
+            return validate(check, null, 0, NANOSECONDS);
+        }
+
+        /**
+         * @param executor null for {@link ResourceExecutors#stages()}
+         * @param timeout 0 for none
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> validate(@Nonnull Predicate<? super E> check, @Nullable Executor executor, long timeout,
+                @Nonnull TimeUnit unit) {
+            checkNotNull(check);
+            return stage("validate", value -> {
+                if (!check.test(value)) {
+                    throw new IllegalStateException("rejected by validation");
+                }
+            }, executor, timeout, unit);
+        }
+
+        /**
+         * e.g. precompile rules or fill caches, a thrown exception fails the value
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> warm(@Nonnull Consumer<? super E> warmer) {
+            return warm(warmer, null, 0, NANOSECONDS);
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> warm(@Nonnull Consumer<? super E> warmer, @Nullable Executor executor, long timeout,
+                @Nonnull TimeUnit unit) {
+            return stage("warm", warmer, executor, timeout, unit);
+        }
+
+        /**
+         * the stages of pipeline, after the ones added so far
+         */
+        @SuppressWarnings("unchecked")
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> then(@Nonnull RefreshPipeline<? super E> pipeline) {
+            stages.addAll(((RefreshPipeline<E>) checkNotNull(pipeline)).stages);
+            return this;
+        }
+
+        /**
+         * stages run in the order added
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder<E> stage(@Nonnull String name, @Nonnull Consumer<? super E> action, @Nullable Executor executor,
+                long timeout, @Nonnull TimeUnit unit) {
+            checkArgument(timeout >= 0, "negative timeout");
+            stages.add(new Stage<>(checkNotNull(name), checkNotNull(action),
+                    executor != null ? executor : ResourceExecutors.stages(), unit.toNanos(timeout)));
+            return this;
+        }
+
+        @Nonnull
+        public RefreshPipeline<E> build() {
+            return new RefreshPipeline<>(stages.build());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.nicklaus4.zk.executor;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * shared daemon executors of the toolkit
+ *
+ * @author weishibai
+ * @date 2026/10/16 9:15 PM
+ */
+public final class ResourceExecutors {
+
+    private static volatile ScheduledExecutorService bootstrap;
+
+    private static volatile ScheduledExecutorService stages;
+
+    private ResourceExecutors() {
+    }
+
+    /**
+     * background cache start and reconcile, blocking zk calls only
+     */
+    public static ScheduledExecutorService bootstrap() {
+        if (bootstrap == null) {
+            synchronized (ResourceExecutors.class) {
+                if (bootstrap == null) {
+                    bootstrap = new ScheduledThreadPoolExecutor(
+                            Math.max(4, Runtime.getRuntime().availableProcessors()),
+                            new ThreadFactoryBuilder()
+                                    .setNameFormat("zk-resource-bootstrap-%d")
+                                    .setDaemon(true)
+                                    .build());
+                }
+            }
+        }
+        return bootstrap;
+    }
+
+    /**
+     * refresh pipeline stages without an executor of their own, and stage timeouts
+     */
+    public static ScheduledExecutorService stages() {
+        if (stages == null) {
+            synchronized (ResourceExecutors.class) {
+                if (stages == null) {
+                    stages = new ScheduledThreadPoolExecutor(
+                            Math.max(2, Runtime.getRuntime().availableProcessors()),
+                            new ThreadFactoryBuilder()
+                                    .setNameFormat("zk-resource-stage-%d")
+                                    .setDaemon(true)
+                                    .build());
+                }
+            }
+        }
+        return stages;
+    }
+}
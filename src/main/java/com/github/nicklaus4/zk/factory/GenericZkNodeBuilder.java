@@ -1,15 +1,21 @@
 package com.github.nicklaus4.zk.factory;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -29,6 +35,13 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 
 import com.github.nicklaus4.zk.ZkNodeResource;
+import com.github.nicklaus4.zk.codec.NodeCodec;
+import com.github.nicklaus4.zk.codec.PayloadCodec;
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.github.nicklaus4.zk.executor.EventCoalescer;
+import com.github.nicklaus4.zk.executor.RefreshPipeline;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.snapshot.SnapshotStore;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -60,8 +73,41 @@ public class GenericZkNodeBuilder<E> {
 
     private Runnable nodeCacheShutdown;
 
+    /**
+     * client of the last NodeCache cacheHolder built, null for a custom NodeCache supplier
+     */
+    private volatile CuratorFramework nodeCacheClient;
+
     private List<BiConsumer<ChildData, Throwable>> factoryFailedListeners = Lists.newArrayList();
 
+    private Function<Runnable, EventCoalescer> coalescerFactory;
+
+    private CleanupScheduler cleanupScheduler;
+
+    private String path;
+
+    private SnapshotStore snapshotStore;
+
+    private String snapshotKey;
+
+    private boolean skipUnchanged;
+
+    private PayloadCodec payloadCodec;
+
+    private Supplier<CuratorFramework> curatorFactory;
+
+    private ZkResourceMetrics metrics;
+
+    private String metricsName;
+
+    private int historyEntries;
+
+    private long historyBytes;
+
+    private Predicate<E> validator;
+
+    private RefreshPipeline<E> refreshPipeline;
+
     public BiFunction<byte[], Stat, E> buildFactory() {
         return factory;
     }
@@ -86,6 +132,17 @@ public class GenericZkNodeBuilder<E> {
         return nodeCacheShutdown;
     }
 
+    public CuratorFramework nodeCacheClient() {
+        return nodeCacheClient;
+    }
+
+    /**
+     * null for a custom NodeCache supplier
+     */
+    public Supplier<CuratorFramework> curatorFactory() {
+        return curatorFactory;
+    }
+
     public List<BiConsumer<ChildData, Throwable>> factoryFailedListeners() {
         return factoryFailedListeners;
     }
@@ -94,6 +151,49 @@ public class GenericZkNodeBuilder<E> {
         return emptyObject;
     }
 
+    public Function<Runnable, EventCoalescer> coalescerFactory() {
+        return coalescerFactory;
+    }
+
+    public CleanupScheduler cleanupScheduler() {
+        return cleanupScheduler;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public SnapshotStore snapshotStore() {
+        return snapshotStore;
+    }
+
+    public String snapshotKey() {
+        return snapshotKey;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    public ZkResourceMetrics metrics() {
+        return metrics;
+    }
+
+    public String metricsName() {
+        return metricsName;
+    }
+
+    /**
+     * 0 without history
+     */
+    public int historyEntries() {
+        return historyEntries;
+    }
+
+    public long historyBytes() {
+        return historyBytes;
+    }
+
     @CheckReturnValue
     @Nonnull
     public <T> GenericZkNodeBuilder<T> addFactoryFailedListener(
@@ -120,6 +220,23 @@ public class GenericZkNodeBuilder<E> {
         return thisBuilder;
     }
 
+    /**
+     * decode from a read-only view of the payload instead of a byte[] handed to the factory
+     */
+    @CheckReturnValue
+    @Nonnull
+    public <T> GenericZkNodeBuilder<T> withCodec(@Nonnull NodeCodec<T> codec) {
+        checkNotNull(codec);
+        return withBuildFactory((b, s) -> {
+            try {
+                return codec.decode(ByteBuffer.wrap(b).asReadOnlyBuffer(), s);
+            } catch (Exception e) {
+                throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
     public <T> GenericZkNodeBuilder<T> withRefreshableFactory(@Nullable ListeningExecutorService executor
             , Function<byte[], T> factory) {
         return withRefreshableFactory(executor, (b, s) -> factory.apply(b));
@@ -162,6 +279,8 @@ public class GenericZkNodeBuilder<E> {
     @CheckReturnValue
     @Nonnull
     public GenericZkNodeBuilder<E> withNodeFactory(String path, Supplier<CuratorFramework> curatorFactory) {
+        this.path = path;
+        this.curatorFactory = curatorFactory;
         this.cacheHolder = () -> {
             CuratorFramework thisClient = curatorFactory.get();
             if (thisClient.getState() != CuratorFrameworkState.STARTED) {
@@ -175,6 +294,7 @@ public class GenericZkNodeBuilder<E> {
                     Thread.interrupted();
                 }
                 buildingCache.rebuild();
+                this.nodeCacheClient = thisClient;
                 this.nodeCacheShutdown = () -> {
                     try {
                         buildingCache.close();
@@ -184,6 +304,11 @@ public class GenericZkNodeBuilder<E> {
                 };
                 return buildingCache;
             } catch (Throwable e) {
+                try {
+                    buildingCache.close();
+                } catch (Throwable e1) {
+                    LOGGER.warn("fail to close node cache of {}", path, e1);
+                }
                 throwIfUnchecked(e);
                 throw new RuntimeException(e);
             }
@@ -215,6 +340,139 @@ public class GenericZkNodeBuilder<E> {
         return thisBuilder;
     }
 
+    /**
+     * collapse node changes within window into one refresh of the latest data,
+     * a continuous stream of changes still refreshes at least every maxStaleness
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withCoalescing(long window, long maxStaleness, @Nonnull TimeUnit unit) {
+        return withCoalescing(window, maxStaleness, unit, null);
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withCoalescing(long window, long maxStaleness, @Nonnull TimeUnit unit,
+            @Nullable ScheduledExecutorService scheduler) {
+        checkArgument(window > 0, "window must be positive");
+        checkNotNull(unit);
+        this.coalescerFactory = action -> new EventCoalescer(scheduler, window, maxStaleness, unit, action);
+        return this;
+    }
+
+    /**
+     * factories get payloads written by {@link PayloadCodec#write} decompressed and reassembled,
+     * plain payloads pass through. chunks are read with the client of withNodeFactory(path, client).
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withPayloadCodec(@Nonnull PayloadCodec payloadCodec) {
+        this.payloadCodec = checkNotNull(payloadCodec);
+        return this;
+    }
+
+    /**
+     * keep the current resource when a node event carries the same write (mzxid) or the same bytes,
+     * e.g. after session re-establishment or a touch-only write. the factory is then not called
+     * and the resource keeps seeing the {@link Stat} it was built with.
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> skipUnchanged() {
+        this.skipUnchanged = true;
+        return this;
+    }
+
+    /**
+     * boot from the last good data on local disk and reconcile with zk in background,
+     * keyed by the node path
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withSnapshotStore(@Nonnull SnapshotStore snapshotStore) {
+        return withSnapshotStore(snapshotStore, null);
+    }
+
+    /**
+     * @param key unique within the store, null for the node path
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withSnapshotStore(@Nonnull SnapshotStore snapshotStore, @Nullable String key) {
+        this.snapshotStore = checkNotNull(snapshotStore);
+        this.snapshotKey = key;
+        return this;
+    }
+
+    /**
+     * {@link ZkResourceMetrics#getDefault()} by default
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withMetrics(@Nonnull ZkResourceMetrics metrics) {
+        return withMetrics(metrics, null);
+    }
+
+    /**
+     * @param name reported with every metric, null for the node path
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withMetrics(@Nonnull ZkResourceMetrics metrics, @Nullable String name) {
+        this.metrics = checkNotNull(metrics);
+        this.metricsName = name;
+        return this;
+    }
+
+    /**
+     * keep the raw bytes and stat of the last built versions, at most maxEntries and maxBytes,
+     * to pin the resource to one of them or roll it back
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withHistory(int maxEntries, long maxBytes) {
+        checkArgument(maxEntries > 0, "maxEntries must be positive");
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.historyEntries = maxEntries;
+        this.historyBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * a built value the validator returns false for is cleaned up and reported to the factory failed
+     * listeners, the current value stays published. it is the first stage of the refresh pipeline,
+     * run on the thread that built the value.
+     */
+    @CheckReturnValue
+    @Nonnull
+    public <T> GenericZkNodeBuilder<T> withValidator(@Nonnull Predicate<? super T> validator) {
+        GenericZkNodeBuilder<T> thisBuilder = (GenericZkNodeBuilder<T>) this;
+        thisBuilder.validator = (Predicate<T>) checkNotNull(validator);
+        return thisBuilder;
+    }
+
+    /**
+     * every built value passes the pipeline stages before it is published, a failing stage cleans
+     * the value up and reports to the factory failed listeners, the current value stays published
+     */
+    @CheckReturnValue
+    @Nonnull
+    public <T> GenericZkNodeBuilder<T> withRefreshPipeline(@Nonnull RefreshPipeline<? super T> refreshPipeline) {
+        GenericZkNodeBuilder<T> thisBuilder = (GenericZkNodeBuilder<T>) this;
+        thisBuilder.refreshPipeline = (RefreshPipeline<T>) checkNotNull(refreshPipeline);
+        return thisBuilder;
+    }
+
+    /**
+     * where replaced resources are released, {@link CleanupScheduler#shared()} by default
+     */
+    @CheckReturnValue
+    @Nonnull
+    public GenericZkNodeBuilder<E> withCleanupScheduler(@Nonnull CleanupScheduler cleanupScheduler) {
+        this.cleanupScheduler = checkNotNull(cleanupScheduler);
+        return this;
+    }
+
     @CheckReturnValue
     @Nonnull
     public <T> GenericZkNodeBuilder<T> withEmptyObject(T emptyObject) {
@@ -223,10 +481,78 @@ public class GenericZkNodeBuilder<E> {
         return thisBuilder;
     }
 
+    private byte[] readPayload(byte[] data) {
+        return payloadCodec.read(curatorFactory == null ? null : curatorFactory.get(), path, data);
+    }
+
     @Nonnull
     public <T> ZkNodeResource<T> build() {
         preCondition();
-        return new ZkNodeResource(this);
+        // wrapped into locals on every build, a builder built twice must not wrap its own wrappers
+        BiFunction<byte[], Stat, E> buildFactory = payloadCodec == null ? factory : decoding(factory);
+        BiFunction<byte[], Stat, ListenableFuture<E>> thisRefreshFactory;
+        if (refreshFactory != null) {
+            thisRefreshFactory = payloadCodec == null ? refreshFactory : decodingAsync(refreshFactory);
+        } else {
+            thisRefreshFactory = defaultRefreshFactory(buildFactory);
+        }
+
+        final RefreshPipeline<E> pipeline = stagedPipeline();
+        if (pipeline != null) {
+            final Predicate<E> stageCleanup = cleanup;
+            final BiFunction<byte[], Stat, E> rawFactory = buildFactory;
+            final BiFunction<byte[], Stat, ListenableFuture<E>> rawRefreshFactory = thisRefreshFactory;
+            buildFactory = (bs, stat) -> pipeline.runNow(rawFactory.apply(bs, stat), stageCleanup);
+            thisRefreshFactory = (bs, stat) -> pipeline.run(rawRefreshFactory.apply(bs, stat), stageCleanup);
+        }
+        return new ZkNodeResource(this, buildFactory, thisRefreshFactory);
+    }
+
+    /**
+     * the validator as first stage ahead of the configured pipeline, null without both
+     */
+    @Nullable
+    private RefreshPipeline<E> stagedPipeline() {
+        if (validator == null) {
+            return refreshPipeline;
+        }
+        final Predicate<E> check = validator;
+        final E empty = emptyObject;
+        RefreshPipeline.Builder<E> stages = RefreshPipeline.<E> newBuilder()
+                .validate(value -> value == empty || check.test(value), directExecutor(), 0, NANOSECONDS);
+        return (refreshPipeline != null ? stages.then(refreshPipeline) : stages).build();
+    }
+
+    private BiFunction<byte[], Stat, E> decoding(BiFunction<byte[], Stat, E> rawFactory) {
+        return (bs, stat) -> rawFactory.apply(readPayload(bs), stat);
+    }
+
+    private BiFunction<byte[], Stat, ListenableFuture<E>> decodingAsync(
+            BiFunction<byte[], Stat, ListenableFuture<E>> rawRefreshFactory) {
+        return (bs, stat) -> {
+            byte[] payload;
+            try {
+                payload = readPayload(bs);
+            } catch (Throwable t) {
+                return immediateFailedFuture(t);
+            }
+            return rawRefreshFactory.apply(payload, stat);
+        };
+    }
+
+    private BiFunction<byte[], Stat, ListenableFuture<E>> defaultRefreshFactory(
+            BiFunction<byte[], Stat, E> buildFactory) {
+        if (refreshExecutor != null) {
+            final ListeningExecutorService executor = refreshExecutor;
+            return (bs, stat) -> executor.submit(() -> buildFactory.apply(bs, stat));
+        }
+        return (bs, stat) -> {
+            try {
+                return immediateFuture(buildFactory.apply(bs, stat));
+            } catch (Throwable t) {
+                return immediateFailedFuture(t);
+            }
+        };
     }
 
     /**
@@ -236,21 +562,6 @@ public class GenericZkNodeBuilder<E> {
         checkNotNull(factory);
         checkNotNull(cacheHolder);
 
-        if (refreshFactory == null) {
-            if (refreshExecutor != null) {
-                refreshFactory = (bs, stat) -> refreshExecutor
-                        .submit(() -> factory.apply(bs, stat));
-            } else {
-                refreshFactory = (bs, stat) -> {
-                    try {
-                        return immediateFuture(factory.apply(bs, stat));
-                    } catch (Throwable t) {
-                        return immediateFailedFuture(t);
-                    }
-                };
-            }
-        }
-
         if (onNodeChange != null) {
             BiConsumer<E, E> temp = onNodeChange;
             onNodeChange = (t, u) -> {
@@ -262,6 +573,18 @@ public class GenericZkNodeBuilder<E> {
             };
         }
 
+        if (cleanupScheduler == null) {
+            cleanupScheduler = CleanupScheduler.shared();
+        }
+
+        if (metrics == null) {
+            metrics = ZkResourceMetrics.getDefault();
+        }
+
+        if (snapshotStore != null && snapshotKey == null) {
+            snapshotKey = checkNotNull(path, "snapshot key is required without a node path");
+        }
+
         if (cleanup == null) {
             withCleanupConsumer(t -> {
                 if (t instanceof Closeable) {
@@ -0,0 +1,186 @@
+package com.github.nicklaus4.zk.factory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import org.apache.curator.RetryPolicy;
+import org.apache.curator.retry.RetryNTimes;
+
+/**
+ * settings of the clients {@link ZkClientPool} opens for a key
+ *
+ * @author weishibai
+ * @date 2026/10/17 4:20 PM
+ */
+public class ZkClientConfig {
+
+    private static final ZkClientConfig DEFAULTS = newBuilder().build();
+
+    private final int sessionTimeoutMs;
+
+    private final int connectionTimeoutMs;
+
+    private final RetryPolicy retryPolicy;
+
+    private final int sessions;
+
+    private final long idleCloseMs;
+
+    private final long rebuildAfterLostMs;
+
+    private final boolean shareNamespaces;
+
+    private ZkClientConfig(Builder builder) {
+        this.sessionTimeoutMs = builder.sessionTimeoutMs;
+        this.connectionTimeoutMs = builder.connectionTimeoutMs;
+        this.retryPolicy = builder.retryPolicy;
+        this.sessions = builder.sessions;
+        this.idleCloseMs = builder.idleCloseMs;
+        this.rebuildAfterLostMs = builder.rebuildAfterLostMs;
+        this.shareNamespaces = builder.shareNamespaces;
+    }
+
+    /**
+     * what {@link ZkClientCachedFactory} always used: 60s session, 50s connection timeout,
+     * 3 retries every 3s, one session that is never closed
+     */
+    public static ZkClientConfig defaults() {
+        return DEFAULTS;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public int getSessionTimeoutMs() {
+        return sessionTimeoutMs;
+    }
+
+    public int getConnectionTimeoutMs() {
+        return connectionTimeoutMs;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public long getIdleCloseMs() {
+        return idleCloseMs;
+    }
+
+    public long getRebuildAfterLostMs() {
+        return rebuildAfterLostMs;
+    }
+
+    public boolean isShareNamespaces() {
+        return shareNamespaces;
+    }
+
+    public static class Builder {
+
+        private int sessionTimeoutMs = 60 * 1000;
+
+        private int connectionTimeoutMs = 50 * 1000;
+
+        private RetryPolicy retryPolicy = new RetryNTimes(3, 3000);
+
+        private int sessions = 1;
+
+        private long idleCloseMs;
+
+        private long rebuildAfterLostMs;
+
+        private boolean shareNamespaces;
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder sessionTimeoutMs(int sessionTimeoutMs) {
+            checkArgument(sessionTimeoutMs > 0, "sessionTimeoutMs must be positive");
+            this.sessionTimeoutMs = sessionTimeoutMs;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder connectionTimeoutMs(int connectionTimeoutMs) {
+            checkArgument(connectionTimeoutMs > 0, "connectionTimeoutMs must be positive");
+            this.connectionTimeoutMs = connectionTimeoutMs;
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder retryPolicy(@Nonnull RetryPolicy retryPolicy) {
+            this.retryPolicy = requireNonNull(retryPolicy);
+            return this;
+        }
+
+        /**
+         * sessions opened for the key, each get() takes the next one round robin.
+         * spreads watches and reads of many resources, a single resource still sticks to one session.
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder sessions(int sessions) {
+            checkArgument(sessions > 0, "sessions must be positive");
+            this.sessions = sessions;
+            return this;
+        }
+
+        /**
+         * close the clients once the last lease was released for this long, 0 never closes.
+         * clients handed out by {@link ZkClientPool#get} are never closed.
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder idleClose(long idleClose, @Nonnull TimeUnit unit) {
+            checkArgument(idleClose >= 0, "idleClose must not be negative");
+            this.idleCloseMs = unit.toMillis(idleClose);
+            return this;
+        }
+
+        /**
+         * replace a client that stays disconnected this long after its session was lost, 0 by default
+         * never does and leaves reconnecting to curator. resources of this toolkit move their caches to
+         * the replacement, other users of the closed client register {@link ZkClientPool#addRebuildListener}.
+         * a stopped client is always replaced on its next use.
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder rebuildAfterLost(long rebuildAfterLost, @Nonnull TimeUnit unit) {
+            checkArgument(rebuildAfterLost >= 0, "rebuildAfterLost must not be negative");
+            this.rebuildAfterLostMs = unit.toMillis(rebuildAfterLost);
+            return this;
+        }
+
+        /**
+         * serve every namespace of the ensemble from the same sessions through
+         * {@link org.apache.curator.framework.CuratorFramework#usingNamespace} instead of sessions per namespace.
+         * only read as ensemble or default config, the sessions then use the config of the empty namespace,
+         * a pool with a config for another namespace of such an ensemble fails to build.
+         * the facades handed out cannot be closed.
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder shareNamespaces() {
+            this.shareNamespaces = true;
+            return this;
+        }
+
+        @Nonnull
+        public ZkClientConfig build() {
+            return new ZkClientConfig(this);
+        }
+    }
+}
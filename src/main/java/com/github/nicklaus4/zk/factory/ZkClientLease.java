@@ -0,0 +1,51 @@
+package com.github.nicklaus4.zk.factory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.curator.framework.CuratorFramework;
+
+/**
+ * a client held from {@link ZkClientPool#acquire}, released by close()
+ *
+ * @author weishibai
+ * @date 2026/10/17 4:32 PM
+ */
+public class ZkClientLease implements AutoCloseable {
+
+    private final Supplier<CuratorFramework> client;
+
+    private final Runnable release;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ZkClientLease(Supplier<CuratorFramework> client, Runnable release) {
+        this.client = client;
+        this.release = release;
+    }
+
+    /**
+     * same session for the whole lease unless the pool replaced it for being dead,
+     * so prefer calling this over keeping the result
+     */
+    public CuratorFramework client() {
+        if (released.get()) {
+            throw new IllegalStateException("lease has been released.");
+        }
+        return client.get();
+    }
+
+    /**
+     * usable as curator supplier of resource builders
+     */
+    public Supplier<CuratorFramework> asSupplier() {
+        return this::client;
+    }
+
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            release.run();
+        }
+    }
+}
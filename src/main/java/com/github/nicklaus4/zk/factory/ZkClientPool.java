@@ -0,0 +1,451 @@
+package com.github.nicklaus4.zk.factory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.framework.state.ConnectionState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.executor.ResourceExecutors;
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+import com.github.nicklaus4.zk.model.ZkClientKey;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * curator clients keyed by connect string and namespace.
+ *
+ * a key may open several sessions to spread load, its clients are closed once idle when leased,
+ * and a stopped client or one that stays disconnected after its session was lost is replaced.
+ * with {@link ZkClientConfig.Builder#shareNamespaces()} all namespaces of an ensemble share its sessions.
+ *
+ * @author weishibai
+ * @date 2026/10/17 4:40 PM
+ */
+public class ZkClientPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZkClientPool.class);
+
+    private static volatile ZkClientPool shared;
+
+    private static final List<BiConsumer<CuratorFramework, CuratorFramework>> GLOBAL_REBUILD_LISTENERS =
+            new CopyOnWriteArrayList<>();
+
+    private final ZkClientConfig defaultConfig;
+
+    private final Map<ZkClientKey, ZkClientConfig> keyConfigs;
+
+    private final Map<String, ZkClientConfig> ensembleConfigs;
+
+    private final ZkResourceMetrics metrics;
+
+    private final List<BiConsumer<CuratorFramework, CuratorFramework>> rebuildListeners = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentMap<ZkClientKey, Entry> entries = Maps.newConcurrentMap();
+
+    private ZkClientPool(Builder builder) {
+        this.defaultConfig = builder.defaultConfig;
+        this.keyConfigs = ImmutableMap.copyOf(builder.keyConfigs);
+        this.ensembleConfigs = ImmutableMap.copyOf(builder.ensembleConfigs);
+        this.metrics = builder.metrics;
+    }
+
+    /**
+     * jvm wide pool with {@link ZkClientConfig#defaults()}, backs {@link ZkClientCachedFactory}
+     */
+    public static ZkClientPool shared() {
+        if (shared == null) {
+            synchronized (ZkClientPool.class) {
+                if (shared == null) {
+                    shared = newBuilder().build();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * replace the jvm wide pool, clients already handed out stay with the previous one
+     */
+    public static void setShared(@Nonnull ZkClientPool pool) {
+        synchronized (ZkClientPool.class) {
+            shared = checkNotNull(pool);
+        }
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * a started client that is kept for the life of the pool, the next session round robin
+     */
+    public CuratorFramework get(@Nonnull String connectString, @Nullable String namespace) {
+        ZkClientKey key = entryKey(checkNotNull(connectString), namespace);
+        while (true) {
+            Entry entry = entries.computeIfAbsent(key, Entry::new);
+            if (entry.pin()) {
+                return entry.client(entry.nextIndex(), namespace);
+            }
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * a client held until the lease is closed, the clients of a key close after
+     * {@link ZkClientConfig#getIdleCloseMs()} once no lease is left
+     */
+    @CheckReturnValue
+    @Nonnull
+    public ZkClientLease acquire(@Nonnull String connectString, @Nullable String namespace) {
+        ZkClientKey key = entryKey(checkNotNull(connectString), namespace);
+        while (true) {
+            Entry entry = entries.computeIfAbsent(key, Entry::new);
+            if (entry.retain()) {
+                int index = entry.nextIndex();
+                return new ZkClientLease(() -> entry.client(index, namespace), entry::release);
+            }
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * called with (dead, replacement) after a client was replaced, e.g. to rebuild caches bound to it.
+     * these are the underlying clients, not the facades of shared namespaces.
+     */
+    public void addRebuildListener(@Nonnull BiConsumer<CuratorFramework, CuratorFramework> listener) {
+        rebuildListeners.add(checkNotNull(listener));
+    }
+
+    public void removeRebuildListener(@Nonnull BiConsumer<CuratorFramework, CuratorFramework> listener) {
+        rebuildListeners.remove(listener);
+    }
+
+    /**
+     * like {@link #addRebuildListener} for the clients of every pool, which resources use to rebind
+     * their caches without knowing the pool their client came from
+     */
+    public static void addGlobalRebuildListener(@Nonnull BiConsumer<CuratorFramework, CuratorFramework> listener) {
+        GLOBAL_REBUILD_LISTENERS.add(checkNotNull(listener));
+    }
+
+    public static void removeGlobalRebuildListener(@Nonnull BiConsumer<CuratorFramework, CuratorFramework> listener) {
+        GLOBAL_REBUILD_LISTENERS.remove(listener);
+    }
+
+    /**
+     * leases not yet released for a key, -1 when the key has no clients open
+     */
+    public int getLeaseCount(@Nonnull String connectString, @Nullable String namespace) {
+        Entry entry = entries.get(entryKey(connectString, namespace));
+        return entry == null ? -1 : entry.leases();
+    }
+
+    /**
+     * one per key with sessions open, i.e. one per ensemble for shared namespaces
+     */
+    public List<ZkSessionUsage> sessionUsage() {
+        List<ZkSessionUsage> usage = new ArrayList<>();
+        entries.values().forEach(entry -> usage.add(entry.usage()));
+        return usage;
+    }
+
+    /**
+     * close every client regardless of leases
+     */
+    public void close() {
+        entries.values().forEach(Entry::close);
+    }
+
+    private ZkClientKey entryKey(String connectString, @Nullable String namespace) {
+        if (namespace != null && ensembleConfigs.getOrDefault(connectString, defaultConfig).isShareNamespaces()) {
+            return new ZkClientKey(connectString, null);
+        }
+        return new ZkClientKey(connectString, namespace);
+    }
+
+    private ZkClientConfig configOf(ZkClientKey key) {
+        ZkClientConfig config = keyConfigs.get(key);
+        if (config == null) {
+            config = ensembleConfigs.getOrDefault(key.getZkConnectStr(), defaultConfig);
+        }
+        return config;
+    }
+
+    private ZkResourceMetrics metrics() {
+        return metrics != null ? metrics : ZkResourceMetrics.getDefault();
+    }
+
+    private static void closeQuietly(CuratorFramework client, ZkClientKey key) {
+        try {
+            client.close();
+        } catch (Throwable e) {
+            LOGGER.warn("fail to close zk client addr {} namespace {}", key.getZkConnectStr(), key.getNamespace(), e);
+        }
+    }
+
+    /**
+     * sessions of one key
+     */
+    private final class Entry {
+
+        private final ZkClientKey key;
+
+        private final ZkClientConfig config;
+
+        private final AtomicReferenceArray<CuratorFramework> sessions;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final boolean shareNamespaces;
+
+        private final Set<String> namespaces = ConcurrentHashMap.newKeySet();
+
+        @GuardedBy("this")
+        private int leases;
+
+        @GuardedBy("this")
+        private boolean pinned;
+
+        @GuardedBy("this")
+        private boolean closed;
+
+        @GuardedBy("this")
+        private ScheduledFuture<?> idleClose;
+
+        Entry(ZkClientKey key) {
+            this.key = key;
+            this.config = configOf(key);
+            this.shareNamespaces = ensembleConfigs.getOrDefault(key.getZkConnectStr(), defaultConfig)
+                    .isShareNamespaces();
+            this.sessions = new AtomicReferenceArray<>(config.getSessions());
+            for (int i = 0; i < config.getSessions(); i++) {
+                sessions.set(i, newClient(i));
+            }
+        }
+
+        int nextIndex() {
+            return Math.floorMod(next.getAndIncrement(), sessions.length());
+        }
+
+        CuratorFramework client(int index, @Nullable String namespace) {
+            namespaces.add(namespace == null ? "" : namespace);
+            CuratorFramework client = session(index);
+            return shareNamespaces ? client.usingNamespace(namespace) : client;
+        }
+
+        synchronized ZkSessionUsage usage() {
+            List<Boolean> connected = new ArrayList<>(sessions.length());
+            for (int i = 0; i < sessions.length(); i++) {
+                connected.add(sessions.get(i).getZookeeperClient().isConnected());
+            }
+            return new ZkSessionUsage(key.getZkConnectStr(), key.getNamespace(), namespaces, connected, leases,
+                    pinned);
+        }
+
+        CuratorFramework session(int index) {
+            CuratorFramework client = sessions.get(index);
+            if (client.getState() == CuratorFrameworkState.STOPPED) {
+                client = replace(index, client, "stopped");
+            }
+            return client;
+        }
+
+        synchronized boolean pin() {
+            if (closed) {
+                return false;
+            }
+            pinned = true;
+            cancelIdleClose();
+            return true;
+        }
+
+        synchronized boolean retain() {
+            if (closed) {
+                return false;
+            }
+            leases++;
+            cancelIdleClose();
+            return true;
+        }
+
+        synchronized void release() {
+            if (--leases == 0 && !pinned && !closed && config.getIdleCloseMs() > 0) {
+                idleClose = ResourceExecutors.bootstrap().schedule(this::closeIfIdle, config.getIdleCloseMs(),
+                        MILLISECONDS);
+            }
+        }
+
+        synchronized int leases() {
+            return leases;
+        }
+
+        private void closeIfIdle() {
+            synchronized (this) {
+                if (leases > 0 || pinned) {
+                    return;
+                }
+            }
+            LOGGER.info("close idle zk client addr {} namespace {}", key.getZkConnectStr(), key.getNamespace());
+            close();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                cancelIdleClose();
+            }
+            entries.remove(key, this);
+            for (int i = 0; i < sessions.length(); i++) {
+                closeQuietly(sessions.get(i), key);
+            }
+        }
+
+        private void cancelIdleClose() {
+            assert Thread.holdsLock(this);
+            if (idleClose != null) {
+                idleClose.cancel(false);
+                idleClose = null;
+            }
+        }
+
+        private CuratorFramework replace(int index, CuratorFramework dead, String reason) {
+            CuratorFramework fresh;
+            synchronized (this) {
+                if (closed || sessions.get(index) != dead) {
+                    return sessions.get(index);
+                }
+                LOGGER.warn("replace {} zk client addr {} namespace {}", reason, key.getZkConnectStr(),
+                        key.getNamespace());
+                fresh = newClient(index);
+                sessions.set(index, fresh);
+            }
+            closeQuietly(dead, key);
+            for (List<BiConsumer<CuratorFramework, CuratorFramework>> listeners : Arrays.asList(rebuildListeners,
+                    GLOBAL_REBUILD_LISTENERS)) {
+                listeners.forEach(listener -> {
+                    try {
+                        listener.accept(dead, fresh);
+                    } catch (Throwable e) {
+                        LOGGER.error("zk client rebuild listener error: ", e);
+                    }
+                });
+            }
+            return fresh;
+        }
+
+        private CuratorFramework newClient(int index) {
+            final CuratorFramework curator = CuratorFrameworkFactory.builder()
+                    .connectString(key.getZkConnectStr())
+                    .namespace(key.getNamespace())
+                    .sessionTimeoutMs(config.getSessionTimeoutMs())
+                    .connectionTimeoutMs(config.getConnectionTimeoutMs())
+                    .retryPolicy(config.getRetryPolicy())
+                    .build();
+            final ZkResourceMetrics thisMetrics = metrics();
+            curator.getConnectionStateListenable().addListener((c, state) -> {
+                thisMetrics.onClientStateChanged(key.getZkConnectStr(), key.getNamespace(), state.name());
+                if (state == ConnectionState.LOST && config.getRebuildAfterLostMs() > 0) {
+                    ResourceExecutors.bootstrap().schedule(() -> {
+                        if (!curator.getZookeeperClient().isConnected()) {
+                            replace(index, curator, "lost");
+                        }
+                    }, config.getRebuildAfterLostMs(), MILLISECONDS);
+                }
+            });
+            curator.start();
+            thisMetrics.onClientCreated(key.getZkConnectStr(), key.getNamespace());
+
+            LOGGER.info("create zk client addr {} namespace {} session {}/{}", key.getZkConnectStr(),
+                    key.getNamespace(), index + 1, sessions.length());
+            return curator;
+        }
+    }
+
+    public static class Builder {
+
+        private ZkClientConfig defaultConfig = ZkClientConfig.defaults();
+
+        private final Map<ZkClientKey, ZkClientConfig> keyConfigs = Maps.newHashMap();
+
+        private final Map<String, ZkClientConfig> ensembleConfigs = Maps.newHashMap();
+
+        private ZkResourceMetrics metrics;
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder defaultConfig(@Nonnull ZkClientConfig config) {
+            this.defaultConfig = checkNotNull(config);
+            return this;
+        }
+
+        /**
+         * for every namespace of an ensemble without a config of its own
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder config(@Nonnull String connectString, @Nonnull ZkClientConfig config) {
+            ensembleConfigs.put(checkNotNull(connectString), checkNotNull(config));
+            return this;
+        }
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder config(@Nonnull String connectString, @Nullable String namespace,
+                @Nonnull ZkClientConfig config) {
+            keyConfigs.put(new ZkClientKey(checkNotNull(connectString), namespace), checkNotNull(config));
+            return this;
+        }
+
+        /**
+         * {@link ZkResourceMetrics#getDefault()} at client creation by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder metrics(@Nonnull ZkResourceMetrics metrics) {
+            this.metrics = checkNotNull(metrics);
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException when a namespace has a config of its own on an ensemble
+         * that shares one session across namespaces, it could never apply
+         */
+        @Nonnull
+        public ZkClientPool build() {
+            keyConfigs.keySet().forEach(key -> checkArgument(key.getNamespace() == null
+                            || !ensembleConfigs.getOrDefault(key.getZkConnectStr(), defaultConfig).isShareNamespaces(),
+                    "namespace %s of %s has a config of its own but the ensemble shares its sessions across "
+                            + "namespaces, configure the ensemble instead", key.getNamespace(), key.getZkConnectStr()));
+            return new ZkClientPool(this);
+        }
+    }
+}
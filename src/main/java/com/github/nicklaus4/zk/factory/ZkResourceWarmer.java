@@ -0,0 +1,218 @@
+package com.github.nicklaus4.zk.factory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.zookeeper.KeeperException.Code.NONODE;
+import static org.apache.zookeeper.KeeperException.Code.OK;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.ZkNodeResource;
+import com.github.nicklaus4.zk.model.AsyncResourceLoader;
+
+/**
+ * warm many resources at boot in parallel.
+ *
+ * node data of all paths is read with pipelined background getData calls over one client,
+ * factories run on a fork join pool and each resource is primed with its value, NodeCaches
+ * are attached afterwards in background. resources without a known path, resources on another
+ * ensemble or namespace than the warmer client, missing nodes and failed reads fall back to
+ * {@link AsyncResourceLoader#warmUp()}.
+ *
+ * @author weishibai
+ * @date 2026/10/17 11:20 AM
+ */
+public class ZkResourceWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZkResourceWarmer.class);
+
+    private final CuratorFramework client;
+
+    private final ForkJoinPool pool;
+
+    private final int maxInFlight;
+
+    private ZkResourceWarmer(Builder builder) {
+        this.client = builder.client;
+        this.pool = builder.pool;
+        this.maxInFlight = builder.maxInFlight;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * warm any loaders concurrently through their own async path
+     */
+    @Nonnull
+    public static CompletableFuture<Void> warmUpAll(@Nonnull Collection<? extends AsyncResourceLoader<?>> loaders) {
+        return CompletableFuture.allOf(loaders.stream()
+                .map(AsyncResourceLoader::warmUp)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * @param resources only those reading the same ensemble and namespace as the warmer client are
+     * primed from its reads, the others warm up on their own
+     */
+    @Nonnull
+    public CompletableFuture<Void> warmUp(@Nonnull Collection<? extends ZkNodeResource<?>> resources) {
+        List<CompletableFuture<?>> futures = new ArrayList<>(resources.size());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        for (ZkNodeResource<?> resource : resources) {
+            String path = resource.getNodePath();
+            if (path == null || !readsSameNodes(resource)) {
+                futures.add(resource.warmUp());
+                continue;
+            }
+            futures.add(fetch(path, inFlight)
+                    .thenApplyAsync(data -> {
+                        if (data != null) {
+                            resource.prime(data);
+                        }
+                        return resource;
+                    }, pool)
+                    .handle((r, e) -> {
+                        if (e != null) {
+                            LOGGER.warn("fail to prime {}, warm it up through its node cache.", path, e);
+                        }
+                        return r;
+                    })
+                    .thenCompose(r -> resource.warmUp()));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * build and warm one resource per path
+     */
+    @Nonnull
+    public <E> CompletableFuture<Map<String, ZkNodeResource<E>>> warmUp(
+            @Nonnull Map<String, BiFunction<byte[], Stat, E>> factories) {
+        Map<String, ZkNodeResource<E>> resources = new LinkedHashMap<>();
+        factories.forEach((path, factory) -> resources.put(path, ZkNodeResource.<E>newBuilder()
+                .withNodeFactory(path, client)
+                .withBuildFactory(factory)
+                .build()));
+        return warmUp(resources.values()).thenApply(v -> resources);
+    }
+
+    /**
+     * @return true when the resource's client sees the same nodes as the warmer client, a namespace
+     * facade shares the zookeeper client of the client it was taken from
+     */
+    private boolean readsSameNodes(ZkNodeResource<?> resource) {
+        final CuratorFramework resourceClient;
+        try {
+            resourceClient = resource.getNodeClient();
+        } catch (Throwable e) {
+            LOGGER.warn("fail to get client of {}, warm it up on its own.", resource.getNodePath(), e);
+            return false;
+        }
+        if (resourceClient == client) {
+            return true;
+        }
+        if (resourceClient == null || resourceClient.getZookeeperClient() != client.getZookeeperClient()
+                || !Objects.equals(resourceClient.getNamespace(), client.getNamespace())) {
+            LOGGER.info("{} reads another ensemble or namespace, warm it up on its own.", resource.getNodePath());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return null data when the node does not exist
+     */
+    private CompletableFuture<ChildData> fetch(String path, Semaphore inFlight) {
+        CompletableFuture<ChildData> future = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        try {
+            client.getData().inBackground((c, event) -> {
+                inFlight.release();
+                KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                if (code == OK) {
+                    future.complete(new ChildData(path, event.getStat(), event.getData()));
+                } else if (code == NONODE) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(KeeperException.create(code, path));
+                }
+            }).forPath(path);
+        } catch (Exception e) {
+            inFlight.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public static class Builder {
+
+        private CuratorFramework client;
+
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private int maxInFlight = 1000;
+
+        @CheckReturnValue
+        @Nonnull
+        public Builder client(@Nonnull CuratorFramework client) {
+            this.client = checkNotNull(client);
+            return this;
+        }
+
+        /**
+         * where factories run, common pool by default
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder pool(@Nonnull ForkJoinPool pool) {
+            this.pool = checkNotNull(pool);
+            return this;
+        }
+
+        /**
+         * outstanding background reads, bounds the client's pending request queue
+         */
+        @CheckReturnValue
+        @Nonnull
+        public Builder maxInFlight(int maxInFlight) {
+            checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        @Nonnull
+        public ZkResourceWarmer build() {
+            checkNotNull(client, "client is required");
+            return new ZkResourceWarmer(this);
+        }
+    }
+}
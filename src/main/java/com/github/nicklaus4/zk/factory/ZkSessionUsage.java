@@ -0,0 +1,94 @@
+package com.github.nicklaus4.zk.factory;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * sessions a {@link ZkClientPool} keeps open for one key, a point in time view
+ *
+ * @author weishibai
+ * @date 2026/10/17 5:30 PM
+ */
+public class ZkSessionUsage {
+
+    private final String connectString;
+
+    private final String namespace;
+
+    private final Set<String> namespaces;
+
+    private final List<Boolean> connected;
+
+    private final int leases;
+
+    private final boolean pinned;
+
+    ZkSessionUsage(String connectString, @Nullable String namespace, Set<String> namespaces,
+            List<Boolean> connected, int leases, boolean pinned) {
+        this.connectString = connectString;
+        this.namespace = namespace;
+        this.namespaces = ImmutableSet.copyOf(namespaces);
+        this.connected = ImmutableList.copyOf(connected);
+        this.leases = leases;
+        this.pinned = pinned;
+    }
+
+    public String getConnectString() {
+        return connectString;
+    }
+
+    /**
+     * namespace of the sessions, null for none or when shared across namespaces
+     */
+    @Nullable
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * namespaces served so far, "" for the root
+     */
+    public Set<String> getNamespaces() {
+        return namespaces;
+    }
+
+    public int getSessions() {
+        return connected.size();
+    }
+
+    /**
+     * per session whether it is connected right now
+     */
+    public List<Boolean> getConnected() {
+        return connected;
+    }
+
+    public int getLeases() {
+        return leases;
+    }
+
+    /**
+     * handed out by get() and never closed
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("connectString", connectString)
+                .add("namespace", namespace)
+                .add("namespaces", namespaces)
+                .add("connected", connected)
+                .add("leases", leases)
+                .add("pinned", pinned)
+                .toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.nicklaus4.zk.metrics;
+
+/**
+ * @author weishibai
+ * @date 2026/10/17 3:12 PM
+ */
+final class NoopMetrics implements ZkResourceMetrics {
+
+    static final NoopMetrics INSTANCE = new NoopMetrics();
+
+    static volatile ZkResourceMetrics defaultMetrics = INSTANCE;
+
+    private NoopMetrics() {
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.nicklaus4.zk.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * instrumentation spi of resources and clients, every method defaults to no-op.
+ *
+ * resources are named by path unless given a name, and call these on their own threads
+ * (get() on the caller), so implementations must be thread safe and cheap.
+ *
+ * @author weishibai
+ * @date 2026/10/17 3:10 PM
+ */
+public interface ZkResourceMetrics {
+
+    /**
+     * does nothing and allocates nothing
+     */
+    static ZkResourceMetrics noop() {
+        return NoopMetrics.INSTANCE;
+    }
+
+    /**
+     * used by resources built without explicit metrics and by {@link com.github.nicklaus4.zk.factory.ZkClientCachedFactory}
+     */
+    static ZkResourceMetrics getDefault() {
+        return NoopMetrics.defaultMetrics;
+    }
+
+    /**
+     * affects resources and clients created afterwards
+     */
+    static void setDefault(@Nonnull ZkResourceMetrics metrics) {
+        NoopMetrics.defaultMetrics = checkNotNull(metrics);
+    }
+
+    /**
+     * every get(), the hot path
+     */
+    default void onGet(String resource) {
+    }
+
+    /**
+     * from creation of the resource to its first published value, once per resource
+     */
+    default void onFirstValue(String resource, long nanos) {
+    }
+
+    /**
+     * a build or patch of the resource, including queueing on a refresh executor
+     */
+    default void onFactory(String resource, long nanos, boolean success) {
+    }
+
+    /**
+     * zk event arrived at the resource
+     */
+    default void onEventReceived(String resource) {
+    }
+
+    /**
+     * a refresh published a new value, may cover several received events when coalesced
+     */
+    default void onEventApplied(String resource) {
+    }
+
+    /**
+     * mzxid the published value was built from, the max over the tree for tree resources
+     */
+    default void onVersion(String resource, long mzxid) {
+    }
+
+    /**
+     * from the planned start of a cleanup to its first attempt
+     */
+    default void onCleanupQueued(String resource, long nanos) {
+    }
+
+    default void onClientCreated(String connectString, @Nullable String namespace) {
+    }
+
+    /**
+     * @param state name of the curator ConnectionState
+     */
+    default void onClientStateChanged(String connectString, @Nullable String namespace, String state) {
+    }
+}
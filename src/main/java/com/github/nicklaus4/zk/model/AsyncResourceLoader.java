@@ -0,0 +1,25 @@
+package com.github.nicklaus4.zk.model;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * resource loader that can be initialized without blocking the caller
+ *
+ * @author weishibai
+ * @date 2026/10/17 10:05 AM
+ */
+public interface AsyncResourceLoader<T> extends ResourceLoader<T> {
+
+    /**
+     * completed at once when the resource is ready, otherwise the first load runs in background
+     * and concurrent callers share it. a failed load is retried by the next call.
+     */
+    CompletableFuture<T> getAsync();
+
+    /**
+     * start loading in background, e.g. for all resources at boot before taking traffic
+     */
+    default CompletableFuture<Void> warmUp() {
+        return getAsync().thenApply(t -> null);
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.nicklaus4.zk.model;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+
+/**
+ * tree factory that patches the previous resource instead of rebuilding it
+ *
+ * @author weishibai
+ * @date 2026/10/16 2:46 PM
+ */
+@FunctionalInterface
+public interface DeltaFactory<T> {
+
+    /**
+     * @param previous null on the first build, which must then be built from tree
+     * @param tree immutable view of the whole tree after changes, safe to retain
+     * @param changes in event order, empty on the first build. a change may already be
+     * reflected in previous when it raced with the first build, so patching must be idempotent
+     * @return previous itself is allowed, in which case no cleanup happens
+     */
+    T apply(@Nullable T previous, Map<String, ChildData> tree, List<TreeDelta> changes) throws Exception;
+
+    static <T> DeltaFactory<T> rebuilding(ThrowableFunction<Map<String, ChildData>, T, Exception> factory) {
+        return (previous, tree, changes) -> factory.apply(tree);
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.nicklaus4.zk.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.nicklaus4.zk.executor.CleanupScheduler;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * value derived from other loaders, recomputed on the first get after any of them changed: a
+ * {@link VersionedResourceLoader} by version, so a delta applied in place counts, any other by
+ * instance. the replaced value goes to {@link CleanupScheduler#shared()} after the wait stop
+ * period, and a failed derivation keeps the previous value, it is tried again only once an input
+ * changed.
+ *
+ * @author weishibai
+ * @date 2026/10/18 8:00 PM
+ */
+@ThreadSafe
+final class DerivedResource<R> implements ResourceLoader<R> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DerivedResource.class);
+
+    private final List<ResourceLoader<?>> sources;
+
+    private final ThrowableFunction<Object[], ? extends R, ? extends Exception> derive;
+
+    private final Predicate<? super R> cleanup;
+
+    private final long waitStopPeriod;
+
+    @GuardedBy("this")
+    private volatile Memo<R> memo;
+
+    /**
+     * error of the last derivation with the inputs it failed on, cleared by the next success
+     */
+    @GuardedBy("this")
+    private volatile Memo<Exception> failed;
+
+    DerivedResource(List<? extends ResourceLoader<?>> sources,
+            ThrowableFunction<Object[], ? extends R, ? extends Exception> derive, Predicate<? super R> cleanup,
+            long waitStopPeriod) {
+        checkArgument(waitStopPeriod >= 0, "waitStopPeriod must not be negative");
+        this.sources = ImmutableList.copyOf(sources);
+        this.derive = requireNonNull(derive);
+        this.cleanup = requireNonNull(cleanup);
+        this.waitStopPeriod = waitStopPeriod;
+    }
+
+    /**
+     * closes a Closeable value, like the default cleanup of the resource builders
+     */
+    static <R> Predicate<R> closing() {
+        return value -> {
+            if (value instanceof Closeable) {
+                try {
+                    ((Closeable) value).close();
+                } catch (Throwable e) {
+                    throwIfUnchecked(e);
+                    throw new RuntimeException(e);
+                }
+            }
+            return true;
+        };
+    }
+
+    @Override
+    public R get() {
+        Memo<R> current = memo;
+        if (current != null && current.isFresh(sources)) {
+            return current.value;
+        }
+        Memo<Exception> failure = failed;
+        if (current != null && failure != null && failure.isFresh(sources)) {
+            return current.value;
+        }
+        synchronized (this) {
+            current = memo;
+            Object[] inputs = new Object[sources.size()];
+            long[] versions = new long[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                ResourceLoader<?> source = sources.get(i);
+                if (source instanceof VersionedResourceLoader) {
+                    Versioned<?> versioned = ((VersionedResourceLoader<?>) source).getVersioned();
+                    inputs[i] = versioned.getValue();
+                    versions[i] = versioned.getVersion();
+                } else {
+                    inputs[i] = source.get();
+                }
+            }
+            if (current != null && current.isFor(inputs, versions)) {
+                return current.value;
+            }
+            failure = failed;
+            if (current != null && failure != null && failure.isFor(inputs, versions)) {
+                return current.value;
+            }
+            R value;
+            try {
+                value = derive.apply(inputs);
+            } catch (Exception e) {
+                failed = new Memo<>(inputs, versions, e);
+                if (current == null) {
+                    throwIfUnchecked(e);
+                    throw new RuntimeException(e);
+                }
+                LOGGER.error("fail to derive value, keep the previous one until an input changes.", e);
+                return current.value;
+            }
+            memo = new Memo<>(inputs, versions, value);
+            failed = null;
+            R replaced = current != null ? current.value : null;
+            if (replaced != null && replaced != value) {
+                CleanupScheduler.shared().submit("[" + replaced.getClass().getSimpleName() + "] derived",
+                        () -> cleanup.test(replaced), waitStopPeriod, () -> LOGGER.debug("derived value replaced"));
+            }
+            return value;
+        }
+    }
+
+    /**
+     * derived value, or derivation error, with the source instances and versions it came from
+     */
+    private static final class Memo<R> {
+
+        private final Object[] inputs;
+
+        /**
+         * version per versioned source, unused for the others
+         */
+        private final long[] versions;
+
+        private final R value;
+
+        Memo(Object[] inputs, long[] versions, R value) {
+            this.inputs = inputs;
+            this.versions = versions;
+            this.value = value;
+        }
+
+        boolean isFresh(List<ResourceLoader<?>> sources) {
+            for (int i = 0; i < inputs.length; i++) {
+                ResourceLoader<?> source = sources.get(i);
+                if (source instanceof VersionedResourceLoader) {
+                    if (((VersionedResourceLoader<?>) source).getVersioned().getVersion() != versions[i]) {
+                        return false;
+                    }
+                } else if (source.get() != inputs[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isFor(Object[] current, long[] currentVersions) {
+            for (int i = 0; i < inputs.length; i++) {
+                if (current[i] != inputs[i] || currentVersions[i] != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
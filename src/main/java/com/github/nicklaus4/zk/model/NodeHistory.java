@@ -0,0 +1,93 @@
+package com.github.nicklaus4.zk.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * last versions of a node as raw bytes with their stat, newest first, bounded by count and bytes.
+ * the newest is kept even when larger than the byte bound.
+ *
+ * @author weishibai
+ * @date 2026/10/18 9:00 PM
+ */
+@ThreadSafe
+public final class NodeHistory {
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    @GuardedBy("this")
+    private final Deque<ChildData> entries = new ArrayDeque<>();
+
+    @GuardedBy("this")
+    private long bytes;
+
+    public NodeHistory(int maxEntries, long maxBytes) {
+        checkArgument(maxEntries > 0, "maxEntries must be positive");
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * add data as the newest version, ignored when its mzxid is already there
+     */
+    public synchronized void record(@Nonnull ChildData data) {
+        checkArgument(data.getStat() != null && data.getData() != null, "no stat or data to record");
+        if (find(data.getStat().getMzxid()) != null) {
+            return;
+        }
+        entries.addFirst(data);
+        bytes += data.getData().length;
+        while (entries.size() > maxEntries || bytes > maxBytes && entries.size() > 1) {
+            bytes -= entries.removeLast().getData().length;
+        }
+    }
+
+    @Nullable
+    public synchronized ChildData find(long mzxid) {
+        for (ChildData entry : entries) {
+            if (entry.getStat().getMzxid() == mzxid) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * newest version older than mzxid
+     */
+    @Nullable
+    public synchronized ChildData before(long mzxid) {
+        for (ChildData entry : entries) {
+            if (entry.getStat().getMzxid() < mzxid) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * newest first
+     */
+    public synchronized List<ChildData> entries() {
+        return ImmutableList.copyOf(entries);
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -1,5 +1,12 @@
 package com.github.nicklaus4.zk.model;
 
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
 /**
  * resource loader
  *
@@ -10,4 +17,63 @@ package com.github.nicklaus4.zk.model;
 public interface ResourceLoader<T> {
 
     T get();
+
+    /**
+     * view derived from this resource, computed on the first get after the resource changed
+     * instance, or version for a {@link VersionedResourceLoader}, and kept until then. a replaced
+     * view that is Closeable gets closed.
+     */
+    default <R> ResourceLoader<R> map(ThrowableFunction<? super T, ? extends R, ? extends Exception> fn) {
+        return map(fn, DerivedResource.closing());
+    }
+
+    /**
+     * @param cleanup releases a replaced view, returns false to be retried later
+     */
+    default <R> ResourceLoader<R> map(ThrowableFunction<? super T, ? extends R, ? extends Exception> fn,
+            Predicate<? super R> cleanup) {
+        return map(fn, cleanup, 0);
+    }
+
+    /**
+     * @param waitStopPeriod ms a replaced view stays usable by readers before its cleanup
+     */
+    @SuppressWarnings("unchecked")
+    default <R> ResourceLoader<R> map(ThrowableFunction<? super T, ? extends R, ? extends Exception> fn,
+            Predicate<? super R> cleanup, long waitStopPeriod) {
+        requireNonNull(fn);
+        return new DerivedResource<>(Collections.singletonList(this), inputs -> fn.apply((T) inputs[0]), cleanup,
+                waitStopPeriod);
+    }
+
+    /**
+     * view derived from two resources, recomputed when either changed instance
+     */
+    @SuppressWarnings("unchecked")
+    static <A, B, R> ResourceLoader<R> combine(ResourceLoader<A> first, ResourceLoader<B> second,
+            ThrowableBiFunction<? super A, ? super B, ? extends R, ? extends Exception> fn) {
+        requireNonNull(fn);
+        return new DerivedResource<>(Arrays.asList(first, second), inputs -> fn.apply((A) inputs[0], (B) inputs[1]),
+                DerivedResource.closing(), 0);
+    }
+
+    /**
+     * @param fn gets the values of loaders in order
+     */
+    static <R> ResourceLoader<R> combine(List<? extends ResourceLoader<?>> loaders,
+            ThrowableFunction<List<Object>, ? extends R, ? extends Exception> fn) {
+        return combine(loaders, fn, DerivedResource.closing(), 0);
+    }
+
+    /**
+     * @param cleanup releases a replaced view, returns false to be retried later
+     * @param waitStopPeriod ms a replaced view stays usable by readers before its cleanup
+     */
+    static <R> ResourceLoader<R> combine(List<? extends ResourceLoader<?>> loaders,
+            ThrowableFunction<List<Object>, ? extends R, ? extends Exception> fn, Predicate<? super R> cleanup,
+            long waitStopPeriod) {
+        requireNonNull(fn);
+        return new DerivedResource<>(loaders, inputs -> fn.apply(Collections.unmodifiableList(Arrays.asList(inputs))),
+                cleanup, waitStopPeriod);
+    }
 }
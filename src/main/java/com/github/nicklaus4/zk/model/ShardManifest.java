@@ -0,0 +1,99 @@
+package com.github.nicklaus4.zk.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * shards of a sharded node in merge order, each with the Stat version it must be at.
+ * stored as utf-8 lines of "name@version", a bare "name" accepts any version.
+ *
+ * @author weishibai
+ * @date 2026/10/18 4:05 PM
+ */
+@Immutable
+public final class ShardManifest {
+
+    public static final int ANY_VERSION = -1;
+
+    private final ImmutableMap<String, Integer> shards;
+
+    private ShardManifest(ImmutableMap<String, Integer> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * @param shards name to version in merge order
+     */
+    public static ShardManifest of(@Nonnull Map<String, Integer> shards) {
+        shards.keySet().forEach(name -> checkArgument(StringUtils.isNotBlank(name) && !StringUtils.containsAny(name,
+                '/', '@', '\n'), "illegal shard name: %s", name));
+        return new ShardManifest(ImmutableMap.copyOf(shards));
+    }
+
+    public static ShardManifest parse(@Nullable byte[] data) {
+        ImmutableMap.Builder<String, Integer> shards = ImmutableMap.builder();
+        if (data != null) {
+            for (String line : StringUtils.split(new String(data, UTF_8), '\n')) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int at = line.lastIndexOf('@');
+                if (at < 0) {
+                    shards.put(line, ANY_VERSION);
+                } else {
+                    shards.put(line.substring(0, at), Integer.parseInt(line.substring(at + 1)));
+                }
+            }
+        }
+        return new ShardManifest(shards.build());
+    }
+
+    public byte[] toBytes() {
+        StringBuilder text = new StringBuilder();
+        shards.forEach((name, version) -> {
+            text.append(name);
+            if (version != ANY_VERSION) {
+                text.append('@').append(version);
+            }
+            text.append('\n');
+        });
+        return text.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * shard name to version in merge order
+     */
+    public ImmutableMap<String, Integer> getShards() {
+        return shards;
+    }
+
+    public boolean isEmpty() {
+        return shards.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof ShardManifest && shards.equals(((ShardManifest) o).shards);
+    }
+
+    @Override
+    public int hashCode() {
+        return shards.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardManifest" + shards;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.nicklaus4.zk.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.RandomAccess;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+
+/**
+ * immutable children of one node sorted by name. a change copies the array into a new instance,
+ * so every instance is a snapshot that can be retained for free.
+ *
+ * @author weishibai
+ * @date 2026/10/18 2:10 PM
+ */
+@Immutable
+public final class SortedChildren extends AbstractList<ChildData> implements RandomAccess {
+
+    private static final SortedChildren EMPTY = new SortedChildren(new String[0], new ChildData[0]);
+
+    private final String[] names;
+
+    private final ChildData[] children;
+
+    private SortedChildren(String[] names, ChildData[] children) {
+        this.names = names;
+        this.children = children;
+    }
+
+    public static SortedChildren empty() {
+        return EMPTY;
+    }
+
+    public static SortedChildren copyOf(@Nonnull Collection<ChildData> children) {
+        ChildData[] sorted = children.toArray(new ChildData[0]);
+        Arrays.sort(sorted, Comparator.comparing(c -> nameOf(c.getPath())));
+        String[] names = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            names[i] = nameOf(sorted[i].getPath());
+        }
+        return new SortedChildren(names, sorted);
+    }
+
+    @Override
+    public ChildData get(int index) {
+        return children[index];
+    }
+
+    @Override
+    public int size() {
+        return children.length;
+    }
+
+    /**
+     * name of the child at index, the last segment of its path
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    @Nullable
+    public ChildData child(@Nonnull String name) {
+        int index = Arrays.binarySearch(names, requireNonNull(name));
+        return index >= 0 ? children[index] : null;
+    }
+
+    /**
+     * copy with child added or replaced
+     */
+    public SortedChildren with(@Nonnull ChildData child) {
+        String name = nameOf(child.getPath());
+        int index = Arrays.binarySearch(names, name);
+        if (index >= 0) {
+            ChildData[] replaced = children.clone();
+            replaced[index] = child;
+            return new SortedChildren(names, replaced);
+        }
+        int insertAt = -index - 1;
+        String[] newNames = new String[names.length + 1];
+        ChildData[] newChildren = new ChildData[children.length + 1];
+        System.arraycopy(names, 0, newNames, 0, insertAt);
+        System.arraycopy(children, 0, newChildren, 0, insertAt);
+        newNames[insertAt] = name;
+        newChildren[insertAt] = child;
+        System.arraycopy(names, insertAt, newNames, insertAt + 1, names.length - insertAt);
+        System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+        return new SortedChildren(newNames, newChildren);
+    }
+
+    /**
+     * copy without the child, this instance when absent
+     */
+    public SortedChildren without(@Nonnull String name) {
+        int index = Arrays.binarySearch(names, requireNonNull(name));
+        if (index < 0) {
+            return this;
+        }
+        if (names.length == 1) {
+            return EMPTY;
+        }
+        String[] newNames = new String[names.length - 1];
+        ChildData[] newChildren = new ChildData[children.length - 1];
+        System.arraycopy(names, 0, newNames, 0, index);
+        System.arraycopy(children, 0, newChildren, 0, index);
+        System.arraycopy(names, index + 1, newNames, index, names.length - index - 1);
+        System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+        return new SortedChildren(newNames, newChildren);
+    }
+
+    public static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.nicklaus4.zk.model;
+
+import java.util.function.ToLongFunction;
+
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * a field of {@link Stat} kept by compact views
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:05 AM
+ */
+public enum StatField {
+
+    CZXID(Stat::getCzxid),
+    MZXID(Stat::getMzxid),
+    PZXID(Stat::getPzxid),
+    CTIME(Stat::getCtime),
+    MTIME(Stat::getMtime),
+    VERSION(Stat::getVersion),
+    CVERSION(Stat::getCversion),
+    ACL_VERSION(Stat::getAversion),
+    EPHEMERAL_OWNER(Stat::getEphemeralOwner),
+    DATA_LENGTH(Stat::getDataLength),
+    NUM_CHILDREN(Stat::getNumChildren);
+
+    private final ToLongFunction<Stat> getter;
+
+    StatField(ToLongFunction<Stat> getter) {
+        this.getter = getter;
+    }
+
+    public long of(Stat stat) {
+        return getter.applyAsLong(stat);
+    }
+}
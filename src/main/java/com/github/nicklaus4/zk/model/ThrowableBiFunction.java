@@ -0,0 +1,20 @@
+package com.github.nicklaus4.zk.model;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * throwable bi func
+ *
+ * @author weishibai
+ * @date 2026/10/18 7:50 PM
+ */
+@FunctionalInterface
+public interface ThrowableBiFunction<T, U, R, X extends Throwable> {
+
+    R apply(T t, U u) throws X;
+
+    default <V> ThrowableBiFunction<T, U, V, X> andThen(ThrowableFunction<? super R, ? extends V, X> after) {
+        requireNonNull(after);
+        return (T t, U u) -> after.apply(apply(t, u));
+    }
+}
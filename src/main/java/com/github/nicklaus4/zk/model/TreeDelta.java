@@ -0,0 +1,56 @@
+package com.github.nicklaus4.zk.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+
+/**
+ * one node change of a tree resource
+ *
+ * @author weishibai
+ * @date 2026/10/16 2:40 PM
+ */
+public class TreeDelta {
+
+    private final TreeCacheEvent.Type type;
+
+    private final String path;
+
+    private final ChildData data;
+
+    /**
+     * @param type NODE_ADDED, NODE_UPDATED or NODE_REMOVED
+     * @param path relative to the tree root, same key as the factory map
+     * @param data new data, or the last known data for NODE_REMOVED
+     */
+    public TreeDelta(TreeCacheEvent.Type type, String path, ChildData data) {
+        checkArgument(type == TreeCacheEvent.Type.NODE_ADDED || type == TreeCacheEvent.Type.NODE_UPDATED
+                || type == TreeCacheEvent.Type.NODE_REMOVED, "not a node event: %s", type);
+        this.type = type;
+        this.path = requireNonNull(path);
+        this.data = requireNonNull(data);
+    }
+
+    public TreeCacheEvent.Type getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public ChildData getData() {
+        return data;
+    }
+
+    public boolean isRemoved() {
+        return type == TreeCacheEvent.Type.NODE_REMOVED;
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + path;
+    }
+}
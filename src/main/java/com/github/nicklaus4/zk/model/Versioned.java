@@ -0,0 +1,56 @@
+package com.github.nicklaus4.zk.model;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * value of a resource with the version it was published at. versions of one resource only grow
+ * and stay the same as long as the value is the same instance.
+ *
+ * @author weishibai
+ * @date 2026/10/18 8:30 PM
+ */
+@Immutable
+public final class Versioned<T> {
+
+    private final T value;
+
+    private final long version;
+
+    private Versioned(T value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public static <T> Versioned<T> of(@Nullable T value, long version) {
+        return new Versioned<>(value, version);
+    }
+
+    /**
+     * version of value published after previous: previous version while value is the same instance,
+     * otherwise mzxid, or previous version + 1 when mzxid did not grow, e.g. on a deletion
+     */
+    public static <T> Versioned<T> next(@Nullable Versioned<T> previous, @Nullable T value, long mzxid) {
+        if (previous == null) {
+            return new Versioned<>(value, mzxid);
+        }
+        if (previous.value == value) {
+            return previous;
+        }
+        return new Versioned<>(value, Math.max(mzxid, previous.version + 1));
+    }
+
+    @Nullable
+    public T getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "Versioned{version=" + version + ", value=" + value + "}";
+    }
+}
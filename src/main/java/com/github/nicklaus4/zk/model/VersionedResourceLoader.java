@@ -0,0 +1,26 @@
+package com.github.nicklaus4.zk.model;
+
+import javax.annotation.Nullable;
+
+/**
+ * resource loader telling whether the value changed with one long comparison
+ *
+ * @author weishibai
+ * @date 2026/10/18 8:35 PM
+ */
+public interface VersionedResourceLoader<T> extends ResourceLoader<T> {
+
+    /**
+     * value of {@link #get()} with its version, loading it like get() does
+     */
+    Versioned<T> getVersioned();
+
+    /**
+     * @return null while the version is still the given one
+     */
+    @Nullable
+    default Versioned<T> ifChangedSince(long version) {
+        Versioned<T> current = getVersioned();
+        return current.getVersion() > version ? current : null;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.nicklaus4.zk.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+import org.apache.zookeeper.CreateMode;
+
+/**
+ * one node write of a bulk write
+ *
+ * @author weishibai
+ * @date 2026/10/17 6:20 PM
+ */
+public class ZkWrite {
+
+    public static final int ANY_VERSION = -1;
+
+    private final String path;
+
+    private final byte[] data;
+
+    private final int expectedVersion;
+
+    private final CreateMode createMode;
+
+    private ZkWrite(String path, byte[] data, int expectedVersion, CreateMode createMode) {
+        this.path = checkNotNull(path);
+        this.data = checkNotNull(data);
+        this.expectedVersion = expectedVersion;
+        this.createMode = checkNotNull(createMode);
+    }
+
+    /**
+     * set the node, creating it and its parents when missing
+     */
+    public static ZkWrite of(@Nonnull String path, @Nonnull byte[] data) {
+        return new ZkWrite(path, data, ANY_VERSION, CreateMode.PERSISTENT);
+    }
+
+    /**
+     * set the node only when it exists at this version, never creates
+     */
+    public static ZkWrite ofVersion(@Nonnull String path, @Nonnull byte[] data, int expectedVersion) {
+        checkArgument(expectedVersion >= 0, "expectedVersion must not be negative");
+        return new ZkWrite(path, data, expectedVersion, CreateMode.PERSISTENT);
+    }
+
+    /**
+     * mode used when the node is created
+     */
+    @CheckReturnValue
+    @Nonnull
+    public ZkWrite withMode(@Nonnull CreateMode createMode) {
+        return new ZkWrite(path, data, expectedVersion, createMode);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public boolean isConditional() {
+        return expectedVersion != ANY_VERSION;
+    }
+
+    public CreateMode getCreateMode() {
+        return createMode;
+    }
+}
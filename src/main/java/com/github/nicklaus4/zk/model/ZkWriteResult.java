@@ -0,0 +1,71 @@
+package com.github.nicklaus4.zk.model;
+
+import javax.annotation.Nullable;
+
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.data.Stat;
+
+/**
+ * outcome of one write of a bulk write
+ *
+ * @author weishibai
+ * @date 2026/10/17 6:24 PM
+ */
+public class ZkWriteResult {
+
+    private final String path;
+
+    private final Code code;
+
+    private final Stat stat;
+
+    private final boolean created;
+
+    private final Throwable error;
+
+    public ZkWriteResult(String path, Code code, @Nullable Stat stat, boolean created, @Nullable Throwable error) {
+        this.path = path;
+        this.code = code;
+        this.stat = stat;
+        this.created = created;
+        this.error = error;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * OK on success, BADVERSION or NONODE for a failed conditional write,
+     * RUNTIMEINCONSISTENCY for a write rolled back with a failed transaction
+     */
+    public Code getCode() {
+        return code;
+    }
+
+    public boolean isSuccess() {
+        return code == Code.OK;
+    }
+
+    /**
+     * stat after the write, null when the write failed. a node created in a transaction has no stat
+     * on zk servers before 3.5, a pipelined create with a zk 3.4 client reads it right after the
+     * create, so it may already include a later write.
+     */
+    @Nullable
+    public Stat getStat() {
+        return stat;
+    }
+
+    public boolean isCreated() {
+        return created;
+    }
+
+    /**
+     * cause of a failure that is not a zk result code, e.g. a client side exception
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,373 @@
+package com.github.nicklaus4.zk.snapshot;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * last good node data kept on local disk so resources can boot without zk.
+ *
+ * one file per key: magic, format version, kind, write time, entries of
+ * (map key, node path, stat, data) and a trailing crc32. writes of a key are serialised, each
+ * streams to a temp file of its own and is moved into place. reads check the crc in a first pass
+ * and parse in a second, so neither side holds the whole file in memory. a snapshot with another
+ * format version, a bad checksum or older than max age is rejected and the caller boots from zk.
+ *
+ * @author weishibai
+ * @date 2026/10/16 8:40 PM
+ */
+public class SnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x5A4B534E;
+
+    private static final short FORMAT_VERSION = 2;
+
+    private static final byte KIND_NODE = 1;
+
+    private static final byte KIND_TREE = 2;
+
+    private static final int HEADER_SIZE = 4 + 2 + 1 + 8 + 4;
+
+    private static final int STAT_SIZE = 8 * 6 + 4 * 5;
+
+    private static final String SUFFIX = ".snap";
+
+    /**
+     * longer encoded keys are shortened and hashed, leaves room for the temp file suffix within the
+     * usual 255 byte limit of a file name
+     */
+    private static final int MAX_FILE_NAME = 160;
+
+    private static final int KEPT_KEY_PREFIX = 80;
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    private final long maxAgeMs;
+
+    private final Striped<Lock> writeLocks = Striped.lock(64);
+
+    private SnapshotStore(Path directory, long maxAgeMs) {
+        this.directory = directory;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public static SnapshotStore open(@Nonnull Path directory) {
+        return open(directory, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxAge snapshots written longer ago are ignored, 0 for no limit
+     */
+    @CheckReturnValue
+    @Nonnull
+    public static SnapshotStore open(@Nonnull Path directory, long maxAge, @Nonnull TimeUnit unit) {
+        requireNonNull(directory);
+        checkArgument(maxAge >= 0, "maxAge must not be negative");
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new SnapshotStore(directory, unit.toMillis(maxAge));
+    }
+
+    /**
+     * blocks on disk io, resources call it off their event threads
+     */
+    public void saveNode(@Nonnull String key, @Nonnull ChildData data) {
+        write(key, KIND_NODE, Collections.singletonMap(data.getPath(), data));
+    }
+
+    /**
+     * @return null when absent, stale or corrupt
+     */
+    @Nullable
+    public ChildData loadNode(@Nonnull String key) {
+        Map<String, ChildData> entries = read(key, KIND_NODE);
+        return entries == null || entries.isEmpty() ? null : entries.values().iterator().next();
+    }
+
+    /**
+     * @param tree same relative path keyed map the tree factory gets
+     */
+    public void saveTree(@Nonnull String key, @Nonnull Map<String, ChildData> tree) {
+        write(key, KIND_TREE, tree);
+    }
+
+    @Nullable
+    public Map<String, ChildData> loadTree(@Nonnull String key) {
+        return read(key, KIND_TREE);
+    }
+
+    public void delete(@Nonnull String key) {
+        Lock lock = writeLocks.get(key);
+        lock.lock();
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            LOGGER.warn("fail to delete snapshot {}", key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(String key, byte kind, Map<String, ChildData> entries) {
+        Path target = file(key);
+        Lock lock = writeLocks.get(key);
+        lock.lock();
+        try {
+            Path temp;
+            try {
+                temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            } catch (IOException e) {
+                LOGGER.warn("fail to create temp file of snapshot {}", key, e);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(temp, WRITE, TRUNCATE_EXISTING)) {
+                CRC32 crc = new CRC32();
+                // not closed, closing would close the channel before force
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Channels.newOutputStream(channel), crc), IO_BUFFER_SIZE));
+                writeBody(out, kind, entries);
+                out.flush();
+                ByteBuffer trailer = ByteBuffer.allocate(8).putLong(crc.getValue());
+                trailer.flip();
+                while (trailer.hasRemaining()) {
+                    channel.write(trailer);
+                }
+                channel.force(true);
+            } catch (IOException e) {
+                LOGGER.warn("fail to write snapshot {}", key, e);
+                deleteQuietly(temp);
+                return;
+            }
+            try {
+                Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (IOException e) {
+                LOGGER.warn("fail to move snapshot {} into place", key, e);
+                deleteQuietly(temp);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeBody(DataOutputStream out, byte kind, Map<String, ChildData> entries)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeByte(kind);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(entries.size());
+        for (Map.Entry<String, ChildData> entry : entries.entrySet()) {
+            byte[] mapKey = entry.getKey().getBytes(UTF_8);
+            out.writeInt(mapKey.length);
+            out.write(mapKey);
+            byte[] path = entry.getValue().getPath().getBytes(UTF_8);
+            out.writeInt(path.length);
+            out.write(path);
+            writeStat(out, entry.getValue().getStat());
+            byte[] data = entry.getValue().getData();
+            if (data == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("fail to delete {}", file, e);
+        }
+    }
+
+    private Map<String, ChildData> read(String key, byte kind) {
+        Path file = file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + 8) {
+                LOGGER.warn("reject snapshot {}, bad size {}", key, fileSize);
+                return null;
+            }
+            long bodySize = fileSize - 8;
+            if (checksum(channel, bodySize) != readLong(channel, bodySize)) {
+                LOGGER.warn("reject snapshot {}, checksum mismatch", key);
+                return null;
+            }
+
+            channel.position(0);
+            // not closed, the channel is closed by the try block
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    ByteStreams.limit(Channels.newInputStream(channel), bodySize), IO_BUFFER_SIZE));
+            if (in.readInt() != MAGIC) {
+                LOGGER.warn("reject snapshot {}, not a snapshot file", key);
+                return null;
+            }
+            short version = in.readShort();
+            if (version != FORMAT_VERSION) {
+                LOGGER.warn("reject snapshot {}, format version {} but {} expected", key, version, FORMAT_VERSION);
+                return null;
+            }
+            if (in.readByte() != kind) {
+                LOGGER.warn("reject snapshot {}, kind mismatch", key);
+                return null;
+            }
+            long writtenAt = in.readLong();
+            if (maxAgeMs > 0 && System.currentTimeMillis() - writtenAt > maxAgeMs) {
+                LOGGER.warn("reject snapshot {}, written at {} is older than {}ms", key, writtenAt, maxAgeMs);
+                return null;
+            }
+
+            int count = in.readInt();
+            Map<String, ChildData> entries = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                byte[] mapKey = new byte[in.readInt()];
+                in.readFully(mapKey);
+                byte[] path = new byte[in.readInt()];
+                in.readFully(path);
+                Stat stat = readStat(in);
+                int length = in.readInt();
+                byte[] data = null;
+                if (length >= 0) {
+                    data = new byte[length];
+                    in.readFully(data);
+                }
+                entries.put(new String(mapKey, UTF_8), new ChildData(new String(path, UTF_8), stat, data));
+            }
+            return entries;
+        } catch (EOFException | NegativeArraySizeException e) {
+            LOGGER.warn("reject snapshot {}, truncated", key, e);
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("reject snapshot {}, unreadable", key, e);
+            return null;
+        }
+    }
+
+    private static long checksum(FileChannel channel, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), size - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    private static void writeStat(DataOutputStream out, Stat stat) throws IOException {
+        if (stat == null) {
+            out.writeByte(0);
+            out.write(new byte[STAT_SIZE]);
+            return;
+        }
+        out.writeByte(1);
+        out.writeLong(stat.getCzxid());
+        out.writeLong(stat.getMzxid());
+        out.writeLong(stat.getCtime());
+        out.writeLong(stat.getMtime());
+        out.writeInt(stat.getVersion());
+        out.writeInt(stat.getCversion());
+        out.writeInt(stat.getAversion());
+        out.writeLong(stat.getEphemeralOwner());
+        out.writeInt(stat.getDataLength());
+        out.writeInt(stat.getNumChildren());
+        out.writeLong(stat.getPzxid());
+    }
+
+    private static Stat readStat(DataInputStream in) throws IOException {
+        if (in.readByte() == 0) {
+            in.readFully(new byte[STAT_SIZE]);
+            return null;
+        }
+        return new Stat(in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                in.readInt(), in.readInt(), in.readInt(), in.readLong(),
+                in.readInt(), in.readInt(), in.readLong());
+    }
+
+    /**
+     * url encoded key, or for long keys, like deep tree paths, its head followed by a hash of the whole key
+     */
+    Path file(String key) {
+        String name;
+        try {
+            name = URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        if (name.length() > MAX_FILE_NAME) {
+            name = name.substring(0, KEPT_KEY_PREFIX) + "-" + Hashing.sha256().hashString(key, UTF_8);
+        }
+        return directory.resolve(name + SUFFIX);
+    }
+}
@@ -0,0 +1,476 @@
+package com.github.nicklaus4.zk.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+
+import com.github.nicklaus4.zk.model.StatField;
+
+/**
+ * read-only tree of relative path to payload in a few flat arrays instead of a ChildData per node.
+ *
+ * entries are in depth first order so a subtree is a contiguous index range. paths are kept as ids
+ * of interned segments, payloads in one slab, on or off heap, addressed by offset and length,
+ * and only the requested {@link StatField}s are kept. lookups, prefix ranges and the index based
+ * accessors do not allocate, {@link #path(int)} and {@link #data(int)} do.
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:10 AM
+ */
+@Immutable
+public final class CompactTree {
+
+    /**
+     * string order with '/' below every other char, i.e. depth first order of paths
+     */
+    private static final Comparator<String> PATH_ORDER = (a, b) -> {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return x == '/' ? -1 : y == '/' ? 1 : Character.compare(x, y);
+            }
+        }
+        return Integer.compare(a.length(), b.length());
+    };
+
+    private static final int NO_DATA = -1;
+
+    private final String[] segments;
+
+    /**
+     * entry i has segment ids pathSegments[pathStart[i] until pathStart[i + 1]]
+     */
+    private final int[] pathStart;
+
+    private final int[] pathSegments;
+
+    private final ByteBuffer slab;
+
+    private final int[] dataOffset;
+
+    private final int[] dataLength;
+
+    /**
+     * stat column of a field by ordinal, -1 when not kept
+     */
+    private final int[] statColumn;
+
+    private final long[][] stats;
+
+    private CompactTree(String[] segments, int[] pathStart, int[] pathSegments, ByteBuffer slab, int[] dataOffset,
+            int[] dataLength, int[] statColumn, long[][] stats) {
+        this.segments = segments;
+        this.pathStart = pathStart;
+        this.pathSegments = pathSegments;
+        this.slab = slab;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+        this.statColumn = statColumn;
+        this.stats = stats;
+    }
+
+    /**
+     * @param tree relative path to data as handed to tree factories
+     * @param offHeap payloads in a direct buffer
+     * @param fields stat fields to keep
+     */
+    public static CompactTree of(@Nonnull Map<String, ChildData> tree, boolean offHeap, StatField... fields) {
+        requireNonNull(tree);
+        List<String> paths = new ArrayList<>(tree.keySet());
+        paths.sort(PATH_ORDER);
+        int size = paths.size();
+
+        Map<String, Integer> segmentIds = new HashMap<>();
+        List<String> segmentList = new ArrayList<>();
+        int[] pathStart = new int[size + 1];
+        int[] pathSegments = new int[16];
+        int segmentCount = 0;
+        long slabSize = 0;
+        for (int i = 0; i < size; i++) {
+            pathStart[i] = segmentCount;
+            for (String segment : split(paths.get(i))) {
+                Integer id = segmentIds.get(segment);
+                if (id == null) {
+                    id = segmentList.size();
+                    segmentIds.put(segment, id);
+                    segmentList.add(segment);
+                }
+                if (segmentCount == pathSegments.length) {
+                    pathSegments = Arrays.copyOf(pathSegments, segmentCount * 2);
+                }
+                pathSegments[segmentCount++] = id;
+            }
+            byte[] data = tree.get(paths.get(i)).getData();
+            slabSize += data == null ? 0 : data.length;
+        }
+        pathStart[size] = segmentCount;
+        checkArgument(slabSize <= Integer.MAX_VALUE, "payloads exceed 2GB");
+
+        ByteBuffer slab = offHeap ? ByteBuffer.allocateDirect((int) slabSize) : ByteBuffer.allocate((int) slabSize);
+        int[] dataOffset = new int[size];
+        int[] dataLength = new int[size];
+        int[] statColumn = new int[StatField.values().length];
+        Arrays.fill(statColumn, -1);
+        StatField[] kept = Arrays.stream(fields).distinct().toArray(StatField[]::new);
+        for (int column = 0; column < kept.length; column++) {
+            statColumn[kept[column].ordinal()] = column;
+        }
+        long[][] stats = new long[kept.length][size];
+        for (int i = 0; i < size; i++) {
+            ChildData child = tree.get(paths.get(i));
+            byte[] data = child.getData();
+            dataOffset[i] = slab.position();
+            if (data == null) {
+                dataLength[i] = NO_DATA;
+            } else {
+                dataLength[i] = data.length;
+                slab.put(data);
+            }
+            Stat stat = child.getStat();
+            if (stat != null) {
+                for (int column = 0; column < kept.length; column++) {
+                    stats[column][i] = kept[column].of(stat);
+                }
+            }
+        }
+        slab.flip();
+        return new CompactTree(segmentList.toArray(new String[0]), pathStart,
+                Arrays.copyOf(pathSegments, segmentCount), slab.asReadOnlyBuffer(), dataOffset, dataLength,
+                statColumn, stats);
+    }
+
+    public int size() {
+        return dataOffset.length;
+    }
+
+    /**
+     * @param path relative path, the leading '/' is optional
+     * @return -1 when absent
+     */
+    public int indexOf(@Nonnull String path) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, path);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * first index of the subtree at prefix, the node itself included. "" or "/" for the whole tree.
+     */
+    public int subtreeFrom(@Nonnull String prefix) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * index after the last one of the subtree at prefix, equal to subtreeFrom when empty
+     */
+    public int subtreeTo(@Nonnull String prefix) {
+        int low = subtreeFrom(prefix);
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isWithin(mid, prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * "/a/b" for the entry of a/b, allocates
+     */
+    public String path(int index) {
+        checkElementIndex(index, size());
+        StringBuilder path = new StringBuilder();
+        for (int s = pathStart[index]; s < pathStart[index + 1]; s++) {
+            path.append('/').append(segments[pathSegments[s]]);
+        }
+        return path.toString();
+    }
+
+    /**
+     * segments below the tree root, 1 for a child of the root
+     */
+    public int depth(int index) {
+        checkElementIndex(index, size());
+        return pathStart[index + 1] - pathStart[index];
+    }
+
+    /**
+     * interned segment at level, 0 for the one below the root
+     */
+    public String segment(int index, int level) {
+        checkElementIndex(level, depth(index));
+        return segments[pathSegments[pathStart[index] + level]];
+    }
+
+    /**
+     * last segment of the path
+     */
+    public String name(int index) {
+        return segment(index, depth(index) - 1);
+    }
+
+    public boolean hasData(int index) {
+        checkElementIndex(index, size());
+        return dataLength[index] != NO_DATA;
+    }
+
+    /**
+     * 0 for a node without data
+     */
+    public int dataLength(int index) {
+        checkElementIndex(index, size());
+        return Math.max(0, dataLength[index]);
+    }
+
+    /**
+     * where the payload of index starts in {@link #slab()}
+     */
+    public int dataOffset(int index) {
+        checkElementIndex(index, size());
+        return dataOffset[index];
+    }
+
+    /**
+     * read-only view of every payload, take it once and read with absolute gets
+     */
+    public ByteBuffer slab() {
+        return slab.duplicate();
+    }
+
+    /**
+     * copy of the payload, null for a node without data
+     */
+    @Nullable
+    public byte[] data(int index) {
+        if (!hasData(index)) {
+            return null;
+        }
+        byte[] data = new byte[dataLength[index]];
+        copyData(index, data, 0);
+        return data;
+    }
+
+    /**
+     * @return bytes copied
+     */
+    public int copyData(int index, byte[] target, int offset) {
+        int length = dataLength(index);
+        int from = dataOffset[index];
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = slab.get(from + i);
+        }
+        return length;
+    }
+
+    /**
+     * @throws IllegalArgumentException field was not kept
+     */
+    public long stat(int index, @Nonnull StatField field) {
+        checkElementIndex(index, size());
+        int column = statColumn[field.ordinal()];
+        checkArgument(column >= 0, "stat field %s is not kept", field);
+        return stats[column][index];
+    }
+
+    /**
+     * every entry in depth first order
+     */
+    public Cursor cursor() {
+        return new Cursor(0, size());
+    }
+
+    /**
+     * entries of the subtree at prefix, the node itself first when present
+     */
+    public Cursor cursor(@Nonnull String prefix) {
+        return new Cursor(subtreeFrom(prefix), subtreeTo(prefix));
+    }
+
+    /**
+     * relative paths, allocates each
+     */
+    public Collection<String> paths() {
+        List<String> paths = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            paths.add(path(i));
+        }
+        return paths;
+    }
+
+    /**
+     * entry path against path in {@link #PATH_ORDER}, without building the entry path
+     */
+    private int compare(int index, String path) {
+        int p = skipSlash(path);
+        int from = pathStart[index];
+        int to = pathStart[index + 1];
+        for (int s = from; s < to; s++) {
+            if (s > from) {
+                if (p >= path.length()) {
+                    return 1;
+                }
+                if (path.charAt(p) != '/') {
+                    return -1;
+                }
+                p++;
+            }
+            String segment = segments[pathSegments[s]];
+            for (int k = 0; k < segment.length(); k++) {
+                if (p >= path.length()) {
+                    return 1;
+                }
+                char a = segment.charAt(k);
+                char b = path.charAt(p);
+                if (b == '/') {
+                    return 1;
+                }
+                if (a != b) {
+                    return a < b ? -1 : 1;
+                }
+                p++;
+            }
+        }
+        return p < path.length() ? -1 : 0;
+    }
+
+    /**
+     * entry is prefix itself or below it
+     */
+    private boolean isWithin(int index, String prefix) {
+        int p = skipSlash(prefix);
+        if (p >= prefix.length()) {
+            return true;
+        }
+        int from = pathStart[index];
+        int to = pathStart[index + 1];
+        for (int s = from; s < to; s++) {
+            if (s > from) {
+                if (prefix.charAt(p) != '/') {
+                    return false;
+                }
+                p++;
+            }
+            String segment = segments[pathSegments[s]];
+            for (int k = 0; k < segment.length(); k++) {
+                if (p >= prefix.length() || segment.charAt(k) != prefix.charAt(p)) {
+                    return false;
+                }
+                p++;
+            }
+            if (p >= prefix.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipSlash(String path) {
+        return !path.isEmpty() && path.charAt(0) == '/' ? 1 : 0;
+    }
+
+    private static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * moves over an index range, one instance per iteration
+     */
+    public final class Cursor {
+
+        private final int end;
+
+        private int index;
+
+        private Cursor(int from, int end) {
+            this.index = from - 1;
+            this.end = end;
+        }
+
+        public boolean next() {
+            if (index < end) {
+                index++;
+            }
+            return index < end;
+        }
+
+        public int index() {
+            if (index < 0 || index >= end) {
+                throw new NoSuchElementException();
+            }
+            return index;
+        }
+
+        public int depth() {
+            return CompactTree.this.depth(index());
+        }
+
+        public String name() {
+            return CompactTree.this.name(index());
+        }
+
+        public int dataOffset() {
+            return CompactTree.this.dataOffset(index());
+        }
+
+        public int dataLength() {
+            return CompactTree.this.dataLength(index());
+        }
+
+        public long stat(StatField field) {
+            return CompactTree.this.stat(index(), field);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.nicklaus4.zk.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * glob over relative zk paths. '*' and '?' match within a segment, a "**" segment matches any
+ * number of segments, e.g. "/*&#47;leaf-*" or "/services/**&#47;config".
+ *
+ * @author weishibai
+ * @date 2026/10/18 11:30 AM
+ */
+@Immutable
+public final class PathGlob {
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private final String glob;
+
+    /**
+     * null for "**"
+     */
+    private final Pattern[] segments;
+
+    private PathGlob(String glob, Pattern[] segments) {
+        this.glob = glob;
+        this.segments = segments;
+    }
+
+    public static PathGlob compile(@Nonnull String glob) {
+        requireNonNull(glob);
+        String[] parts = StringUtils.split(glob, '/');
+        checkArgument(parts.length > 0, "empty glob: %s", glob);
+        Pattern[] segments = new Pattern[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            segments[i] = ANY_SEGMENTS.equals(parts[i]) ? null : Pattern.compile(toRegex(parts[i]));
+        }
+        return new PathGlob(glob, segments);
+    }
+
+    /**
+     * @param path relative path, the leading '/' is optional
+     */
+    public boolean matches(@Nonnull String path) {
+        return match(StringUtils.split(path, '/'), 0, 0, false);
+    }
+
+    /**
+     * some node below path may match, i.e. the subtree at path must be walked
+     */
+    public boolean mayMatchBelow(@Nonnull String path) {
+        return match(StringUtils.split(path, '/'), 0, 0, true);
+    }
+
+    /**
+     * @param partial path may be a strict prefix of a match
+     */
+    private boolean match(String[] path, int p, int g, boolean partial) {
+        if (p == path.length) {
+            return partial ? g < segments.length : allAnySegments(g);
+        }
+        if (g == segments.length) {
+            return false;
+        }
+        if (segments[g] == null) {
+            return match(path, p, g + 1, partial) || match(path, p + 1, g, partial);
+        }
+        return segments[g].matcher(path[p]).matches() && match(path, p + 1, g + 1, partial);
+    }
+
+    private boolean allAnySegments(int from) {
+        for (int g = from; g < segments.length; g++) {
+            if (segments[g] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toRegex(String segment) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(segment.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < segment.length()) {
+            regex.append(Pattern.quote(segment.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return glob;
+    }
+}
@@ -0,0 +1,450 @@
+package com.github.nicklaus4.zk.utils;
+
+import static java.lang.Integer.bitCount;
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * immutable hash array mapped trie, {@link #with} and {@link #without} share
+ * all untouched branches with the previous version so a single change costs O(log32 N).
+ *
+ * the {@link Map} mutators are not supported.
+ *
+ * @author weishibai
+ * @date 2026/10/16 2:05 PM
+ */
+@Immutable
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node<K, V> root;
+
+    private final int size;
+
+    private transient Set<Entry<K, V>> entrySet;
+
+    private PersistentHashMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        PersistentHashMap<K, V> result = empty();
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public PersistentHashMap<K, V> with(@Nonnull K key, @Nonnull V value) {
+        requireNonNull(key);
+        requireNonNull(value);
+        Leaf<K, V> leaf = new Leaf<>(spread(key.hashCode()), key, value);
+        if (root == null) {
+            return new PersistentHashMap<>(leaf, 1);
+        }
+        boolean[] added = new boolean[1];
+        Node<K, V> newRoot = root.with(0, leaf, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    @CheckReturnValue
+    @Nonnull
+    public PersistentHashMap<K, V> without(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node<K, V> newRoot = root.without(0, spread(key.hashCode()), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf<K, V> leaf = find(key);
+        return leaf == null ? null : leaf.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> result = entrySet;
+        if (result == null) {
+            result = new AbstractSet<Entry<K, V>>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = result;
+        }
+        return result;
+    }
+
+    private Leaf<K, V> find(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return root.find(0, spread(key.hashCode()), key);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private abstract static class Node<K, V> {
+
+        abstract Leaf<K, V> find(int shift, int hash, Object key);
+
+        abstract Node<K, V> with(int shift, Leaf<K, V> leaf, boolean[] added);
+
+        /**
+         * @return this when key is absent, null when the node became empty
+         */
+        abstract Node<K, V> without(int shift, int hash, Object key);
+    }
+
+    /**
+     * node holding entries of a single hash, either a leaf or a collision bucket
+     */
+    private abstract static class HashNode<K, V> extends Node<K, V> {
+
+        final int hash;
+
+        HashNode(int hash) {
+            this.hash = hash;
+        }
+    }
+
+    private static final class Leaf<K, V> extends HashNode<K, V> implements Entry<K, V> {
+
+        final K key;
+
+        final V value;
+
+        Leaf(int hash, K key, V value) {
+            super(hash);
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        Leaf<K, V> find(int shift, int hash, Object key) {
+            return this.hash == hash && this.key.equals(key) ? this : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> with(int shift, Leaf<K, V> leaf, boolean[] added) {
+            if (hash == leaf.hash) {
+                if (key.equals(leaf.key)) {
+                    return value == leaf.value ? this : leaf;
+                }
+                added[0] = true;
+                return new Collision<>(hash, new Leaf[] {this, leaf});
+            }
+            added[0] = true;
+            return Branch.of(shift, this, leaf);
+        }
+
+        @Override
+        Node<K, V> without(int shift, int hash, Object key) {
+            return find(shift, hash, key) != null ? null : this;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> that = (Entry<?, ?>) o;
+            return Objects.equals(key, that.getKey()) && Objects.equals(value, that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static final class Collision<K, V> extends HashNode<K, V> {
+
+        final Leaf<K, V>[] leaves;
+
+        Collision(int hash, Leaf<K, V>[] leaves) {
+            super(hash);
+            this.leaves = leaves;
+        }
+
+        @Override
+        Leaf<K, V> find(int shift, int hash, Object key) {
+            if (this.hash != hash) {
+                return null;
+            }
+            for (Leaf<K, V> leaf : leaves) {
+                if (leaf.key.equals(key)) {
+                    return leaf;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> with(int shift, Leaf<K, V> leaf, boolean[] added) {
+            if (hash != leaf.hash) {
+                added[0] = true;
+                return Branch.of(shift, this, leaf);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(leaf.key)) {
+                    if (leaves[i].value == leaf.value) {
+                        return this;
+                    }
+                    Leaf<K, V>[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return new Collision<>(hash, copy);
+                }
+            }
+            Leaf<K, V>[] copy = Arrays.copyOf(leaves, leaves.length + 1);
+            copy[leaves.length] = leaf;
+            added[0] = true;
+            return new Collision<>(hash, copy);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> without(int shift, int hash, Object key) {
+            if (this.hash != hash) {
+                return this;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf<K, V>[] copy = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+                    return new Collision<>(hash, copy);
+                }
+            }
+            return this;
+        }
+    }
+
+    private static final class Branch<K, V> extends Node<K, V> {
+
+        final int bitmap;
+
+        final Node<K, V>[] children;
+
+        Branch(int bitmap, Node<K, V>[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <K, V> Branch<K, V> of(int shift, HashNode<K, V> a, HashNode<K, V> b) {
+            int indexA = (a.hash >>> shift) & MASK;
+            int indexB = (b.hash >>> shift) & MASK;
+            if (indexA == indexB) {
+                return new Branch<>(1 << indexA, new Node[] {of(shift + BITS, a, b)});
+            }
+            Node<K, V>[] children = indexA < indexB ? new Node[] {a, b} : new Node[] {b, a};
+            return new Branch<>((1 << indexA) | (1 << indexB), children);
+        }
+
+        @Override
+        Leaf<K, V> find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            return children[bitCount(bitmap & (bit - 1))].find(shift + BITS, hash, key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> with(int shift, Leaf<K, V> leaf, boolean[] added) {
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int pos = bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Node<K, V>[] copy = new Node[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, pos);
+                copy[pos] = leaf;
+                System.arraycopy(children, pos, copy, pos + 1, children.length - pos);
+                added[0] = true;
+                return new Branch<>(bitmap | bit, copy);
+            }
+            Node<K, V> child = children[pos];
+            Node<K, V> newChild = child.with(shift + BITS, leaf, added);
+            if (newChild == child) {
+                return this;
+            }
+            Node<K, V>[] copy = children.clone();
+            copy[pos] = newChild;
+            return new Branch<>(bitmap, copy);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> without(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int pos = bitCount(bitmap & (bit - 1));
+            Node<K, V> child = children[pos];
+            Node<K, V> newChild = child.without(shift + BITS, hash, key);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild == null) {
+                if (children.length == 1) {
+                    return null;
+                }
+                if (children.length == 2 && children[1 - pos] instanceof HashNode) {
+                    // a lone leaf does not need a branch above it
+                    return children[1 - pos];
+                }
+                Node<K, V>[] copy = new Node[children.length - 1];
+                System.arraycopy(children, 0, copy, 0, pos);
+                System.arraycopy(children, pos + 1, copy, pos, children.length - pos - 1);
+                return new Branch<>(bitmap & ~bit, copy);
+            }
+            if (children.length == 1 && newChild instanceof HashNode) {
+                return newChild;
+            }
+            Node<K, V>[] copy = children.clone();
+            copy[pos] = newChild;
+            return new Branch<>(bitmap, copy);
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        private final Deque<Object[]> nodes = new ArrayDeque<>();
+
+        private final Deque<int[]> positions = new ArrayDeque<>();
+
+        private Leaf<K, V> next;
+
+        EntryIterator(Node<K, V> root) {
+            if (root != null) {
+                push(new Object[] {root});
+                advance();
+            }
+        }
+
+        private void push(Object[] array) {
+            nodes.push(array);
+            positions.push(new int[1]);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!nodes.isEmpty()) {
+                Object[] array = nodes.peek();
+                int[] position = positions.peek();
+                if (position[0] >= array.length) {
+                    nodes.pop();
+                    positions.pop();
+                    continue;
+                }
+                Object node = array[position[0]++];
+                if (node instanceof Leaf) {
+                    next = (Leaf<K, V>) node;
+                    return;
+                }
+                if (node instanceof Collision) {
+                    push(((Collision<K, V>) node).leaves);
+                } else {
+                    push(((Branch<K, V>) node).children);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
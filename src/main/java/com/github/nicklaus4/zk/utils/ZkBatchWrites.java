@@ -0,0 +1,349 @@
+package com.github.nicklaus4.zk.utils;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.zookeeper.KeeperException.Code.NODEEXISTS;
+import static org.apache.zookeeper.KeeperException.Code.NONODE;
+import static org.apache.zookeeper.KeeperException.Code.OK;
+import static org.apache.zookeeper.KeeperException.Code.RUNTIMEINCONSISTENCY;
+import static org.apache.zookeeper.KeeperException.Code.SYSTEMERROR;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.utils.Compatibility;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.data.Stat;
+
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.model.ZkWriteResult;
+
+/**
+ * bulk writes behind {@link ZkNodeUtils#setAllToZk} and {@link ZkNodeUtils#setAllToZkInTransactions}
+ *
+ * @author weishibai
+ * @date 2026/10/17 6:40 PM
+ */
+final class ZkBatchWrites {
+
+    private static final int MAX_CREATE_RACES = 3;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final String EVENT_THREAD_CLASS = "org.apache.zookeeper.ClientCnxn$EventThread";
+
+    private ZkBatchWrites() {
+    }
+
+    /**
+     * every write is sent in background right away, bounded by maxInFlight, and results are
+     * collected from the callbacks. a missing node is created with its parents from the callback.
+     */
+    static List<ZkWriteResult> pipelined(CuratorFramework client, List<ZkWrite> writes, int maxInFlight) {
+        checkNotOnEventThread("setAllToZk");
+        Pipeline pipeline = new Pipeline(client, writes, maxInFlight);
+        pipeline.run();
+        return Arrays.asList(pipeline.results);
+    }
+
+    /**
+     * existing nodes and missing parents are looked up in background first, then writes are
+     * sent as multi ops of at most maxOps ops and maxBytes payload. each chunk is atomic,
+     * a missing parent is created in the first chunk that needs it.
+     */
+    static List<ZkWriteResult> transactional(CuratorFramework client, List<ZkWrite> writes, int maxOps,
+            int maxBytes, int maxInFlight) {
+        checkNotOnEventThread("setAllToZkInTransactions");
+        Set<String> lookups = new LinkedHashSet<>();
+        for (ZkWrite write : writes) {
+            lookups.add(write.getPath());
+            if (!write.isConditional()) {
+                lookups.addAll(parentsOf(write.getPath()));
+            }
+        }
+        Set<String> existing = exists(client, lookups, maxInFlight);
+
+        ZkWriteResult[] results = new ZkWriteResult[writes.size()];
+        Chunk chunk = new Chunk();
+        for (int i = 0; i < writes.size(); i++) {
+            ZkWrite write = writes.get(i);
+            try {
+                if (write.isConditional() && !existing.contains(write.getPath())) {
+                    results[i] = new ZkWriteResult(write.getPath(), NONODE, null, false, null);
+                    continue;
+                }
+                List<String> missingParents = new ArrayList<>();
+                if (!existing.contains(write.getPath()) && !chunk.creates.contains(write.getPath())) {
+                    for (String parent : parentsOf(write.getPath())) {
+                        if (!existing.contains(parent) && !chunk.creates.contains(parent)) {
+                            missingParents.add(parent);
+                        }
+                    }
+                }
+                if (!chunk.ops.isEmpty() && (chunk.ops.size() + missingParents.size() + 1 > maxOps
+                        || chunk.bytes + write.getData().length > maxBytes)) {
+                    chunk.commit(client, writes, results, existing);
+                    chunk = new Chunk();
+                    // parents created by the committed chunk are known to exist now
+                    missingParents.removeIf(existing::contains);
+                }
+                for (String parent : missingParents) {
+                    chunk.add(client.transactionOp().create().withMode(CreateMode.PERSISTENT)
+                            .forPath(parent, EMPTY), -1, parent, true);
+                }
+                if (existing.contains(write.getPath()) || chunk.creates.contains(write.getPath())) {
+                    chunk.add(client.transactionOp().setData().withVersion(write.getExpectedVersion())
+                            .forPath(write.getPath(), write.getData()), i, write.getPath(), false);
+                } else {
+                    chunk.add(client.transactionOp().create().withMode(write.getCreateMode())
+                            .forPath(write.getPath(), write.getData()), i, write.getPath(), true);
+                }
+                chunk.bytes += write.getData().length;
+            } catch (Exception e) {
+                results[i] = new ZkWriteResult(write.getPath(), SYSTEMERROR, null, false, e);
+            }
+        }
+        if (!chunk.ops.isEmpty()) {
+            chunk.commit(client, writes, results, existing);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * background callbacks are delivered on the zk event thread, which would wait on itself, e.g. when
+     * called from a NodeCache listener or another background callback
+     *
+     * @throws IllegalStateException on the zk event thread
+     */
+    static void checkNotOnEventThread(String operation) {
+        checkState(!EVENT_THREAD_CLASS.equals(Thread.currentThread().getClass().getName()),
+                "%s waits for background callbacks and cannot run on the zk event thread, "
+                        + "hand it to another executor", operation);
+    }
+
+    /**
+     * /a/b/c gives /a, /a/b
+     */
+    private static List<String> parentsOf(String path) {
+        List<String> parents = new ArrayList<>();
+        int index = path.indexOf('/', 1);
+        while (index > 0) {
+            parents.add(path.substring(0, index));
+            index = path.indexOf('/', index + 1);
+        }
+        return parents;
+    }
+
+    private static Set<String> exists(CuratorFramework client, Collection<String> paths, int maxInFlight) {
+        Set<String> existing = ConcurrentHashMap.newKeySet();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(paths.size());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        for (String path : paths) {
+            acquire(inFlight);
+            try {
+                client.checkExists().inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+                    if (code == OK) {
+                        existing.add(path);
+                    } else if (code != NONODE) {
+                        failures.put(path, KeeperException.create(code, path));
+                    }
+                    inFlight.release();
+                    done.countDown();
+                }).forPath(path);
+            } catch (Exception e) {
+                failures.put(path, e);
+                inFlight.release();
+                done.countDown();
+            }
+        }
+        await(done);
+        if (!failures.isEmpty()) {
+            Throwable first = failures.values().iterator().next();
+            throw new RuntimeException("fail to look up " + failures.size() + " nodes before writing.", first);
+        }
+        return existing;
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final class Pipeline {
+
+        private final CuratorFramework client;
+
+        private final List<ZkWrite> writes;
+
+        private final ZkWriteResult[] results;
+
+        private final CountDownLatch done;
+
+        private final Semaphore inFlight;
+
+        Pipeline(CuratorFramework client, List<ZkWrite> writes, int maxInFlight) {
+            this.client = client;
+            this.writes = writes;
+            this.results = new ZkWriteResult[writes.size()];
+            this.done = new CountDownLatch(writes.size());
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        void run() {
+            for (int i = 0; i < writes.size(); i++) {
+                acquire(inFlight);
+                set(i, 1);
+            }
+            await(done);
+        }
+
+        private void set(int index, int attempt) {
+            ZkWrite write = writes.get(index);
+            try {
+                client.setData().withVersion(write.getExpectedVersion()).inBackground((c, event) -> {
+                    Code code = Code.get(event.getResultCode());
+                    if (code == NONODE && !write.isConditional()) {
+                        create(index, attempt);
+                    } else {
+                        complete(index, code, code == OK ? event.getStat() : null, false, null);
+                    }
+                }).forPath(write.getPath(), write.getData());
+            } catch (Exception e) {
+                complete(index, SYSTEMERROR, null, false, e);
+            }
+        }
+
+        private void create(int index, int attempt) {
+            ZkWrite write = writes.get(index);
+            Stat created = new Stat();
+            try {
+                client.create().storingStatIn(created).creatingParentsIfNeeded().withMode(write.getCreateMode())
+                        .inBackground((c, event) -> {
+                            Code code = Code.get(event.getResultCode());
+                            if (code == NODEEXISTS && attempt < MAX_CREATE_RACES) {
+                                // created by someone else meanwhile, set it instead
+                                set(index, attempt + 1);
+                            } else if (code == OK && Compatibility.isZK34()) {
+                                // a zk 3.4 client leaves created empty, read the stat right after
+                                statOfCreate(index);
+                            } else {
+                                complete(index, code, code == OK ? created : null, code == OK, null);
+                            }
+                        }).forPath(write.getPath(), write.getData());
+            } catch (Exception e) {
+                complete(index, SYSTEMERROR, null, false, e);
+            }
+        }
+
+        private void statOfCreate(int index) {
+            try {
+                client.checkExists().inBackground((c, event) -> complete(index, OK, event.getStat(), true, null))
+                        .forPath(writes.get(index).getPath());
+            } catch (Exception e) {
+                complete(index, OK, null, true, null);
+            }
+        }
+
+        private void complete(int index, Code code, Stat stat, boolean created, Throwable error) {
+            results[index] = new ZkWriteResult(writes.get(index).getPath(), code, stat, created, error);
+            inFlight.release();
+            done.countDown();
+        }
+    }
+
+    /**
+     * ops of one multi, with the write each op belongs to, -1 for a parent
+     */
+    private static final class Chunk {
+
+        private final List<CuratorOp> ops = new ArrayList<>();
+
+        private final List<Integer> owners = new ArrayList<>();
+
+        private final List<Boolean> createOps = new ArrayList<>();
+
+        private final Set<String> creates = new HashSet<>();
+
+        private int bytes;
+
+        void add(CuratorOp op, int owner, String path, boolean create) {
+            ops.add(op);
+            owners.add(owner);
+            createOps.add(create);
+            if (create) {
+                creates.add(path);
+            }
+        }
+
+        void commit(CuratorFramework client, List<ZkWrite> writes, ZkWriteResult[] results, Set<String> existing) {
+            try {
+                List<CuratorTransactionResult> committed = client.transaction().forOperations(ops);
+                for (int op = 0; op < ops.size(); op++) {
+                    int owner = owners.get(op);
+                    if (owner >= 0) {
+                        Stat stat = op < committed.size() ? committed.get(op).getResultStat() : null;
+                        results[owner] = new ZkWriteResult(writes.get(owner).getPath(), OK, stat,
+                                createOps.get(op), null);
+                    }
+                }
+                existing.addAll(creates);
+            } catch (Exception e) {
+                List<OpResult> opResults = e instanceof KeeperException ? ((KeeperException) e).getResults() : null;
+                Code cause = e instanceof KeeperException ? ((KeeperException) e).code() : SYSTEMERROR;
+                for (int op = 0; op < ops.size(); op++) {
+                    int owner = owners.get(op);
+                    if (owner < 0) {
+                        continue;
+                    }
+                    Code code = cause;
+                    if (opResults != null && op < opResults.size()) {
+                        code = failureOf(opResults.get(op));
+                    }
+                    results[owner] = new ZkWriteResult(writes.get(owner).getPath(), code, null, false, e);
+                }
+            }
+        }
+
+        /**
+         * the failed op gets its own code, the others of the multi were rolled back
+         */
+        private static Code failureOf(OpResult result) {
+            if (result instanceof OpResult.ErrorResult) {
+                Code code = Code.get(((OpResult.ErrorResult) result).getErr());
+                if (code != OK) {
+                    return code;
+                }
+            }
+            return RUNTIMEINCONSISTENCY;
+        }
+    }
+}
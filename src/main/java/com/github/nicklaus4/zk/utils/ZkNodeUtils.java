@@ -1,15 +1,41 @@
 package com.github.nicklaus4.zk.utils;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.Nullable;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.utils.Compatibility;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.nicklaus4.zk.codec.PayloadCodec;
+import com.github.nicklaus4.zk.model.ShardManifest;
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.model.ZkWriteResult;
+
 /**
  * zk node utils
  *
@@ -22,6 +48,21 @@ public class ZkNodeUtils {
 
     private static final int DEFAULT_RETRY_TIMES = 3;
 
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+    private static final int DEFAULT_UPDATE_ATTEMPTS = 10;
+
+    private static final long UPDATE_BACKOFF_MS = 10;
+
+    private static final long MAX_UPDATE_BACKOFF_MS = 1000;
+
+    private static final int DEFAULT_TRANSACTION_OPS = 200;
+
+    /**
+     * well below the 1MB default jute.maxbuffer a multi request must fit in
+     */
+    private static final int DEFAULT_TRANSACTION_BYTES = 512 * 1024;
+
     public static String getPath(NodeCache nodeCache) {
         if (null == nodeCache) {
             return "n/a";
@@ -68,6 +109,267 @@ public class ZkNodeUtils {
         setToZk(client, path, data, CreateMode.PERSISTENT);
     }
 
+    /**
+     * persistent node compressed and chunked by codec, read back with the same codec
+     */
+    public static void setToZk(CuratorFramework client, String path, byte[] data, PayloadCodec codec) {
+        checkNotNull(codec);
+        codec.write(client, path, data);
+    }
+
+    /**
+     * write many nodes with pipelined background calls instead of a round trip each,
+     * missing nodes are created with their parents unless the write is conditional.
+     * not atomic, blocks until every write completed.
+     *
+     * the background callbacks it waits for are delivered on the zk event thread, so it must not be
+     * called there, e.g. from a NodeCache listener or a background callback.
+     *
+     * @return in the order of writes
+     * @throws IllegalStateException when called on the zk event thread
+     */
+    public static List<ZkWriteResult> setAllToZk(CuratorFramework client, List<ZkWrite> writes) {
+        return setAllToZk(client, writes, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public static List<ZkWriteResult> setAllToZk(CuratorFramework client, List<ZkWrite> writes, int maxInFlight) {
+        checkNotNull(client);
+        checkNotNull(writes);
+        checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        return ZkBatchWrites.pipelined(client, writes, maxInFlight);
+    }
+
+    /**
+     * write a node read by {@link com.github.nicklaus4.zk.ZkShardedResource}: the shards as its children
+     * first, then the manifest pinning the version each shard write produced, so readers switch only
+     * once every shard is in place. children no longer listed are removed afterwards.
+     * a shard still holding the same bytes at the version the current manifest pins is not
+     * rewritten and keeps its version, so readers need not reload it.
+     *
+     * @param shards name to data in merge order
+     * @throws IllegalStateException when called on the zk event thread, see {@link #setAllToZk(CuratorFramework, List)}
+     */
+    public static void setShardsToZk(CuratorFramework client, String path, Map<String, byte[]> shards) {
+        checkNotNull(client);
+        checkNotNull(path);
+        ZkBatchWrites.checkNotOnEventThread("setShardsToZk");
+        byte[] currentManifest = getDataQuietly(client, path);
+        Map<String, Integer> pinned = pinnedVersions(path, currentManifest);
+        List<String> listed = new ArrayList<>();
+        shards.keySet().forEach(name -> {
+            if (pinned.containsKey(name)) {
+                listed.add(ZKPaths.makePath(path, name));
+            }
+        });
+        Map<String, ChildData> current = getAllQuietly(client, listed);
+
+        Map<String, Integer> versions = new LinkedHashMap<>();
+        List<String> changed = new ArrayList<>(shards.size());
+        List<ZkWrite> writes = new ArrayList<>(shards.size());
+        shards.forEach((name, data) -> {
+            String shardPath = ZKPaths.makePath(path, name);
+            ChildData existing = current.get(shardPath);
+            int version = pinned.getOrDefault(name, ShardManifest.ANY_VERSION);
+            if (existing != null && existing.getStat() != null && Arrays.equals(existing.getData(), data)
+                    && (version == ShardManifest.ANY_VERSION || version == existing.getStat().getVersion())) {
+                versions.put(name, existing.getStat().getVersion());
+            } else {
+                // keeps merge order, filled in from the write below
+                versions.put(name, null);
+                changed.add(name);
+                writes.add(ZkWrite.of(shardPath, data));
+            }
+        });
+
+        Iterator<ZkWriteResult> written = setAllToZk(client, writes).iterator();
+        for (String name : changed) {
+            ZkWriteResult result = written.next();
+            if (!result.isSuccess()) {
+                throw new IllegalStateException("fail to write shard " + result.getPath() + ": " + result.getCode(),
+                        result.getError());
+            }
+            versions.put(name, result.isCreated() ? 0 : result.getStat().getVersion());
+        }
+        byte[] manifest = ShardManifest.of(versions).toBytes();
+        if (!Arrays.equals(manifest, currentManifest)) {
+            setToZk(client, path, manifest);
+        }
+
+        try {
+            for (String child : client.getChildren().forPath(path)) {
+                if (!shards.containsKey(child)) {
+                    removeFromZk(client, ZKPaths.makePath(path, child), true);
+                }
+            }
+        } catch (Exception e) {
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * shard versions of the current manifest, none when the node holds something else
+     */
+    private static Map<String, Integer> pinnedVersions(String path, @Nullable byte[] manifest) {
+        try {
+            return ShardManifest.parse(manifest).getShards();
+        } catch (RuntimeException e) {
+            LOGGER.warn("{} holds no shard manifest, rewrite every shard.", path);
+            return Collections.emptyMap();
+        }
+    }
+
+    @Nullable
+    private static byte[] getDataQuietly(CuratorFramework client, String path) {
+        try {
+            return client.getData().forPath(path);
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        } catch (Exception e) {
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * read many nodes with pipelined background calls, best effort
+     *
+     * @return path to data and stat, without missing nodes and failed reads
+     */
+    private static Map<String, ChildData> getAllQuietly(CuratorFramework client, List<String> paths) {
+        Map<String, ChildData> result = new ConcurrentHashMap<>();
+        if (paths.isEmpty()) {
+            return result;
+        }
+        Semaphore inFlight = new Semaphore(DEFAULT_MAX_IN_FLIGHT);
+        CountDownLatch done = new CountDownLatch(paths.size());
+        for (String path : paths) {
+            inFlight.acquireUninterruptibly();
+            try {
+                client.getData().inBackground((c, event) -> {
+                    if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                        result.put(path, new ChildData(path, event.getStat(), event.getData()));
+                    }
+                    inFlight.release();
+                    done.countDown();
+                }).forPath(path);
+            } catch (Exception e) {
+                LOGGER.warn("fail to read {}", path, e);
+                inFlight.release();
+                done.countDown();
+            }
+        }
+        awaitUninterruptibly(done);
+        return result;
+    }
+
+    /**
+     * write many nodes as multi transactions, each chunk of 200 ops or 512KB is all or nothing.
+     * a failed chunk reports the failed write with its code and the others as RUNTIMEINCONSISTENCY.
+     * like {@link #setAllToZk(CuratorFramework, List)} it must not be called on the zk event thread.
+     *
+     * @return in the order of writes
+     * @throws IllegalStateException when called on the zk event thread
+     */
+    public static List<ZkWriteResult> setAllToZkInTransactions(CuratorFramework client, List<ZkWrite> writes) {
+        return setAllToZkInTransactions(client, writes, DEFAULT_TRANSACTION_OPS, DEFAULT_TRANSACTION_BYTES);
+    }
+
+    public static List<ZkWriteResult> setAllToZkInTransactions(CuratorFramework client, List<ZkWrite> writes,
+            int maxOps, int maxBytes) {
+        checkNotNull(client);
+        checkNotNull(writes);
+        checkArgument(maxOps > 0 && maxBytes > 0, "maxOps and maxBytes must be positive");
+        return ZkBatchWrites.transactional(client, writes, maxOps, maxBytes, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * read-modify-write without lost updates: the node is read with its version, written back with
+     * that version, and the whole is retried with jittered backoff when someone else wrote meanwhile.
+     *
+     * @param update gets the current data, null for a missing node which is then created with
+     * its parents. returns null to leave the node as is. may be called several times.
+     * @return stat after the write, or of the node left as is, null when left missing
+     */
+    @Nullable
+    public static Stat update(CuratorFramework client, String path, UnaryOperator<byte[]> update) {
+        checkNotNull(client);
+        checkNotNull(path);
+        checkNotNull(update);
+        return update(client, path, null, update, DEFAULT_UPDATE_ATTEMPTS);
+    }
+
+    /**
+     * like {@link #update(CuratorFramework, String, UnaryOperator)} but the first attempt starts from
+     * data already held, e.g. {@link com.github.nicklaus4.zk.ZkNodeResource#currentData()}, saving a read.
+     * stale data only costs a retry.
+     */
+    @Nullable
+    public static Stat update(CuratorFramework client, ChildData seed, UnaryOperator<byte[]> update) {
+        checkNotNull(client);
+        checkNotNull(seed);
+        checkNotNull(update);
+        return update(client, seed.getPath(), seed.getStat() != null ? seed : null, update, DEFAULT_UPDATE_ATTEMPTS);
+    }
+
+    private static Stat update(CuratorFramework client, String path, @Nullable ChildData seed,
+            UnaryOperator<byte[]> update, int maxAttempts) {
+        Exception lastConflict = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+            try {
+                byte[] current;
+                Stat stat;
+                if (attempt == 0 && seed != null) {
+                    current = seed.getData();
+                    stat = seed.getStat();
+                } else {
+                    stat = new Stat();
+                    try {
+                        current = client.getData().storingStatIn(stat).forPath(path);
+                    } catch (KeeperException.NoNodeException e) {
+                        current = null;
+                        stat = null;
+                    }
+                }
+
+                byte[] next = update.apply(current);
+                if (next == null) {
+                    return stat;
+                }
+                if (stat == null) {
+                    Stat created = new Stat();
+                    client.create().creatingParentsIfNeeded().storingStatIn(created).forPath(path, next);
+                    // a zk 3.4 client leaves created empty, the node may have changed again by the read
+                    return Compatibility.isZK34() ? client.checkExists().forPath(path) : created;
+                }
+                return client.setData().withVersion(stat.getVersion()).forPath(path, next);
+            } catch (KeeperException.BadVersionException | KeeperException.NodeExistsException
+                    | KeeperException.NoNodeException e) {
+                // changed, created or deleted since read
+                lastConflict = e;
+                LOGGER.debug("conflict on update of {}, attempt {}", path, attempt + 1);
+            } catch (Exception e) {
+                throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+        throw new RuntimeException("give up update of " + path + " after " + maxAttempts + " conflicts.",
+                lastConflict);
+    }
+
+    private static void backoff(int attempt) {
+        long bound = Math.min(MAX_UPDATE_BACKOFF_MS, UPDATE_BACKOFF_MS << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
     public static void removeFromZk(CuratorFramework client, String path, boolean recursive) {
         checkNotNull(client);
         checkNotNull(path);
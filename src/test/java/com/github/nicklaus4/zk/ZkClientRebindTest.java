@@ -0,0 +1,147 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nicklaus4.zk.factory.ZkClientConfig;
+import com.github.nicklaus4.zk.factory.ZkClientPool;
+
+/**
+ * resources moving their caches to the client a {@link ZkClientPool} replaced theirs with
+ *
+ * @author weishibai
+ * @date 2026/10/19 4:20 PM
+ */
+public class ZkClientRebindTest {
+
+    private static final String PATH = "/rebind/node";
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    private ZkClientPool pool;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+        curator.create().creatingParentsIfNeeded().forPath(PATH, "v1".getBytes(UTF_8));
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        if (pool != null) {
+            pool.close();
+        }
+        server.close();
+    }
+
+    private ZkClientPool pool(ZkClientConfig.Builder config) {
+        pool = ZkClientPool.newBuilder()
+                .defaultConfig(config.retryPolicy(new RetryNTimes(3, 100)).build())
+                .build();
+        return pool;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(15);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private ZkNodeResource<String> node(ZkClientPool pool) {
+        String connect = server.getConnectString();
+        return ZkNodeResource.newBuilder()
+                .withNodeFactory(PATH, () -> pool.get(connect, null))
+                .withBuildFactory((byte[] bytes) -> new String(bytes, UTF_8))
+                .build();
+    }
+
+    @Test
+    public void nodeFollowsAReplacedClient() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder());
+        ZkNodeResource<String> node = node(pool);
+        assertEquals("v1", node.get());
+
+        pool.get(server.getConnectString(), null).close();
+        // the next use replaces the stopped client and tells the resources bound to it
+        pool.get(server.getConnectString(), null);
+
+        curator.setData().forPath(PATH, "v2".getBytes(UTF_8));
+        await(() -> "v2".equals(node.get()));
+        node.close();
+    }
+
+    @Test
+    public void nodeFollowsARebuiltLostSession() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder()
+                .sessionTimeoutMs(1000)
+                .connectionTimeoutMs(500)
+                .rebuildAfterLost(300, MILLISECONDS));
+        CuratorFramework lost = pool.get(server.getConnectString(), null);
+        ZkNodeResource<String> node = node(pool);
+        assertEquals("v1", node.get());
+
+        server.stop();
+        await(() -> pool.get(server.getConnectString(), null) != lost);
+        // served from the last value while zk is away
+        assertEquals("v1", node.get());
+
+        server.restart();
+        assertTrue(curator.blockUntilConnected(10, SECONDS));
+        curator.setData().forPath(PATH, "v2".getBytes(UTF_8));
+        await(() -> "v2".equals(node.get()));
+        node.close();
+    }
+
+    @Test
+    public void sharedCachesAreEvictedWithTheirClient() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder());
+        String connect = server.getConnectString();
+        ZkCompositeResource<Map<String, ChildData>> composite = ZkCompositeResource
+                .<Map<String, ChildData>>newBuilder()
+                .input("node", PATH)
+                .combiner(inputs -> inputs)
+                .coalesce(10, 100, MILLISECONDS)
+                .curator(() -> pool.get(connect, null))
+                .build();
+        assertEquals("v1", new String(composite.get().get("node").getData(), UTF_8));
+
+        CuratorFramework dead = pool.get(connect, null);
+        dead.close();
+        CuratorFramework fresh = pool.get(connect, null);
+
+        // a cache acquired on the replacement is a new one, not the evicted cache of the stopped client
+        SharedNodeCache shared = SharedNodeCache.acquire(fresh, PATH);
+        try {
+            assertEquals("v1", new String(shared.getCurrentData().getData(), UTF_8));
+            curator.setData().forPath(PATH, "v2".getBytes(UTF_8));
+            await(() -> "v2".equals(new String(composite.get().get("node").getData(), UTF_8)));
+            await(() -> "v2".equals(new String(shared.getCurrentData().getData(), UTF_8)));
+        } finally {
+            shared.release();
+        }
+        composite.close();
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * zk composite resource test
+ *
+ * @author weishibai
+ * @date 2026/10/19 3:20 PM
+ */
+public class ZkCompositeResourceTest {
+
+    private static final String ROUTES = "/composite/routes";
+
+    private static final String WEIGHTS = "/composite/weights";
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    private ZkCompositeResource<Map<String, ChildData>> composite(BlockingQueue<Map<String, ChildData>> changes) {
+        return ZkCompositeResource.<Map<String, ChildData>>newBuilder()
+                .input("routes", ROUTES)
+                .input("weights", WEIGHTS)
+                .combiner(inputs -> inputs)
+                .coalesce(10, 100, MILLISECONDS)
+                .onResourceChange((current, old) -> changes.add(current))
+                .curator(curator)
+                .build();
+    }
+
+    private long mzxidOf(String path) throws Exception {
+        return curator.checkExists().forPath(path).getMzxid();
+    }
+
+    private static ChildData read(long mzxid) {
+        Stat stat = new Stat();
+        stat.setMzxid(mzxid);
+        return new ChildData("/input", stat, new byte[0]);
+    }
+
+    @Test
+    public void versionVectorFollowsInputs() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath(ROUTES, "r1".getBytes(UTF_8));
+        BlockingQueue<Map<String, ChildData>> changes = new LinkedBlockingQueue<>();
+        ZkCompositeResource<Map<String, ChildData>> resource = composite(changes);
+
+        Map<String, ChildData> first = resource.get();
+        assertSame(first, changes.poll(5, SECONDS));
+        assertEquals(ImmutableSet.of("routes"), first.keySet());
+        assertEquals(mzxidOf(ROUTES), (long) resource.versionVector().get("routes"));
+        // never seen
+        assertEquals(0L, (long) resource.versionVector().get("weights"));
+
+        curator.create().forPath(WEIGHTS, "w1".getBytes(UTF_8));
+        Map<String, ChildData> second = changes.poll(5, SECONDS);
+        assertNotNull(second);
+        assertEquals(ImmutableSet.of("routes", "weights"), second.keySet());
+        assertEquals(mzxidOf(ROUTES), (long) resource.versionVector().get("routes"));
+        assertEquals(mzxidOf(WEIGHTS), (long) resource.versionVector().get("weights"));
+
+        curator.setData().forPath(ROUTES, "r2".getBytes(UTF_8));
+        Map<String, ChildData> third = changes.poll(5, SECONDS);
+        assertNotNull(third);
+        assertEquals("r2", new String(third.get("routes").getData(), UTF_8));
+        assertEquals(mzxidOf(ROUTES), (long) resource.versionVector().get("routes"));
+        resource.close();
+    }
+
+    @Test
+    public void deletedInputIsAChange() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath(ROUTES, "r1".getBytes(UTF_8));
+        curator.create().forPath(WEIGHTS, "w1".getBytes(UTF_8));
+        BlockingQueue<Map<String, ChildData>> changes = new LinkedBlockingQueue<>();
+        ZkCompositeResource<Map<String, ChildData>> resource = composite(changes);
+        assertEquals(ImmutableSet.of("routes", "weights"), resource.get().keySet());
+        changes.clear();
+
+        curator.delete().forPath(WEIGHTS);
+        Map<String, ChildData> deleted = changes.poll(5, SECONDS);
+        assertNotNull(deleted);
+        assertEquals(ImmutableSet.of("routes"), deleted.keySet());
+        assertEquals(-1L, (long) resource.versionVector().get("weights"));
+
+        curator.create().forPath(WEIGHTS, "w2".getBytes(UTF_8));
+        Map<String, ChildData> recreated = changes.poll(5, SECONDS);
+        assertNotNull(recreated);
+        assertEquals("w2", new String(recreated.get("weights").getData(), UTF_8));
+        assertEquals(mzxidOf(WEIGHTS), (long) resource.versionVector().get("weights"));
+        resource.close();
+    }
+
+    @Test
+    public void laggingInputIsSkipped() {
+        long[] published = {5, 7};
+        assertNull(ZkCompositeResource.nextVersions(published, Arrays.asList(read(6), read(6))));
+        // a skipped read leaves the published vector alone
+        assertArrayEquals(new long[] {5, 7}, published);
+
+        assertArrayEquals(new long[] {6, 9},
+                ZkCompositeResource.nextVersions(published, Arrays.asList(read(6), read(9))));
+        // unchanged reads give the published vector, which is not combined again
+        assertArrayEquals(published, ZkCompositeResource.nextVersions(published, Arrays.asList(read(5), read(7))));
+    }
+
+    @Test
+    public void missingInputVersions() {
+        // never seen stays 0, seen before becomes deleted
+        assertArrayEquals(new long[] {0, -1},
+                ZkCompositeResource.nextVersions(new long[] {0, 7}, Arrays.<ChildData>asList(null, null)));
+        // deleted until it is back
+        assertArrayEquals(new long[] {0, -1},
+                ZkCompositeResource.nextVersions(new long[] {0, -1}, Arrays.<ChildData>asList(null, null)));
+        assertArrayEquals(new long[] {0, 12},
+                ZkCompositeResource.nextVersions(new long[] {0, -1}, Arrays.asList(null, read(12))));
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * zk node resource close test
+ *
+ * @author weishibai
+ * @date 2026/10/19 9:20 AM
+ */
+public class ZkNodeResourceCloseTest {
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    @Test
+    public void closeReleasesTheValue() throws Exception {
+        String path = "/close/node";
+        curator.create().creatingParentsIfNeeded().forPath(path, "v1".getBytes(UTF_8));
+        List<String> cleaned = new CopyOnWriteArrayList<>();
+        List<String> changes = new CopyOnWriteArrayList<>();
+        ZkNodeResource<String> node = ZkNodeResource.newBuilder()
+                .withNodeFactory(path, curator)
+                .withBuildFactory((byte[] bytes) -> new String(bytes, UTF_8))
+                .withCleanupConsumer((String value) -> cleaned.add(value))
+                .onNodeChange((String current, String old) -> changes.add(current))
+                .build();
+        assertEquals("v1", node.get());
+        assertEquals(ImmutableList.of("v1"), changes);
+        assertFalse(node.hasClosed());
+
+        node.close();
+        assertTrue(node.hasClosed());
+        assertEquals(ImmutableList.of("v1"), cleaned);
+        try {
+            node.get();
+            fail("closed node still served a value");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        // the listener is gone, later changes neither build nor notify
+        curator.setData().forPath(path, "v2".getBytes(UTF_8));
+        Thread.sleep(500);
+        assertEquals(ImmutableList.of("v1"), changes);
+        assertEquals(ImmutableList.of("v1"), cleaned);
+
+        // a second close is a no-op
+        node.closeQuietly();
+        assertEquals(ImmutableList.of("v1"), cleaned);
+    }
+
+    @Test
+    public void closeBeforeFirstGet() throws Exception {
+        String path = "/close/untouched";
+        curator.create().creatingParentsIfNeeded().forPath(path, "v1".getBytes(UTF_8));
+        List<String> cleaned = new CopyOnWriteArrayList<>();
+        ZkNodeResource<String> node = ZkNodeResource.newBuilder()
+                .withNodeFactory(path, curator)
+                .withBuildFactory((byte[] bytes) -> new String(bytes, UTF_8))
+                .withCleanupConsumer((String value) -> cleaned.add(value))
+                .build();
+
+        node.close();
+        assertTrue(node.hasClosed());
+        assertTrue(cleaned.isEmpty());
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * version history, pin, rollback and validation of a node resource
+ *
+ * @author weishibai
+ * @date 2026/10/19 1:50 PM
+ */
+public class ZkNodeResourceHistoryTest {
+
+    private static final String PATH = "/history/node";
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<String> rejected = new LinkedBlockingQueue<>();
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    private ZkNodeResource<String> node(int maxEntries, long maxBytes) throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath(PATH, "v1".getBytes(UTF_8));
+        ZkNodeResource<String> node = ZkNodeResource.newBuilder()
+                .withNodeFactory(PATH, curator)
+                .withBuildFactory((byte[] bytes) -> new String(bytes, UTF_8))
+                .withHistory(maxEntries, maxBytes)
+                .withValidator((String value) -> !value.startsWith("bad"))
+                .addFactoryFailedListener((ChildData data, Throwable e) -> rejected.add(new String(data.getData(),
+                        UTF_8)))
+                .onNodeChange((String current, String old) -> changes.add(current))
+                .build();
+        assertEquals("v1", node.get());
+        assertEquals("v1", changes.poll(5, SECONDS));
+        return node;
+    }
+
+    private void write(String value) throws Exception {
+        curator.setData().forPath(PATH, value.getBytes(UTF_8));
+    }
+
+    private static List<String> values(List<ChildData> history) {
+        List<String> values = new ArrayList<>();
+        history.forEach(entry -> values.add(new String(entry.getData(), UTF_8)));
+        return values;
+    }
+
+    @Test
+    public void keepsVersionsWithinBounds() throws Exception {
+        ZkNodeResource<String> node = node(3, 1 << 20);
+        for (int i = 2; i <= 5; i++) {
+            write("v" + i);
+            assertEquals("v" + i, changes.poll(5, SECONDS));
+        }
+        assertEquals(ImmutableList.of("v5", "v4", "v3"), values(node.history()));
+        node.close();
+    }
+
+    @Test
+    public void keepsVersionsWithinBytes() throws Exception {
+        // two bytes each, room for two
+        ZkNodeResource<String> node = node(10, 5);
+        write("v2");
+        assertEquals("v2", changes.poll(5, SECONDS));
+        write("v3");
+        assertEquals("v3", changes.poll(5, SECONDS));
+        assertEquals(ImmutableList.of("v3", "v2"), values(node.history()));
+        node.close();
+    }
+
+    @Test
+    public void rejectedValueKeepsTheCurrentOne() throws Exception {
+        ZkNodeResource<String> node = node(10, 1 << 20);
+        write("bad value");
+        assertEquals("bad value", rejected.poll(5, SECONDS));
+        assertEquals("v1", node.get());
+        assertTrue(changes.isEmpty());
+        // only published versions are kept
+        assertEquals(ImmutableList.of("v1"), values(node.history()));
+
+        write("v2");
+        assertEquals("v2", changes.poll(5, SECONDS));
+        node.close();
+    }
+
+    @Test
+    public void rollbackWalksBackAndUnpinResumes() throws Exception {
+        ZkNodeResource<String> node = node(10, 1 << 20);
+        write("v2");
+        assertEquals("v2", changes.poll(5, SECONDS));
+        write("v3");
+        assertEquals("v3", changes.poll(5, SECONDS));
+        List<ChildData> history = node.history();
+        assertEquals(ImmutableList.of("v3", "v2", "v1"), values(history));
+
+        assertEquals(history.get(1).getStat().getMzxid(), node.rollback());
+        assertEquals("v2", node.get());
+        assertEquals("v2", changes.poll(5, SECONDS));
+        assertTrue(node.isPinned());
+        // a repeated rollback walks back further
+        assertEquals(history.get(2).getStat().getMzxid(), node.rollback());
+        assertEquals("v1", node.get());
+        assertEquals("v1", changes.poll(5, SECONDS));
+        try {
+            node.rollback();
+            fail("nothing older than v1 is kept");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        // zk changes are ignored while pinned
+        write("v4");
+        assertNull(changes.poll(500, MILLISECONDS));
+        assertEquals("v1", node.get());
+
+        node.unpin();
+        assertFalse(node.isPinned());
+        assertEquals("v4", changes.poll(5, SECONDS));
+        assertEquals("v4", node.get());
+
+        // and pinTo jumps to any kept version
+        node.pinTo(history.get(0).getStat().getMzxid());
+        assertEquals("v3", node.get());
+        assertEquals("v3", changes.poll(5, SECONDS));
+        try {
+            node.pinTo(1);
+            fail("version 1 is not kept");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        node.close();
+    }
+}
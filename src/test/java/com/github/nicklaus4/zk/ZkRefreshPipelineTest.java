@@ -0,0 +1,197 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nicklaus4.zk.executor.RefreshPipeline;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * refresh pipeline wired into node and tree resources
+ *
+ * @author weishibai
+ * @date 2026/10/19 3:10 PM
+ */
+public class ZkRefreshPipelineTest {
+
+    private static final String PATH = "/pipeline/node";
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<Throwable> failures = new LinkedBlockingQueue<>();
+
+    private final List<Object> cleaned = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        release.countDown();
+        curator.close();
+        server.close();
+    }
+
+    /**
+     * warm up fails on "cold" values and hangs on "slow" ones past its timeout
+     */
+    private RefreshPipeline<String> warmUp(List<String> warmed) {
+        return RefreshPipeline.<String> newBuilder()
+                .warm(value -> {
+                    if (value.startsWith("cold")) {
+                        throw new IllegalArgumentException("cannot warm " + value);
+                    }
+                    if (value.startsWith("slow")) {
+                        try {
+                            release.await(5, SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    warmed.add(value);
+                }, null, 200, MILLISECONDS)
+                .build();
+    }
+
+    private ZkNodeResource<String> node(List<String> warmed) throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath(PATH, "v1".getBytes(UTF_8));
+        ZkNodeResource<String> node = ZkNodeResource.newBuilder()
+                .withNodeFactory(PATH, curator)
+                .withBuildFactory((byte[] bytes) -> new String(bytes, UTF_8))
+                .withValidator((String value) -> !value.startsWith("bad"))
+                .withRefreshPipeline(warmUp(warmed))
+                .withCleanupConsumer((String value) -> cleaned.add(value))
+                .addFactoryFailedListener((ChildData data, Throwable e) -> failures.add(e))
+                .onNodeChange((String current, String old) -> changes.add(current))
+                .build();
+        assertEquals("v1", node.get());
+        assertEquals("v1", changes.poll(5, SECONDS));
+        return node;
+    }
+
+    private void write(String value) throws Exception {
+        curator.setData().forPath(PATH, value.getBytes(UTF_8));
+    }
+
+    @Test
+    public void failedStageKeepsTheCurrentNodeValue() throws Exception {
+        List<String> warmed = new CopyOnWriteArrayList<>();
+        ZkNodeResource<String> node = node(warmed);
+        write("cold value");
+
+        Throwable failure = failures.poll(5, SECONDS);
+        assertTrue(String.valueOf(failure), failure instanceof IllegalStateException);
+        assertEquals("refresh stage warm failed", failure.getMessage());
+        assertEquals("v1", node.get());
+        assertEquals(ImmutableList.of("cold value"), cleaned);
+        assertNull(changes.poll(200, MILLISECONDS));
+
+        write("v2");
+        assertEquals("v2", changes.poll(5, SECONDS));
+        assertEquals(ImmutableList.of("v1", "v2"), warmed);
+        node.close();
+    }
+
+    @Test
+    public void validatorRunsAheadOfThePipeline() throws Exception {
+        List<String> warmed = new CopyOnWriteArrayList<>();
+        ZkNodeResource<String> node = node(warmed);
+        write("bad value");
+
+        Throwable failure = failures.poll(5, SECONDS);
+        assertEquals("refresh stage validate failed", failure.getMessage());
+        assertEquals("v1", node.get());
+        assertEquals(ImmutableList.of("bad value"), cleaned);
+        assertEquals(ImmutableList.of("v1"), warmed);
+        node.close();
+    }
+
+    @Test
+    public void slowStageTimesOut() throws Exception {
+        List<String> warmed = new CopyOnWriteArrayList<>();
+        ZkNodeResource<String> node = node(warmed);
+        write("slow value");
+
+        Throwable failure = failures.poll(5, SECONDS);
+        assertEquals("refresh stage warm failed", failure.getMessage());
+        assertTrue(String.valueOf(failure.getCause()), failure.getCause() instanceof TimeoutException);
+        assertEquals("v1", node.get());
+        assertEquals(ImmutableList.of("slow value"), cleaned);
+        node.close();
+    }
+
+    @Test
+    public void failedStageKeepsTheCurrentTree() throws Exception {
+        String path = "/pipeline/tree";
+        curator.create().creatingParentsIfNeeded().forPath(path + "/a", "a1".getBytes(UTF_8));
+        BlockingQueue<Map<String, String>> treeChanges = new LinkedBlockingQueue<>();
+        ZkTreeNodeResource<Map<String, String>> tree = ZkTreeNodeResource.<Map<String, String>>newBuilder()
+                .path(path)
+                .curator(curator)
+                .factory(nodes -> {
+                    ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+                    nodes.forEach((name, data) -> values.put(name, new String(data.getData(), UTF_8)));
+                    return values.build();
+                })
+                .refreshPipeline(RefreshPipeline.<Map<String, String>> newBuilder()
+                        .validate(values -> !values.containsValue("bad"))
+                        .build())
+                .cleanup(values -> cleaned.add(values))
+                .onResourceChange((current, old) -> treeChanges.add(current))
+                .build();
+        Map<String, String> first = tree.get();
+        assertEquals(ImmutableMap.of("/a", "a1"), first);
+
+        curator.create().forPath(path + "/b", "bad".getBytes(UTF_8));
+        long deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (cleaned.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ImmutableList.of(ImmutableMap.of("/a", "a1", "/b", "bad")), cleaned);
+        assertEquals(first, tree.get());
+
+        // the failed change is kept and built again with the next one
+        curator.setData().forPath(path + "/b", "b1".getBytes(UTF_8));
+        Map<String, String> fixed = ImmutableMap.of("/a", "a1", "/b", "b1");
+        Map<String, String> current;
+        do {
+            current = treeChanges.poll(5, SECONDS);
+        } while (current != null && !fixed.equals(current));
+        assertEquals(fixed, current);
+        assertEquals(fixed, tree.get());
+        tree.close();
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nicklaus4.zk.model.Versioned;
+import com.github.nicklaus4.zk.model.VersionedResourceLoader;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * versions of node and tree resources across refreshes
+ *
+ * @author weishibai
+ * @date 2026/10/19 5:10 PM
+ */
+public class ZkResourceVersionTest {
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    private long mzxidOf(String path) throws Exception {
+        return curator.checkExists().forPath(path).getMzxid();
+    }
+
+    /**
+     * next version of loader after previous, failing when none shows up in time
+     */
+    private static <T> Versioned<T> awaitChange(VersionedResourceLoader<T> loader, Versioned<T> previous)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            Versioned<T> changed = loader.ifChangedSince(previous.getVersion());
+            if (changed != null) {
+                assertTrue(changed.getVersion() > previous.getVersion());
+                return changed;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("no version after " + previous);
+    }
+
+    @Test
+    public void nodeVersionGrowsAcrossRefreshes() throws Exception {
+        String path = "/versioned/node";
+        curator.create().creatingParentsIfNeeded().forPath(path, "v1".getBytes(UTF_8));
+        ZkNodeResource<String> node = ZkNodeResource.newBuilder()
+                .withNodeFactory(path, curator)
+                .withBuildFactory((byte[] bytes) -> new String(bytes, UTF_8))
+                .build();
+
+        Versioned<String> first = node.getVersioned();
+        assertEquals("v1", first.getValue());
+        assertEquals(mzxidOf(path), first.getVersion());
+        // nothing refreshed, nothing changed
+        assertSame(first, node.getVersioned());
+        assertNull(node.ifChangedSince(first.getVersion()));
+
+        curator.setData().forPath(path, "v2".getBytes(UTF_8));
+        Versioned<String> updated = awaitChange(node, first);
+        assertEquals("v2", updated.getValue());
+        // value and version are published together
+        assertSame(node.get(), updated.getValue());
+        assertEquals(mzxidOf(path), updated.getVersion());
+
+        curator.delete().forPath(path);
+        Versioned<String> deleted = awaitChange(node, updated);
+        assertNull(deleted.getValue());
+        assertEquals(updated.getVersion() + 1, deleted.getVersion());
+
+        curator.create().forPath(path, "v3".getBytes(UTF_8));
+        Versioned<String> recreated = awaitChange(node, deleted);
+        assertEquals("v3", recreated.getValue());
+        assertEquals(mzxidOf(path), recreated.getVersion());
+        node.close();
+    }
+
+    @Test
+    public void treeVersionGrowsAcrossRefreshes() throws Exception {
+        String path = "/versioned/tree";
+        curator.create().creatingParentsIfNeeded().forPath(path + "/a", "a1".getBytes(UTF_8));
+        ZkTreeNodeResource<Map<String, String>> tree = ZkTreeNodeResource.<Map<String, String>>newBuilder()
+                .path(path)
+                .curator(curator)
+                .factory(nodes -> {
+                    ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+                    nodes.forEach((name, data) -> values.put(name, new String(data.getData(), UTF_8)));
+                    return values.build();
+                })
+                .build();
+
+        Versioned<Map<String, String>> first = tree.getVersioned();
+        assertEquals(ImmutableMap.of("/a", "a1"), first.getValue());
+        assertEquals(mzxidOf(path + "/a"), first.getVersion());
+        assertSame(first, tree.getVersioned());
+
+        curator.setData().forPath(path + "/a", "a2".getBytes(UTF_8));
+        Versioned<Map<String, String>> updated = awaitChange(tree, first);
+        assertEquals(ImmutableMap.of("/a", "a2"), updated.getValue());
+        assertSame(tree.get(), updated.getValue());
+
+        curator.create().forPath(path + "/b", "b1".getBytes(UTF_8));
+        Versioned<Map<String, String>> added = awaitChange(tree, updated);
+        assertEquals(ImmutableMap.of("/a", "a2", "/b", "b1"), added.getValue());
+        assertEquals(mzxidOf(path + "/b"), added.getVersion());
+
+        // the max mzxid does not grow on a deletion, the version still does
+        curator.delete().forPath(path + "/b");
+        Versioned<Map<String, String>> deleted = awaitChange(tree, added);
+        assertNotNull(deleted.getValue());
+        assertEquals(ImmutableMap.of("/a", "a2"), deleted.getValue());
+        tree.close();
+    }
+}
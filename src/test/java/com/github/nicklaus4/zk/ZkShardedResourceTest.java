@@ -0,0 +1,199 @@
+package com.github.nicklaus4.zk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nicklaus4.zk.model.ShardManifest;
+import com.github.nicklaus4.zk.utils.ZkNodeUtils;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * zk sharded resource test
+ *
+ * @author weishibai
+ * @date 2026/10/19 11:40 AM
+ */
+public class ZkShardedResourceTest {
+
+    private static final String PATH = "/sharded/config";
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    private final Map<String, AtomicInteger> decodes = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    private ZkShardedResource<String, String> sharded(long firstLoadTimeoutMs) {
+        return ZkShardedResource.<String, String>newBuilder()
+                .path(PATH)
+                .curator(curator)
+                .shardDecoder(shard -> {
+                    String name = shard.getPath().substring(PATH.length() + 1);
+                    decodes.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+                    return new String(shard.getData(), UTF_8);
+                })
+                .merger(shards -> String.join(",", shards.values()))
+                .firstLoadTimeout(firstLoadTimeoutMs, MILLISECONDS)
+                .onResourceChange((current, old) -> changes.add(current))
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    private static Map<String, byte[]> shards(String... nameAndData) {
+        ImmutableMap.Builder<String, byte[]> shards = ImmutableMap.builder();
+        for (int i = 0; i < nameAndData.length; i += 2) {
+            shards.put(nameAndData[i], bytes(nameAndData[i + 1]));
+        }
+        return shards.build();
+    }
+
+    private int versionOf(String path) throws Exception {
+        return curator.checkExists().forPath(path).getVersion();
+    }
+
+    private int decodesOf(String shard) {
+        AtomicInteger count = decodes.get(shard);
+        return count == null ? 0 : count.get();
+    }
+
+    private ShardManifest manifestInZk() throws Exception {
+        return ShardManifest.parse(curator.getData().forPath(PATH));
+    }
+
+    @Test
+    public void setShardsRoundTrip() throws Exception {
+        ZkNodeUtils.setShardsToZk(curator, PATH, shards("a", "a1", "b", "b1", "c", "c1"));
+        assertEquals(ImmutableMap.of("a", 0, "b", 0, "c", 0), manifestInZk().getShards());
+
+        ZkShardedResource<String, String> resource = sharded(1000);
+        assertEquals("a1,b1,c1", resource.get());
+        assertEquals(manifestInZk(), resource.currentManifest());
+
+        // the same content rewrites nothing
+        long manifestMzxid = curator.checkExists().forPath(PATH).getMzxid();
+        ZkNodeUtils.setShardsToZk(curator, PATH, shards("a", "a1", "b", "b1", "c", "c1"));
+        assertEquals(manifestMzxid, curator.checkExists().forPath(PATH).getMzxid());
+        assertEquals(0, versionOf(PATH + "/a"));
+
+        // one changed shard and one dropped, in a new merge order
+        ZkNodeUtils.setShardsToZk(curator, PATH, shards("c", "c1", "a", "a2"));
+        assertEquals(ImmutableMap.of("c", 0, "a", 1), manifestInZk().getShards());
+        assertEquals(ImmutableList.of("a", "c"), ImmutableList.sortedCopyOf(curator.getChildren().forPath(PATH)));
+        assertEquals("a1,b1,c1", changes.poll(5, SECONDS));
+        assertEquals("c1,a2", changes.poll(5, SECONDS));
+        assertEquals("c1,a2", resource.get());
+        resource.close();
+    }
+
+    @Test
+    public void decodesOnlyChangedShards() throws Exception {
+        ZkNodeUtils.setShardsToZk(curator, PATH, shards("a", "a1", "b", "b1", "c", "c1"));
+        ZkShardedResource<String, String> resource = sharded(1000);
+        assertEquals("a1,b1,c1", resource.get());
+        assertEquals("a1,b1,c1", changes.poll(5, SECONDS));
+
+        ZkNodeUtils.setShardsToZk(curator, PATH, shards("a", "a1", "b", "b2", "c", "c1"));
+        assertEquals("a1,b2,c1", changes.poll(5, SECONDS));
+        assertEquals(1, decodesOf("a"));
+        assertEquals(2, decodesOf("b"));
+        assertEquals(1, decodesOf("c"));
+        resource.close();
+    }
+
+    @Test
+    public void publishesOnlyShardsMatchingTheManifest() throws Exception {
+        ZkNodeUtils.setShardsToZk(curator, PATH, shards("a", "a1", "b", "b1"));
+        ZkShardedResource<String, String> resource = sharded(1000);
+        assertEquals("a1,b1", resource.get());
+        assertEquals("a1,b1", changes.poll(5, SECONDS));
+
+        // a shard moved past the version the manifest pins is not published on its own
+        curator.setData().forPath(PATH + "/b", bytes("b2"));
+        assertNull(changes.poll(500, MILLISECONDS));
+        assertEquals("a1,b1", resource.get());
+
+        // a manifest pinning a shard version not written yet waits for it
+        curator.setData().forPath(PATH, ShardManifest.of(ImmutableMap.of("a", 1, "b", 1)).toBytes());
+        assertNull(changes.poll(500, MILLISECONDS));
+        assertEquals("a1,b1", resource.get());
+
+        curator.setData().forPath(PATH + "/a", bytes("a2"));
+        assertEquals("a2,b2", changes.poll(5, SECONDS));
+        assertEquals(ImmutableMap.of("a", 1, "b", 1), resource.currentManifest().getShards());
+        resource.close();
+    }
+
+    @Test
+    public void firstGetWaitsForHalfWrittenManifest() throws Exception {
+        // the manifest is in place but shard b is still being written
+        curator.create().creatingParentsIfNeeded().forPath(PATH,
+                ShardManifest.of(ImmutableMap.of("a", 0, "b", 0)).toBytes());
+        curator.create().forPath(PATH + "/a", bytes("a1"));
+        ZkShardedResource<String, String> resource = sharded(5000);
+
+        CompletableFuture<String> first = resource.getAsync();
+        Thread.sleep(300);
+        assertFalse(first.isDone());
+
+        curator.create().forPath(PATH + "/b", bytes("b1"));
+        assertEquals("a1,b1", first.get(5, SECONDS));
+        assertEquals(1, decodesOf("b"));
+        resource.close();
+    }
+
+    @Test
+    public void firstGetGivesUpAfterTheTimeout() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath(PATH,
+                ShardManifest.of(ImmutableMap.of("a", 0, "b", 0)).toBytes());
+        curator.create().forPath(PATH + "/a", bytes("a1"));
+        ZkShardedResource<String, String> resource = sharded(200);
+        try {
+            resource.get();
+            fail("shard b never matched the manifest");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("do not match its manifest"));
+        }
+        resource.close();
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.nicklaus4.zk.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+/**
+ * payload codec test
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:00 PM
+ */
+public class PayloadCodecTest {
+
+    private static byte[] text(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append("{\"id\":").append(builder.length() % 97).append(",\"name\":\"node\"},");
+        }
+        return builder.substring(0, length).getBytes(UTF_8);
+    }
+
+    @Test
+    public void smallPayloadIsKeptAsIs() {
+        byte[] data = text(100);
+        assertSame(data, PayloadCodec.defaults().encode(data));
+    }
+
+    @Test
+    public void incompressiblePayloadIsKeptAsIs() {
+        byte[] data = new byte[8 * 1024];
+        new Random(42).nextBytes(data);
+        assertSame(data, PayloadCodec.defaults().encode(data));
+    }
+
+    @Test
+    public void plainPayloadIsNotEncoded() throws IOException {
+        byte[] data = "plain text".getBytes(UTF_8);
+        assertFalse(PayloadCodec.isEncoded(data));
+        assertFalse(PayloadCodec.isEncoded(null));
+        assertSame(data, PayloadCodec.decode(data));
+        assertSame(data, PayloadCodec.defaults().read(null, "/node", data));
+    }
+
+    @Test
+    public void compressedHeader() {
+        byte[] data = text(64 * 1024);
+        byte[] encoded = PayloadCodec.defaults().encode(data);
+        assertTrue(encoded.length < data.length);
+        assertTrue(PayloadCodec.isEncoded(encoded));
+        assertEquals((byte) 0xFE, encoded[0]);
+        assertEquals((byte) 'Z', encoded[1]);
+        assertEquals((byte) 'K', encoded[2]);
+        assertEquals(PayloadCompressor.DEFLATE, encoded[3]);
+        assertEquals(data.length, ByteBuffer.wrap(encoded, 4, 4).getInt());
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] data = text(64 * 1024);
+        byte[] encoded = PayloadCodec.defaults().encode(data);
+        assertArrayEquals(data, PayloadCodec.decode(encoded));
+        assertArrayEquals(data, PayloadCodec.defaults().read(null, "/node", encoded));
+    }
+
+    @Test
+    public void manifestLayout() {
+        byte[] encoded = text(10 * 1024);
+        byte[] manifest = PayloadCodec.manifest("gen-1", 3, encoded);
+        ByteBuffer buffer = ByteBuffer.wrap(manifest);
+        assertEquals((byte) 0xFE, buffer.get());
+        assertEquals((byte) 'Z', buffer.get());
+        assertEquals((byte) 'K', buffer.get());
+        assertEquals((byte) 0x10, buffer.get());
+        // manifest version
+        assertEquals((byte) 1, buffer.get());
+        assertEquals(3, buffer.getInt());
+        assertEquals(encoded.length, buffer.getInt());
+        CRC32 crc = new CRC32();
+        crc.update(encoded, 0, encoded.length);
+        assertEquals(crc.getValue(), buffer.getLong());
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        assertEquals("gen-1", new String(name, UTF_8));
+        assertFalse(buffer.hasRemaining());
+
+        assertTrue(PayloadCodec.isEncoded(manifest));
+        assertEquals("gen-1", PayloadCodec.generationOf(manifest));
+    }
+
+    @Test
+    public void generationOfPayloadWithoutManifest() {
+        assertNull(PayloadCodec.generationOf(null));
+        assertNull(PayloadCodec.generationOf(text(100)));
+        assertNull(PayloadCodec.generationOf(PayloadCodec.defaults().encode(text(64 * 1024))));
+    }
+
+    @Test
+    public void manifestNeedsClient() {
+        byte[] manifest = PayloadCodec.manifest("gen-1", 1, text(100));
+        try {
+            PayloadCodec.defaults().read(null, "/node", manifest);
+            fail("read a chunked payload without a client");
+        } catch (NullPointerException expected) {
+            // chunks live in zk
+        }
+    }
+
+    @Test
+    public void builtCompressorIsNotRegistered() throws IOException {
+        PayloadCompressor custom = new PayloadCompressor() {
+
+            @Override
+            public byte id() {
+                return 9;
+            }
+
+            @Override
+            public byte[] compress(byte[] data) throws IOException {
+                return PayloadCompressor.deflate().compress(data);
+            }
+
+            @Override
+            public byte[] decompress(byte[] data, int offset, int length, int rawLength) throws IOException {
+                return PayloadCompressor.deflate().decompress(data, offset, length, rawLength);
+            }
+        };
+        PayloadCodec codec = PayloadCodec.newBuilder().compressor(custom).build();
+        byte[] data = text(64 * 1024);
+        byte[] encoded = codec.encode(data);
+        assertEquals(9, encoded[3]);
+        assertArrayEquals(data, codec.read(null, "/node", encoded));
+        try {
+            PayloadCodec.decode(encoded);
+            fail("decoded with a compressor nobody registered");
+        } catch (IOException expected) {
+            // only register makes it global
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compressorIdOutOfRange() {
+        PayloadCodec.newBuilder().compressor(new PayloadCompressor() {
+
+            @Override
+            public byte id() {
+                return 0x10;
+            }
+
+            @Override
+            public byte[] compress(byte[] data) {
+                return data;
+            }
+
+            @Override
+            public byte[] decompress(byte[] data, int offset, int length, int rawLength) {
+                return data;
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.nicklaus4.zk.executor;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * cleanup scheduler test
+ *
+ * @author weishibai
+ * @date 2026/10/19 11:05 AM
+ */
+public class CleanupSchedulerTest {
+
+    @Test
+    public void retriesUntilPassed() throws Exception {
+        CleanupScheduler scheduler = CleanupScheduler.newBuilder().backoff(10, 20).build();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.submit("retried", () -> attempts.incrementAndGet() >= 3, 0, done::countDown);
+
+        assertTrue(done.await(5, SECONDS));
+        assertEquals(3, attempts.get());
+        assertEquals(0, scheduler.getInFlight());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void overflowIsHeldNotRunOnCaller() throws Exception {
+        CleanupScheduler scheduler = CleanupScheduler.newBuilder().threads(1).maxPending(1).build();
+        Thread caller = Thread.currentThread();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicInteger onCaller = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit("held-" + i, () -> {
+                if (Thread.currentThread() == caller) {
+                    onCaller.incrementAndGet();
+                }
+                try {
+                    return release.await(5, SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }, 0, done::countDown);
+        }
+        assertEquals(1, scheduler.getInFlight());
+        release.countDown();
+
+        assertTrue(done.await(5, SECONDS));
+        assertEquals(0, onCaller.get());
+        assertEquals(0, scheduler.getInFlight());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void submitAfterShutdownRunsOnceElsewhere() throws Exception {
+        CleanupScheduler scheduler = CleanupScheduler.newBuilder().build();
+        scheduler.shutdown();
+        Thread caller = Thread.currentThread();
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger onCaller = new AtomicInteger();
+        CountDownLatch then = new CountDownLatch(1);
+        scheduler.submit("late", () -> {
+            attempts.incrementAndGet();
+            if (Thread.currentThread() == caller) {
+                onCaller.incrementAndGet();
+            }
+            return false;
+        }, 0, then::countDown);
+
+        // no retry and no leaked slot, then still runs
+        assertTrue(then.await(5, SECONDS));
+        assertEquals(1, attempts.get());
+        assertEquals(0, onCaller.get());
+        assertEquals(0, scheduler.getInFlight());
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.nicklaus4.zk.executor;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * event coalescer test
+ *
+ * @author weishibai
+ * @date 2026/10/19 10:20 AM
+ */
+public class EventCoalescerTest {
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService executor;
+
+    @Before
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void burstRunsOnce() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch ran = new CountDownLatch(1);
+        EventCoalescer coalescer = new EventCoalescer(scheduler, executor, 100, 1000, MILLISECONDS, () -> {
+            runs.incrementAndGet();
+            ran.countDown();
+        });
+
+        for (int i = 0; i < 5; i++) {
+            coalescer.submit();
+        }
+        assertTrue(ran.await(5, SECONDS));
+        // a second run would start one window after the first
+        Thread.sleep(300);
+        assertEquals(1, runs.get());
+        assertEquals(4, coalescer.getCoalescedEventCount());
+        coalescer.close();
+    }
+
+    @Test
+    public void windowIsPushedOutByLaterEvents() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        EventCoalescer coalescer = new EventCoalescer(scheduler, executor, 200, 10_000, MILLISECONDS,
+                ran::countDown);
+
+        coalescer.submit();
+        Thread.sleep(120);
+        coalescer.submit();
+        Thread.sleep(120);
+        // 240ms after the first event, but only 120ms after the last one
+        assertEquals(1, ran.getCount());
+        assertTrue(ran.await(5, SECONDS));
+        coalescer.close();
+    }
+
+    @Test
+    public void maxStalenessFlushesSteadyStream() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        EventCoalescer coalescer = new EventCoalescer(scheduler, executor, 100, 300, MILLISECONDS,
+                ran::countDown);
+
+        long start = System.nanoTime();
+        boolean flushed = false;
+        // an event every 20ms never leaves a quiet window, only max staleness fires the action
+        while (System.nanoTime() - start < SECONDS.toNanos(3)) {
+            coalescer.submit();
+            if (ran.await(20, MILLISECONDS)) {
+                flushed = true;
+                break;
+            }
+        }
+        assertTrue(flushed);
+        assertTrue(System.nanoTime() - start < SECONDS.toNanos(2));
+        coalescer.close();
+    }
+
+    @Test
+    public void dueWhileRunningRunsRightAfter() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        EventCoalescer coalescer = new EventCoalescer(scheduler, executor, 20, 20, MILLISECONDS, () -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                if (runs.incrementAndGet() == 1) {
+                    firstStarted.countDown();
+                    releaseFirst.await(5, SECONDS);
+                } else {
+                    secondDone.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        });
+
+        coalescer.submit();
+        assertTrue(firstStarted.await(5, SECONDS));
+        coalescer.submit();
+        // let the second window expire while the first run still blocks
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+        releaseFirst.countDown();
+
+        assertTrue(secondDone.await(5, SECONDS));
+        assertEquals(2, runs.get());
+        assertEquals(1, maxConcurrent.get());
+        coalescer.close();
+    }
+
+    @Test
+    public void closeDropsPendingRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        EventCoalescer coalescer = new EventCoalescer(scheduler, executor, 100, 100, MILLISECONDS,
+                runs::incrementAndGet);
+
+        coalescer.submit();
+        coalescer.close();
+        coalescer.submit();
+        Thread.sleep(300);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void closeDropsRerun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        EventCoalescer coalescer = new EventCoalescer(scheduler, executor, 20, 20, MILLISECONDS, () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        });
+
+        coalescer.submit();
+        assertTrue(started.await(5, SECONDS));
+        coalescer.submit();
+        Thread.sleep(100);
+        coalescer.close();
+        release.countDown();
+
+        // the started run completes, the one due meanwhile is dropped
+        assertTrue(finished.await(5, SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+        // a caller supplied executor is left alone
+        assertFalse(executor.isShutdown());
+    }
+}
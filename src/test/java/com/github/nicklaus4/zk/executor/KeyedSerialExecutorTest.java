@@ -0,0 +1,199 @@
+package com.github.nicklaus4.zk.executor;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * keyed serial executor test
+ *
+ * @author weishibai
+ * @date 2026/10/19 11:40 AM
+ */
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void lanesKeepOrderAndNeverOverlap() throws Exception {
+        KeyedSerialExecutor executor = KeyedSerialExecutor.create(4);
+        int lanes = 4;
+        int tasks = 1000;
+        List<List<Integer>> seen = new ArrayList<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(lanes * tasks);
+        for (int l = 0; l < lanes; l++) {
+            ExecutorService lane = executor.lane("lane-" + l);
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            seen.add(order);
+            AtomicInteger running = new AtomicInteger();
+            for (int i = 0; i < tasks; i++) {
+                int n = i;
+                lane.execute(() -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    order.add(n);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, SECONDS));
+        assertEquals(0, overlaps.get());
+        for (List<Integer> order : seen) {
+            assertEquals(tasks, order.size());
+            for (int i = 0; i < tasks; i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void failingTaskDoesNotStopLane() throws Exception {
+        KeyedSerialExecutor executor = KeyedSerialExecutor.create(1);
+        ExecutorService lane = executor.lane("failing");
+        CountDownLatch after = new CountDownLatch(1);
+        lane.execute(() -> {
+            throw new IllegalStateException("expected");
+        });
+        lane.execute(after::countDown);
+
+        assertTrue(after.await(5, SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void laneShutdownStopsOnlyThatLane() throws Exception {
+        KeyedSerialExecutor executor = KeyedSerialExecutor.create(2);
+        ExecutorService stopped = executor.lane("stopped");
+        ExecutorService alive = executor.lane("alive");
+        assertEquals(2, executor.getActiveLanes());
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        stopped.execute(() -> {
+            try {
+                release.await(5, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopped.execute(queuedRan::countDown);
+        stopped.shutdown();
+        assertEquals(1, executor.getActiveLanes());
+        assertTrue(stopped.isShutdown());
+        assertFalse(stopped.isTerminated());
+        try {
+            stopped.execute(() -> { });
+            fail("lane is shut down");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+
+        CountDownLatch aliveRan = new CountDownLatch(1);
+        alive.execute(aliveRan::countDown);
+        assertTrue(aliveRan.await(5, SECONDS));
+
+        // tasks queued before shutdown still run
+        release.countDown();
+        assertTrue(queuedRan.await(5, SECONDS));
+        assertTrue(stopped.awaitTermination(5, SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void shutdownNowReturnsQueuedTasks() throws Exception {
+        KeyedSerialExecutor executor = KeyedSerialExecutor.create(1);
+        ExecutorService lane = executor.lane("now");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, SECONDS));
+        lane.execute(() -> { });
+        lane.execute(() -> { });
+
+        assertEquals(2, lane.shutdownNow().size());
+        release.countDown();
+        assertTrue(lane.awaitTermination(5, SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void rejectedLaneDropsInsteadOfThrowingLater() throws Exception {
+        ExecutorService backing = Executors.newSingleThreadExecutor();
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(backing);
+        ExecutorService lane = executor.lane("orphan");
+        backing.shutdown();
+
+        try {
+            lane.execute(() -> { });
+            fail("backing pool is shut down");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        // the lane is dead for good, not retried on every event
+        assertTrue(lane.isShutdown());
+        assertTrue(lane.isTerminated());
+        assertEquals(0, executor.getActiveLanes());
+        try {
+            lane.execute(() -> { });
+            fail("lane is dead");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void longQueueDrainsInPlaceOnceBackingIsGone() throws Exception {
+        ExecutorService backing = Executors.newSingleThreadExecutor();
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(backing);
+        ExecutorService lane = executor.lane("in-place");
+        CountDownLatch release = new CountDownLatch(1);
+        lane.execute(() -> {
+            try {
+                release.await(5, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // more than one batch, the drain cannot hand over to a fresh turn
+        int tasks = 200;
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int n = i;
+            lane.execute(() -> {
+                order.add(n);
+                done.countDown();
+            });
+        }
+        backing.shutdown();
+        release.countDown();
+
+        assertTrue(done.await(5, SECONDS));
+        for (int i = 0; i < tasks; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.nicklaus4.zk.executor;
+
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * refresh pipeline test
+ *
+ * @author weishibai
+ * @date 2026/10/19 2:30 PM
+ */
+public class RefreshPipelineTest {
+
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+
+    private final List<String> cleaned = new CopyOnWriteArrayList<>();
+
+    private boolean cleanup(String value) {
+        return cleaned.add(value);
+    }
+
+    @Test
+    public void runsStagesInOrder() {
+        RefreshPipeline<String> tail = RefreshPipeline.<String> newBuilder()
+                .stage("index", value -> ran.add("index " + value), null, 0, SECONDS)
+                .build();
+        RefreshPipeline<String> pipeline = RefreshPipeline.<String> newBuilder()
+                .validate(value -> ran.add("validate " + value))
+                .warm(value -> ran.add("warm " + value))
+                .then(tail)
+                .build();
+
+        assertEquals("v1", pipeline.runNow("v1", this::cleanup));
+        assertEquals(ImmutableList.of("validate v1", "warm v1", "index v1"), ran);
+        assertTrue(cleaned.isEmpty());
+    }
+
+    @Test
+    public void firstFailingStageCleansUpAndStops() {
+        RefreshPipeline<String> pipeline = RefreshPipeline.<String> newBuilder()
+                .validate(value -> !value.startsWith("bad"))
+                .warm(value -> ran.add("warm " + value))
+                .build();
+        try {
+            pipeline.runNow("bad value", this::cleanup);
+            fail("validation rejects bad values");
+        } catch (IllegalStateException expected) {
+            assertEquals("refresh stage validate failed", expected.getMessage());
+        }
+        assertEquals(ImmutableList.of("bad value"), cleaned);
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    public void thrownByAStageFailsTheValue() {
+        IllegalArgumentException cause = new IllegalArgumentException("cold");
+        RefreshPipeline<String> pipeline = RefreshPipeline.<String> newBuilder()
+                .warm(value -> {
+                    throw cause;
+                })
+                .build();
+        try {
+            pipeline.runNow("v1", this::cleanup);
+            fail("warm up threw");
+        } catch (IllegalStateException expected) {
+            assertEquals("refresh stage warm failed", expected.getMessage());
+            assertSame(cause, expected.getCause());
+        }
+        assertEquals(ImmutableList.of("v1"), cleaned);
+    }
+
+    @Test
+    public void slowStageTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RefreshPipeline<String> pipeline = RefreshPipeline.<String> newBuilder()
+                .warm(value -> {
+                    try {
+                        release.await(5, SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, null, 100, MILLISECONDS)
+                .build();
+        long start = System.nanoTime();
+        try {
+            pipeline.runNow("v1", this::cleanup);
+            fail("warm up is slower than its timeout");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getCause() instanceof TimeoutException);
+        } finally {
+            release.countDown();
+        }
+        assertTrue(System.nanoTime() - start < SECONDS.toNanos(3));
+        assertEquals(ImmutableList.of("v1"), cleaned);
+    }
+
+    @Test
+    public void cleanupFailureStillFailsTheValue() {
+        RefreshPipeline<String> pipeline = RefreshPipeline.<String> newBuilder()
+                .validate(value -> false)
+                .build();
+        try {
+            pipeline.runNow("v1", value -> {
+                throw new IllegalStateException("cannot release");
+            });
+            fail("validation rejects every value");
+        } catch (IllegalStateException expected) {
+            assertEquals("refresh stage validate failed", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void runsOnceBuilt() throws Exception {
+        RefreshPipeline<String> pipeline = RefreshPipeline.<String> newBuilder()
+                .validate(value -> !value.startsWith("bad"), directExecutor(), 0, SECONDS)
+                .build();
+        SettableFuture<String> built = SettableFuture.create();
+        ListenableFuture<String> passed = pipeline.run(built, this::cleanup);
+        assertFalse(passed.isDone());
+        built.set("bad value");
+        try {
+            passed.get(5, SECONDS);
+            fail("validation rejects bad values");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(ImmutableList.of("bad value"), cleaned);
+
+        // a missing value skips every stage
+        assertNull(pipeline.run(immediateFuture(null), this::cleanup).get(5, SECONDS));
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.nicklaus4.zk.factory;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.curator.framework.imps.CuratorFrameworkState.STARTED;
+import static org.apache.curator.framework.imps.CuratorFrameworkState.STOPPED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * zk client pool test
+ *
+ * @author weishibai
+ * @date 2026/10/19 3:40 PM
+ */
+public class ZkClientPoolTest {
+
+    private TestingServer server;
+
+    private ZkClientPool pool;
+
+    private final BlockingQueue<List<CuratorFramework>> rebuilt = new LinkedBlockingQueue<>();
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        server.close();
+    }
+
+    private ZkClientPool pool(ZkClientConfig.Builder config) {
+        pool = ZkClientPool.newBuilder()
+                .defaultConfig(config.retryPolicy(new RetryNTimes(3, 100)).build())
+                .build();
+        pool.addRebuildListener((dead, fresh) -> rebuilt.add(ImmutableList.of(dead, fresh)));
+        return pool;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void spreadsOverSessionsRoundRobin() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder().sessions(3));
+        String connect = server.getConnectString();
+        CuratorFramework first = pool.get(connect, null);
+        CuratorFramework second = pool.get(connect, null);
+        CuratorFramework third = pool.get(connect, null);
+        assertEquals(3, ImmutableSet.of(first, second, third).size());
+        assertSame(first, pool.get(connect, null));
+
+        for (CuratorFramework client : ImmutableList.of(first, second, third)) {
+            assertTrue(client.blockUntilConnected(5, SECONDS));
+            client.checkExists().forPath("/");
+        }
+        List<ZkSessionUsage> usage = pool.sessionUsage();
+        assertEquals(1, usage.size());
+        assertEquals(3, usage.get(0).getSessions());
+        assertTrue(usage.get(0).isPinned());
+    }
+
+    @Test
+    public void closesIdleClientsOnceTheLastLeaseIsReleased() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder().idleClose(200, MILLISECONDS));
+        String connect = server.getConnectString();
+        ZkClientLease first = pool.acquire(connect, "app");
+        ZkClientLease second = pool.acquire(connect, "app");
+        CuratorFramework client = first.client();
+        assertSame(client, second.client());
+        assertEquals(2, pool.getLeaseCount(connect, "app"));
+
+        first.close();
+        // closing twice releases once
+        first.close();
+        assertEquals(1, pool.getLeaseCount(connect, "app"));
+        second.close();
+        assertEquals(0, pool.getLeaseCount(connect, "app"));
+
+        // a lease taken within the idle period keeps the client open
+        ZkClientLease third = pool.acquire(connect, "app");
+        Thread.sleep(400);
+        assertSame(client, third.client());
+        assertEquals(STARTED, client.getState());
+
+        third.close();
+        await(() -> client.getState() == STOPPED);
+        assertEquals(-1, pool.getLeaseCount(connect, "app"));
+        try (ZkClientLease next = pool.acquire(connect, "app")) {
+            assertNotSame(client, next.client());
+        }
+    }
+
+    @Test
+    public void pinnedClientsAreNeverClosedIdle() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder().idleClose(100, MILLISECONDS));
+        String connect = server.getConnectString();
+        CuratorFramework pinned = pool.get(connect, null);
+        pool.acquire(connect, null).close();
+        Thread.sleep(300);
+        assertEquals(STARTED, pinned.getState());
+        assertEquals(0, pool.getLeaseCount(connect, null));
+    }
+
+    @Test
+    public void sharedNamespacesUseOneSession() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder().shareNamespaces());
+        String connect = server.getConnectString();
+        CuratorFramework app = pool.get(connect, "app");
+        CuratorFramework other = pool.get(connect, "other");
+        assertEquals("app", app.getNamespace());
+        assertEquals("other", other.getNamespace());
+        assertSame(app.getZookeeperClient(), other.getZookeeperClient());
+
+        List<ZkSessionUsage> usage = pool.sessionUsage();
+        assertEquals(1, usage.size());
+        assertNull(usage.get(0).getNamespace());
+        assertEquals(ImmutableSet.of("app", "other"), usage.get(0).getNamespaces());
+    }
+
+    @Test
+    public void replacesAStoppedClient() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder());
+        String connect = server.getConnectString();
+        CuratorFramework dead = pool.get(connect, null);
+        dead.close();
+
+        CuratorFramework fresh = pool.get(connect, null);
+        assertNotSame(dead, fresh);
+        assertEquals(STARTED, fresh.getState());
+        assertEquals(ImmutableList.of(dead, fresh), rebuilt.poll(5, SECONDS));
+        assertTrue(fresh.blockUntilConnected(5, SECONDS));
+    }
+
+    @Test
+    public void rebuildsALostSessionWhenOptedIn() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder()
+                .sessionTimeoutMs(1000)
+                .connectionTimeoutMs(500)
+                .rebuildAfterLost(300, MILLISECONDS));
+        String connect = server.getConnectString();
+        CuratorFramework lost = pool.get(connect, null);
+        assertTrue(lost.blockUntilConnected(5, SECONDS));
+
+        server.stop();
+        List<CuratorFramework> replaced = rebuilt.poll(15, SECONDS);
+        assertEquals(lost, replaced.get(0));
+        assertEquals(STOPPED, lost.getState());
+        CuratorFramework fresh = replaced.get(1);
+        assertSame(fresh, pool.get(connect, null));
+
+        server.restart();
+        assertTrue(fresh.blockUntilConnected(10, SECONDS));
+        fresh.checkExists().forPath("/");
+    }
+
+    @Test
+    public void keepsALostSessionByDefault() throws Exception {
+        ZkClientPool pool = pool(ZkClientConfig.newBuilder()
+                .sessionTimeoutMs(1000)
+                .connectionTimeoutMs(500));
+        String connect = server.getConnectString();
+        CuratorFramework client = pool.get(connect, null);
+        assertTrue(client.blockUntilConnected(5, SECONDS));
+
+        server.stop();
+        Thread.sleep(3000);
+        assertNull(rebuilt.poll());
+
+        server.restart();
+        assertTrue(client.blockUntilConnected(10, SECONDS));
+        assertSame(client, pool.get(connect, null));
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.nicklaus4.zk.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * derived resource test
+ *
+ * @author weishibai
+ * @date 2026/10/19 4:05 PM
+ */
+public class DerivedResourceTest {
+
+    @Test
+    public void derivesOncePerSourceInstance() {
+        AtomicReference<String> source = new AtomicReference<>(new String("a"));
+        AtomicInteger derived = new AtomicInteger();
+        ResourceLoader<String> view = ((ResourceLoader<String>) source::get).map(value -> {
+            derived.incrementAndGet();
+            return value + "!";
+        });
+
+        assertEquals("a!", view.get());
+        assertSame(view.get(), view.get());
+        assertEquals(1, derived.get());
+
+        // equal but another instance is a change
+        source.set(new String("a"));
+        view.get();
+        assertEquals(2, derived.get());
+    }
+
+    @Test
+    public void replacingNullValueSkipsCleanup() throws Exception {
+        AtomicReference<String> source = new AtomicReference<>();
+        List<String> cleaned = Collections.synchronizedList(new ArrayList<>());
+        ResourceLoader<String> view = ((ResourceLoader<String>) source::get).map(value -> value,
+                value -> cleaned.add(value));
+
+        assertNull(view.get());
+        source.set("b");
+        assertEquals("b", view.get());
+
+        source.set("c");
+        assertEquals("c", view.get());
+        // only the replaced non null value is cleaned up, off the caller
+        for (int i = 0; i < 100 && cleaned.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("b"), cleaned);
+    }
+
+    @Test
+    public void failureIsRetriedOnlyOnceAnInputChanged() {
+        AtomicReference<String> source = new AtomicReference<>("good");
+        AtomicInteger derived = new AtomicInteger();
+        ResourceLoader<String> view = ((ResourceLoader<String>) source::get).map(value -> {
+            derived.incrementAndGet();
+            if (value.startsWith("bad")) {
+                throw new IllegalArgumentException(value);
+            }
+            return value.toUpperCase();
+        });
+        assertEquals("GOOD", view.get());
+
+        source.set("bad");
+        for (int i = 0; i < 5; i++) {
+            assertEquals("GOOD", view.get());
+        }
+        assertEquals(2, derived.get());
+
+        source.set("bad again");
+        assertEquals("GOOD", view.get());
+        assertEquals(3, derived.get());
+
+        source.set("fixed");
+        assertEquals("FIXED", view.get());
+        assertEquals(4, derived.get());
+    }
+
+    @Test
+    public void firstFailureIsThrown() {
+        AtomicReference<String> source = new AtomicReference<>("bad");
+        ResourceLoader<String> view = ((ResourceLoader<String>) source::get).map(value -> {
+            if (value.equals("bad")) {
+                throw new IllegalStateException(value);
+            }
+            return value;
+        });
+        try {
+            view.get();
+            fail("no previous value to keep");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        source.set("good");
+        assertEquals("good", view.get());
+    }
+}
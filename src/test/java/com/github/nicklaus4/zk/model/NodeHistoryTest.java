@@ -0,0 +1,98 @@
+package com.github.nicklaus4.zk.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * node history test
+ *
+ * @author weishibai
+ * @date 2026/10/19 1:15 PM
+ */
+public class NodeHistoryTest {
+
+    private static ChildData version(long mzxid, String data) {
+        Stat stat = new Stat();
+        stat.setMzxid(mzxid);
+        return new ChildData("/history", stat, data.getBytes(UTF_8));
+    }
+
+    private static List<Long> mzxids(NodeHistory history) {
+        List<Long> mzxids = new ArrayList<>();
+        history.entries().forEach(entry -> mzxids.add(entry.getStat().getMzxid()));
+        return mzxids;
+    }
+
+    @Test
+    public void keepsAtMostMaxEntriesNewestFirst() {
+        NodeHistory history = new NodeHistory(3, 1 << 20);
+        for (long mzxid = 1; mzxid <= 5; mzxid++) {
+            history.record(version(mzxid, "v" + mzxid));
+        }
+        assertEquals(ImmutableList.of(5L, 4L, 3L), mzxids(history));
+        assertEquals(6, history.bytes());
+    }
+
+    @Test
+    public void keepsAtMostMaxBytes() {
+        NodeHistory history = new NodeHistory(10, 10);
+        history.record(version(1, "aaaa"));
+        history.record(version(2, "bbbb"));
+        assertEquals(8, history.bytes());
+
+        history.record(version(3, "cccc"));
+        assertEquals(ImmutableList.of(3L, 2L), mzxids(history));
+        assertEquals(8, history.bytes());
+    }
+
+    @Test
+    public void keepsTheNewestBeyondMaxBytes() {
+        NodeHistory history = new NodeHistory(10, 10);
+        history.record(version(1, "aaaa"));
+        history.record(version(2, "larger than ten bytes"));
+        assertEquals(ImmutableList.of(2L), mzxids(history));
+        assertEquals(21, history.bytes());
+
+        // the next one pushes it out again
+        history.record(version(3, "cccc"));
+        assertEquals(ImmutableList.of(3L), mzxids(history));
+        assertEquals(4, history.bytes());
+    }
+
+    @Test
+    public void ignoresARecordedMzxid() {
+        NodeHistory history = new NodeHistory(3, 1 << 20);
+        ChildData first = version(1, "v1");
+        history.record(first);
+        history.record(version(1, "v1 again"));
+        assertEquals(ImmutableList.of(1L), mzxids(history));
+        assertSame(first, history.find(1));
+        assertEquals(2, history.bytes());
+    }
+
+    @Test
+    public void findsVersionsByMzxid() {
+        NodeHistory history = new NodeHistory(5, 1 << 20);
+        history.record(version(10, "v10"));
+        history.record(version(20, "v20"));
+        history.record(version(30, "v30"));
+
+        assertEquals("v20", new String(history.find(20).getData(), UTF_8));
+        assertNull(history.find(15));
+        assertEquals(20, history.before(30).getStat().getMzxid());
+        assertEquals(20, history.before(25).getStat().getMzxid());
+        assertEquals(10, history.before(20).getStat().getMzxid());
+        assertNull(history.before(10));
+    }
+}
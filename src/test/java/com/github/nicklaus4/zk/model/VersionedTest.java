@@ -0,0 +1,82 @@
+package com.github.nicklaus4.zk.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * versioned test
+ *
+ * @author weishibai
+ * @date 2026/10/19 4:40 PM
+ */
+public class VersionedTest {
+
+    @Test
+    public void firstVersionIsMzxid() {
+        Versioned<String> first = Versioned.next(null, "a", 42);
+        assertEquals("a", first.getValue());
+        assertEquals(42, first.getVersion());
+    }
+
+    @Test
+    public void sameInstanceKeepsVersion() {
+        String value = "a";
+        Versioned<String> first = Versioned.next(null, value, 42);
+        // a refresh that republished the same value, even seen at a later mzxid
+        assertSame(first, Versioned.next(first, value, 50));
+    }
+
+    @Test
+    public void versionGrowsAcrossRefreshes() {
+        Versioned<String> version = Versioned.next(null, "v0", 10);
+        long[] mzxids = {11, 25, 25, 0, 3, 40};
+        for (int i = 0; i < mzxids.length; i++) {
+            Versioned<String> next = Versioned.next(version, "v" + (i + 1), mzxids[i]);
+            assertTrue(next + " after " + version, next.getVersion() > version.getVersion());
+            version = next;
+        }
+        assertEquals(40, version.getVersion());
+    }
+
+    @Test
+    public void deletionBumpsByOne() {
+        Versioned<String> present = Versioned.next(null, "a", 42);
+        // a deleted node publishes the empty object without an mzxid of its own
+        Versioned<String> deleted = Versioned.next(present, null, 0);
+        assertNull(deleted.getValue());
+        assertEquals(43, deleted.getVersion());
+        // still deleted is no change
+        assertSame(deleted, Versioned.next(deleted, null, 0));
+    }
+
+    @Test
+    public void ifChangedSince() {
+        AtomicReference<Versioned<String>> current = new AtomicReference<>(Versioned.of("a", 5));
+        VersionedResourceLoader<String> loader = new VersionedResourceLoader<String>() {
+
+            @Override
+            public Versioned<String> getVersioned() {
+                return current.get();
+            }
+
+            @Override
+            public String get() {
+                return current.get().getValue();
+            }
+        };
+
+        assertNull(loader.ifChangedSince(5));
+        assertSame(current.get(), loader.ifChangedSince(4));
+
+        current.set(Versioned.next(current.get(), "b", 9));
+        Versioned<String> changed = loader.ifChangedSince(5);
+        assertEquals("b", changed.getValue());
+        assertNull(loader.ifChangedSince(changed.getVersion()));
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.nicklaus4.zk.snapshot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * snapshot store test
+ *
+ * @author weishibai
+ * @date 2026/10/19 2:10 PM
+ */
+public class SnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void init() throws IOException {
+        directory = folder.newFolder("snapshots").toPath();
+    }
+
+    private static Stat stat(long mzxid, int version) {
+        return new Stat(mzxid - 1, mzxid, 1000L, 2000L, version, 3, 4, 0L, 5, 6, mzxid + 1);
+    }
+
+    private static void assertSameNode(ChildData expected, ChildData actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getPath(), actual.getPath());
+        assertEquals(expected.getStat(), actual.getStat());
+        assertArrayEquals(expected.getData(), actual.getData());
+    }
+
+    private Path onlyFile() throws IOException {
+        Path[] files = Files.list(directory).toArray(Path[]::new);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    @Test
+    public void nodeRoundTrip() {
+        SnapshotStore store = SnapshotStore.open(directory);
+        ChildData data = new ChildData("/config/app", stat(42, 7), "value".getBytes(UTF_8));
+        store.saveNode("app", data);
+
+        assertSameNode(data, store.loadNode("app"));
+        assertNull(store.loadNode("other"));
+    }
+
+    @Test
+    public void treeRoundTripKeepsMissingDataAndStat() {
+        SnapshotStore store = SnapshotStore.open(directory);
+        Map<String, ChildData> tree = new HashMap<>();
+        tree.put("", new ChildData("/root", stat(10, 0), "root".getBytes(UTF_8)));
+        tree.put("/a", new ChildData("/root/a", stat(11, 1), null));
+        tree.put("/a/b", new ChildData("/root/a/b", null, new byte[0]));
+        store.saveTree("tree", tree);
+
+        Map<String, ChildData> loaded = store.loadTree("tree");
+        assertNotNull(loaded);
+        assertEquals(tree.keySet(), loaded.keySet());
+        for (Map.Entry<String, ChildData> entry : tree.entrySet()) {
+            assertSameNode(entry.getValue(), loaded.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void largePayloadRoundTrip() {
+        SnapshotStore store = SnapshotStore.open(directory);
+        byte[] payload = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        ChildData data = new ChildData("/big", stat(5, 1), payload);
+        store.saveNode("big", data);
+
+        assertSameNode(data, store.loadNode("big"));
+    }
+
+    @Test
+    public void laterSaveReplaces() throws IOException {
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "old".getBytes(UTF_8)));
+        ChildData newer = new ChildData("/app", stat(2, 1), "new".getBytes(UTF_8));
+        store.saveNode("app", newer);
+
+        assertSameNode(newer, store.loadNode("app"));
+        // temp files are moved into place, none is left behind
+        onlyFile();
+    }
+
+    @Test
+    public void delete() {
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "v".getBytes(UTF_8)));
+        store.delete("app");
+        assertNull(store.loadNode("app"));
+        // deleting a missing snapshot is fine
+        store.delete("app");
+    }
+
+    @Test
+    public void longKeyIsHashedIntoShortFileName() throws IOException {
+        SnapshotStore store = SnapshotStore.open(directory);
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            path.append("/segment-").append(i);
+        }
+        String key = path.toString();
+        ChildData data = new ChildData(key, stat(3, 0), "deep".getBytes(UTF_8));
+        store.saveNode(key, data);
+
+        assertSameNode(data, store.loadNode(key));
+        assertTrue(onlyFile().getFileName().toString().length() < 255);
+        // keys sharing the kept head still get files of their own
+        String sibling = key.substring(0, key.length() - 1) + "x";
+        assertFalse(store.file(key).equals(store.file(sibling)));
+        assertNull(store.loadNode(sibling));
+    }
+
+    @Test
+    public void rejectsFlippedByte() throws IOException {
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "value".getBytes(UTF_8)));
+        Path file = onlyFile();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 12] ^= 0x01;
+        Files.write(file, bytes);
+
+        assertNull(store.loadNode("app"));
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "value".getBytes(UTF_8)));
+        Path file = onlyFile();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(store.loadNode("app"));
+
+        Files.write(file, new byte[3]);
+        assertNull(store.loadNode("app"));
+    }
+
+    @Test
+    public void rejectsOtherFormatVersion() throws IOException {
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "value".getBytes(UTF_8)));
+        Path file = onlyFile();
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        // version follows the 4 byte magic, re-sign so only the version is wrong
+        bytes.putShort(4, (short) (bytes.getShort(4) + 1));
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, bytes.capacity() - 8);
+        bytes.putLong(bytes.capacity() - 8, crc.getValue());
+        Files.write(file, bytes.array());
+
+        assertNull(store.loadNode("app"));
+    }
+
+    @Test
+    public void rejectsOtherKind() {
+        SnapshotStore store = SnapshotStore.open(directory);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "value".getBytes(UTF_8)));
+        assertNull(store.loadTree("app"));
+    }
+
+    @Test
+    public void rejectsOlderThanMaxAge() throws Exception {
+        SnapshotStore store = SnapshotStore.open(directory, 50, MILLISECONDS);
+        store.saveNode("app", new ChildData("/app", stat(1, 0), "value".getBytes(UTF_8)));
+        assertNotNull(store.loadNode("app"));
+
+        Thread.sleep(100);
+        assertNull(store.loadNode("app"));
+        // still readable without an age limit
+        assertNotNull(SnapshotStore.open(directory).loadNode("app"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.nicklaus4.zk.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Test;
+
+import com.github.nicklaus4.zk.model.StatField;
+
+/**
+ * compact tree test
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:10 PM
+ */
+public class CompactTreeTest {
+
+    /**
+     * '-' and '.' sort below '/' as chars, so plain string order would put /a-b inside the subtree of /a
+     */
+    private static final List<String> DEPTH_FIRST = Arrays.asList("/a", "/a/b", "/a/b/c", "/a-b", "/a.b", "/ab",
+            "/b", "/b/a");
+
+    private static Map<String, ChildData> tree(List<String> paths) {
+        Map<String, ChildData> tree = new HashMap<>();
+        for (String path : paths) {
+            long mzxid = 100 + DEPTH_FIRST.indexOf(path);
+            Stat stat = new Stat(1, mzxid, 0, 0, 3, 0, 0, 0, path.length(), 0, 0);
+            tree.put(path, new ChildData("/root" + path, stat, path.getBytes(UTF_8)));
+        }
+        return tree;
+    }
+
+    private static CompactTree shuffled(boolean offHeap, StatField... fields) {
+        List<String> paths = new ArrayList<>(DEPTH_FIRST);
+        Collections.shuffle(paths, new Random(3));
+        return CompactTree.of(tree(paths), offHeap, fields);
+    }
+
+    private static void assertRange(CompactTree tree, String prefix, int from, int to) {
+        assertEquals(prefix, from, tree.subtreeFrom(prefix));
+        assertEquals(prefix, to, tree.subtreeTo(prefix));
+    }
+
+    @Test
+    public void slashSortsLowest() {
+        CompactTree tree = shuffled(false);
+        assertEquals(DEPTH_FIRST, new ArrayList<>(tree.paths()));
+    }
+
+    @Test
+    public void indexOf() {
+        CompactTree tree = shuffled(false);
+        for (int i = 0; i < DEPTH_FIRST.size(); i++) {
+            String path = DEPTH_FIRST.get(i);
+            assertEquals(path, i, tree.indexOf(path));
+            assertEquals(path, i, tree.indexOf(path.substring(1)));
+        }
+        for (String absent : new String[] {"", "/", "/a/x", "/a/b/c/d", "/a/", "/aa", "/a-", "/c", "/0"}) {
+            assertEquals(absent, -1, tree.indexOf(absent));
+        }
+    }
+
+    @Test
+    public void subtree() {
+        CompactTree tree = shuffled(false);
+        assertRange(tree, "/a", 0, 3);
+        assertRange(tree, "a", 0, 3);
+        assertRange(tree, "/a/b", 1, 3);
+        assertRange(tree, "/a/b/c", 2, 3);
+        assertRange(tree, "/a-b", 3, 4);
+        assertRange(tree, "/b", 6, 8);
+        assertRange(tree, "", 0, 8);
+        assertRange(tree, "/", 0, 8);
+    }
+
+    @Test
+    public void emptySubtree() {
+        CompactTree tree = shuffled(false);
+        for (String absent : new String[] {"/a/x", "/a/b/c/d", "/aa", "/c", "/0"}) {
+            assertEquals(absent, tree.subtreeFrom(absent), tree.subtreeTo(absent));
+        }
+        // an absent node sorts where its subtree would be
+        assertEquals(3, tree.subtreeFrom("/a/x"));
+        assertEquals(8, tree.subtreeFrom("/c"));
+        assertEquals(0, tree.subtreeFrom("/0"));
+    }
+
+    @Test
+    public void cursor() {
+        CompactTree tree = shuffled(false);
+        CompactTree.Cursor cursor = tree.cursor("/a");
+        List<String> names = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        while (cursor.next()) {
+            names.add(cursor.name());
+            depths.add(cursor.depth());
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+        assertEquals(Arrays.asList(1, 2, 3), depths);
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void dataAndStats() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            CompactTree tree = shuffled(offHeap, StatField.MZXID, StatField.MZXID, StatField.VERSION);
+            for (int i = 0; i < tree.size(); i++) {
+                String path = DEPTH_FIRST.get(i);
+                assertTrue(tree.hasData(i));
+                assertArrayEquals(path.getBytes(UTF_8), tree.data(i));
+                assertEquals(path.length(), tree.dataLength(i));
+                assertEquals(3, tree.stat(i, StatField.VERSION));
+            }
+            long mzxid = tree.stat(tree.indexOf("/a/b"), StatField.MZXID);
+            assertEquals(100 + DEPTH_FIRST.indexOf("/a/b"), mzxid);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void statNotKept() {
+        shuffled(false, StatField.MZXID).stat(0, StatField.CTIME);
+    }
+
+    @Test
+    public void nodeWithoutData() {
+        Map<String, ChildData> map = new HashMap<>();
+        map.put("/empty", new ChildData("/root/empty", new Stat(), null));
+        map.put("/full", new ChildData("/root/full", new Stat(), new byte[] {1, 2}));
+        CompactTree tree = CompactTree.of(map, false);
+        int empty = tree.indexOf("/empty");
+        assertFalse(tree.hasData(empty));
+        assertEquals(0, tree.dataLength(empty));
+        assertNull(tree.data(empty));
+        assertArrayEquals(new byte[] {1, 2}, tree.data(tree.indexOf("/full")));
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.nicklaus4.zk.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * path glob test
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:15 PM
+ */
+public class PathGlobTest {
+
+    @Test
+    public void withinSegment() {
+        PathGlob glob = PathGlob.compile("/*/leaf-?");
+        assertTrue(glob.matches("/a/leaf-1"));
+        assertTrue(glob.matches("a/leaf-x"));
+        assertFalse(glob.matches("/a/leaf-12"));
+        assertFalse(glob.matches("/a/b/leaf-1"));
+        assertFalse(glob.matches("/leaf-1"));
+    }
+
+    @Test
+    public void literalsAreQuoted() {
+        PathGlob glob = PathGlob.compile("/a.b/(c)+");
+        assertTrue(glob.matches("/a.b/(c)+"));
+        assertFalse(glob.matches("/axb/(c)+"));
+        assertFalse(glob.matches("/a.b/cc"));
+    }
+
+    @Test
+    public void anySegments() {
+        PathGlob glob = PathGlob.compile("/services/**/config");
+        assertTrue(glob.matches("/services/config"));
+        assertTrue(glob.matches("/services/a/config"));
+        assertTrue(glob.matches("/services/a/b/c/config"));
+        assertFalse(glob.matches("/services/a/config/x"));
+        assertFalse(glob.matches("/other/a/config"));
+    }
+
+    @Test
+    public void backtracking() {
+        // the first "config" is consumed by ** only when the rest fails to match it
+        PathGlob glob = PathGlob.compile("/**/config/*.json");
+        assertTrue(glob.matches("/config/config/a.json"));
+        assertTrue(glob.matches("/x/config/y/config/a.json"));
+        assertFalse(glob.matches("/x/config/y/a.json"));
+
+        PathGlob twice = PathGlob.compile("/**/a/**/b");
+        assertTrue(twice.matches("/a/b"));
+        assertTrue(twice.matches("/a/a/x/b/b"));
+        assertTrue(twice.matches("/x/a/y/z/b"));
+        assertFalse(twice.matches("/b/a"));
+        assertFalse(twice.matches("/a/b/c"));
+    }
+
+    @Test
+    public void trailingAnySegments() {
+        PathGlob glob = PathGlob.compile("/a/**");
+        assertTrue(glob.matches("/a"));
+        assertTrue(glob.matches("/a/b/c"));
+        assertFalse(glob.matches("/b"));
+        assertTrue(PathGlob.compile("/**").matches("/"));
+    }
+
+    @Test
+    public void mayMatchBelow() {
+        PathGlob glob = PathGlob.compile("/services/*/config");
+        assertTrue(glob.mayMatchBelow("/"));
+        assertTrue(glob.mayMatchBelow("/services"));
+        assertTrue(glob.mayMatchBelow("/services/a"));
+        assertFalse(glob.mayMatchBelow("/services/a/config"));
+        assertFalse(glob.mayMatchBelow("/other"));
+
+        PathGlob any = PathGlob.compile("/services/**/config");
+        assertTrue(any.mayMatchBelow("/services/a/b/c"));
+        assertTrue(any.mayMatchBelow("/services/a/config"));
+        assertFalse(any.mayMatchBelow("/other/a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyGlob() {
+        PathGlob.compile("/");
+    }
+}
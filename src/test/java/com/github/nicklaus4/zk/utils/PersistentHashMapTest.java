@@ -0,0 +1,190 @@
+package com.github.nicklaus4.zk.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * persistent hash map test
+ *
+ * @author weishibai
+ * @date 2026/10/18 10:05 PM
+ */
+public class PersistentHashMapTest {
+
+    /**
+     * key with a chosen hash, to force collisions and deep branches
+     */
+    private static final class Key {
+
+        private final String name;
+
+        private final int hash;
+
+        Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void withAndWithout() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> one = empty.with("a", 1);
+        PersistentHashMap<String, Integer> two = one.with("b", 2);
+        assertEquals(0, empty.size());
+        assertEquals(1, one.size());
+        assertEquals(2, two.size());
+        assertEquals(Integer.valueOf(2), two.get("b"));
+        assertNull(one.get("b"));
+        assertSame(empty, one.without("a"));
+        assertEquals(one, two.without("b"));
+    }
+
+    @Test
+    public void unchangedVersionIsShared() {
+        Integer value = 1;
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer> empty().with("a", value);
+        assertSame(map, map.with("a", value));
+        assertSame(map, map.without("b"));
+        assertSame(map, map.without(null));
+    }
+
+    @Test
+    public void replaceKeepsSize() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer> empty().with("a", 1);
+        PersistentHashMap<String, Integer> replaced = map.with("a", 2);
+        assertEquals(1, replaced.size());
+        assertEquals(Integer.valueOf(2), replaced.get("a"));
+        assertEquals(Integer.valueOf(1), map.get("a"));
+    }
+
+    @Test
+    public void collision() {
+        // "Aa" and "BB" share a String hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer> empty()
+                .with("Aa", 1)
+                .with("BB", 2)
+                .with("AaAa", 3)
+                .with("AaBB", 4)
+                .with("BBAa", 5);
+        assertEquals(5, map.size());
+        assertEquals(Integer.valueOf(1), map.get("Aa"));
+        assertEquals(Integer.valueOf(2), map.get("BB"));
+        assertEquals(Integer.valueOf(5), map.get("BBAa"));
+        assertFalse(map.containsKey("BBBB"));
+
+        PersistentHashMap<String, Integer> replaced = map.with("BB", 20);
+        assertEquals(5, replaced.size());
+        assertEquals(Integer.valueOf(20), replaced.get("BB"));
+        assertEquals(Integer.valueOf(2), map.get("BB"));
+    }
+
+    @Test
+    public void removeFromCollision() {
+        Key a = new Key("a", 7);
+        Key b = new Key("b", 7);
+        Key c = new Key("c", 7);
+        PersistentHashMap<Key, String> map = PersistentHashMap.<Key, String> empty()
+                .with(a, "a").with(b, "b").with(c, "c");
+        assertEquals(3, map.size());
+
+        PersistentHashMap<Key, String> withoutB = map.without(b);
+        assertEquals(2, withoutB.size());
+        assertNull(withoutB.get(b));
+        assertEquals("a", withoutB.get(a));
+        assertEquals("c", withoutB.get(c));
+        assertSame(withoutB, withoutB.without(new Key("d", 7)));
+
+        // a bucket down to one entry becomes a leaf again, still found by key
+        PersistentHashMap<Key, String> onlyC = withoutB.without(a);
+        assertEquals(1, onlyC.size());
+        assertEquals("c", onlyC.get(c));
+        assertEquals(0, onlyC.without(c).size());
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void collisionBesideOtherHashes() {
+        Key a = new Key("a", 1);
+        Key b = new Key("b", 1);
+        // same low 5 bits as a and b, differs at the next level
+        Key c = new Key("c", 1 | 1 << 5);
+        // differs only in the top bits
+        Key d = new Key("d", 1 | 1 << 30);
+        PersistentHashMap<Key, String> map = PersistentHashMap.<Key, String> empty()
+                .with(a, "a").with(c, "c").with(b, "b").with(d, "d");
+        assertEquals(4, map.size());
+        for (Key key : new Key[] {a, b, c, d}) {
+            assertEquals(key.name, map.get(key));
+        }
+        PersistentHashMap<Key, String> removed = map.without(a).without(c);
+        assertEquals(2, removed.size());
+        assertEquals("b", removed.get(b));
+        assertEquals("d", removed.get(d));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(7);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map));
+        assertEquals(map, PersistentHashMap.copyOf(expected));
+    }
+
+    @Test
+    public void iteratesEveryEntryOnce() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            map = map.with("k" + i, i);
+        }
+        Map<String, Integer> seen = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertNull(seen.put(entry.getKey(), entry.getValue()));
+        }
+        assertEquals(1000, seen.size());
+        assertTrue(seen.equals(map));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void mutatorsAreNotSupported() {
+        PersistentHashMap.<String, Integer> empty().with("a", 1).put("b", 2);
+    }
+}
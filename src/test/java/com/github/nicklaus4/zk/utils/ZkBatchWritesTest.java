@@ -0,0 +1,272 @@
+package com.github.nicklaus4.zk.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.zookeeper.KeeperException.Code.BADVERSION;
+import static org.apache.zookeeper.KeeperException.Code.NONODE;
+import static org.apache.zookeeper.KeeperException.Code.OK;
+import static org.apache.zookeeper.KeeperException.Code.RUNTIMEINCONSISTENCY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.nicklaus4.zk.model.ZkWrite;
+import com.github.nicklaus4.zk.model.ZkWriteResult;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * pipelined and transactional bulk writes test
+ *
+ * @author weishibai
+ * @date 2026/10/19 10:05 AM
+ */
+public class ZkBatchWritesTest {
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    private String read(String path) throws Exception {
+        return new String(curator.getData().forPath(path), UTF_8);
+    }
+
+    private boolean exists(String path) throws Exception {
+        return curator.checkExists().forPath(path) != null;
+    }
+
+    @Test
+    public void pipelinedCreatesWithParentsAndStats() throws Exception {
+        List<ZkWrite> writes = ImmutableList.of(
+                ZkWrite.of("/pipe/a/x", bytes("x")),
+                ZkWrite.of("/pipe/a/y", bytes("y")),
+                ZkWrite.of("/pipe/b/deep/z", bytes("z")));
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZk(curator, writes, 2);
+
+        assertEquals(writes.size(), results.size());
+        for (int i = 0; i < writes.size(); i++) {
+            ZkWriteResult result = results.get(i);
+            assertEquals(writes.get(i).getPath(), result.getPath());
+            assertEquals(OK, result.getCode());
+            assertTrue(result.isCreated());
+            // the stat of the create itself
+            Stat stat = result.getStat();
+            assertNotNull(stat);
+            assertEquals(0, stat.getVersion());
+            assertEquals(curator.checkExists().forPath(result.getPath()).getMzxid(), stat.getMzxid());
+        }
+        assertEquals("x", read("/pipe/a/x"));
+        assertEquals("y", read("/pipe/a/y"));
+        assertEquals("z", read("/pipe/b/deep/z"));
+    }
+
+    @Test
+    public void pipelinedSetsExistingNodes() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/pipe/existing", bytes("v1"));
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZk(curator,
+                ImmutableList.of(ZkWrite.of("/pipe/existing", bytes("v2"))));
+
+        ZkWriteResult result = results.get(0);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isCreated());
+        assertEquals(1, result.getStat().getVersion());
+        assertEquals("v2", read("/pipe/existing"));
+    }
+
+    @Test
+    public void pipelinedVersionConflicts() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/pipe/versioned", bytes("v1"));
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZk(curator, ImmutableList.of(
+                ZkWrite.ofVersion("/pipe/versioned", bytes("stale"), 3),
+                ZkWrite.ofVersion("/pipe/missing", bytes("never"), 0)));
+
+        assertEquals(BADVERSION, results.get(0).getCode());
+        assertNull(results.get(0).getStat());
+        assertEquals(NONODE, results.get(1).getCode());
+        // a conditional write never creates
+        assertFalse(exists("/pipe/missing"));
+        assertEquals("v1", read("/pipe/versioned"));
+
+        ZkWriteResult matching = ZkNodeUtils.setAllToZk(curator,
+                ImmutableList.of(ZkWrite.ofVersion("/pipe/versioned", bytes("v2"), 0))).get(0);
+        assertEquals(OK, matching.getCode());
+        assertEquals(1, matching.getStat().getVersion());
+        assertEquals("v2", read("/pipe/versioned"));
+    }
+
+    @Test
+    public void pipelinedMixedBatchKeepsPerItemResults() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/mixed/set", bytes("old"));
+        curator.create().creatingParentsIfNeeded().forPath("/mixed/conditional", bytes("old"));
+        List<ZkWrite> writes = ImmutableList.of(
+                ZkWrite.of("/mixed/set", bytes("new")),
+                ZkWrite.of("/mixed/created", bytes("new")),
+                ZkWrite.ofVersion("/mixed/conditional", bytes("new"), 0),
+                ZkWrite.ofVersion("/mixed/set", bytes("lost"), 0),
+                ZkWrite.ofVersion("/mixed/absent", bytes("lost"), 0));
+        // one at a time so the conditional writes see the earlier ones
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZk(curator, writes, 1);
+
+        assertEquals(ImmutableList.of(OK, OK, OK, BADVERSION, NONODE), codes(results));
+        assertFalse(results.get(0).isCreated());
+        assertTrue(results.get(1).isCreated());
+        assertFalse(results.get(2).isCreated());
+        assertEquals("new", read("/mixed/set"));
+        assertEquals("new", read("/mixed/created"));
+        assertEquals("new", read("/mixed/conditional"));
+        assertFalse(exists("/mixed/absent"));
+    }
+
+    @Test
+    public void pipelinedCreateRaceFallsBackToSet() throws Exception {
+        // both writes find the node missing and race to create it, the loser sets it instead
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZk(curator, ImmutableList.of(
+                ZkWrite.of("/race/node", bytes("first")),
+                ZkWrite.of("/race/node", bytes("second"))), 2);
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertEquals(1, results.stream().filter(ZkWriteResult::isCreated).count());
+        assertEquals(1, curator.checkExists().forPath("/race/node").getVersion());
+    }
+
+    @Test
+    public void transactionsCreateParentsAndChunkByOps() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/tx/existing", bytes("old"));
+        List<ZkWrite> writes = new ArrayList<>();
+        writes.add(ZkWrite.of("/tx/existing", bytes("new")));
+        for (int i = 0; i < 7; i++) {
+            writes.add(ZkWrite.of("/tx/g" + i % 2 + "/n" + i, bytes("v" + i)));
+        }
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZkInTransactions(curator, writes, 3, 1 << 20);
+
+        for (ZkWriteResult result : results) {
+            assertEquals(result.getPath(), OK, result.getCode());
+        }
+        assertFalse(results.get(0).isCreated());
+        assertEquals(1, results.get(0).getStat().getVersion());
+        for (int i = 0; i < 7; i++) {
+            assertTrue(results.get(i + 1).isCreated());
+            assertEquals("v" + i, read("/tx/g" + i % 2 + "/n" + i));
+        }
+        assertEquals("new", read("/tx/existing"));
+    }
+
+    @Test
+    public void failedChunkRollsBackOnlyItself() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/tx/versioned", bytes("v1"));
+        // two ops per chunk: [a, b] [versioned, c] [d]
+        List<ZkWrite> writes = ImmutableList.of(
+                ZkWrite.of("/tx/a", bytes("a")),
+                ZkWrite.of("/tx/b", bytes("b")),
+                ZkWrite.ofVersion("/tx/versioned", bytes("stale"), 5),
+                ZkWrite.of("/tx/c", bytes("c")),
+                ZkWrite.of("/tx/d", bytes("d")));
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZkInTransactions(curator, writes, 2, 1 << 20);
+
+        assertEquals(ImmutableList.of(OK, OK, BADVERSION, RUNTIMEINCONSISTENCY, OK), codes(results));
+        assertTrue(exists("/tx/a"));
+        assertTrue(exists("/tx/b"));
+        assertFalse(exists("/tx/c"));
+        assertTrue(exists("/tx/d"));
+        assertEquals("v1", read("/tx/versioned"));
+    }
+
+    @Test
+    public void transactionsChunkByBytes() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/bytes/versioned", bytes("0123456789"));
+        // ten bytes each, at most twenty per chunk: [a, b] [versioned, c] [d]
+        List<ZkWrite> writes = ImmutableList.of(
+                ZkWrite.of("/bytes/a", bytes("aaaaaaaaaa")),
+                ZkWrite.of("/bytes/b", bytes("bbbbbbbbbb")),
+                ZkWrite.ofVersion("/bytes/versioned", bytes("xxxxxxxxxx"), 7),
+                ZkWrite.of("/bytes/c", bytes("cccccccccc")),
+                ZkWrite.of("/bytes/d", bytes("dddddddddd")));
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZkInTransactions(curator, writes, 100, 20);
+
+        assertEquals(ImmutableList.of(OK, OK, BADVERSION, RUNTIMEINCONSISTENCY, OK), codes(results));
+        assertArrayEquals(bytes("dddddddddd"), curator.getData().forPath("/bytes/d"));
+        assertFalse(exists("/bytes/c"));
+    }
+
+    @Test
+    public void transactionalConditionalOnMissingNode() throws Exception {
+        List<ZkWriteResult> results = ZkNodeUtils.setAllToZkInTransactions(curator, ImmutableList.of(
+                ZkWrite.ofVersion("/tx/absent", bytes("never"), 0),
+                ZkWrite.of("/tx/present", bytes("yes"))));
+
+        assertEquals(NONODE, results.get(0).getCode());
+        // skipped up front, so the rest of the chunk still commits
+        assertEquals(OK, results.get(1).getCode());
+        assertFalse(exists("/tx/absent"));
+        assertEquals("yes", read("/tx/present"));
+    }
+
+    @Test
+    public void refusedOnTheEventThread() throws Exception {
+        List<ZkWrite> writes = ImmutableList.of(ZkWrite.of("/event/node", bytes("v")));
+        assertRefusedOnEventThread(() -> ZkNodeUtils.setAllToZk(curator, writes));
+        assertRefusedOnEventThread(() -> ZkNodeUtils.setAllToZkInTransactions(curator, writes));
+        assertFalse(exists("/event/node"));
+    }
+
+    private void assertRefusedOnEventThread(Runnable write) throws Exception {
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Consumer<Throwable> record = e -> {
+            thrown.set(e);
+            done.countDown();
+        };
+        curator.checkExists().inBackground((c, event) -> {
+            try {
+                write.run();
+                record.accept(null);
+            } catch (Throwable e) {
+                record.accept(e);
+            }
+        }).forPath("/");
+        assertTrue(done.await(5, SECONDS));
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof IllegalStateException);
+    }
+
+    private static List<Object> codes(List<ZkWriteResult> results) {
+        List<Object> codes = new ArrayList<>();
+        results.forEach(result -> codes.add(result.getCode()));
+        return codes;
+    }
+}
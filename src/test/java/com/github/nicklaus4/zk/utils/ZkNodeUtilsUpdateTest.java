@@ -0,0 +1,66 @@
+package com.github.nicklaus4.zk.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * optimistic update test
+ *
+ * @author weishibai
+ * @date 2026/10/19 11:10 AM
+ */
+public class ZkNodeUtilsUpdateTest {
+
+    private TestingServer server;
+
+    private CuratorFramework curator;
+
+    @Before
+    public void init() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryNTimes(3, 1000));
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        curator.close();
+        server.close();
+    }
+
+    @Test
+    public void createsMissingNodeWithItsStat() throws Exception {
+        Stat created = ZkNodeUtils.update(curator, "/update/counter", current -> {
+            assertNull(current);
+            return "1".getBytes(UTF_8);
+        });
+
+        Stat stored = curator.checkExists().forPath("/update/counter");
+        assertEquals(0, created.getVersion());
+        assertEquals(stored.getMzxid(), created.getMzxid());
+    }
+
+    @Test
+    public void updatesFromTheCurrentData() throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath("/update/counter", "1".getBytes(UTF_8));
+        Stat updated = ZkNodeUtils.update(curator, "/update/counter",
+                current -> String.valueOf(Integer.parseInt(new String(current, UTF_8)) + 1).getBytes(UTF_8));
+
+        assertEquals(1, updated.getVersion());
+        assertEquals("2", new String(curator.getData().forPath("/update/counter"), UTF_8));
+        // null leaves the node as is
+        Stat kept = ZkNodeUtils.update(curator, "/update/counter", current -> null);
+        assertEquals(1, kept.getVersion());
+    }
+}
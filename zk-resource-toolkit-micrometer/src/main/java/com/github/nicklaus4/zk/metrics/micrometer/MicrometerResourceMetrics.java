@@ -0,0 +1,156 @@
+package com.github.nicklaus4.zk.metrics.micrometer;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.github.nicklaus4.zk.metrics.ZkResourceMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * reports to a micrometer registry, meters are tagged by resource and registered on first use.
+ *
+ * <pre>
+ * ZkResourceMetrics.setDefault(new MicrometerResourceMetrics(registry));
+ * </pre>
+ *
+ * @author weishibai
+ * @date 2026/10/17 3:40 PM
+ */
+public class MicrometerResourceMetrics implements ZkResourceMetrics {
+
+    private static final String RESOURCE = "resource";
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentMap<String, ResourceMeters> resources = new ConcurrentHashMap<>();
+
+    public MicrometerResourceMetrics(@Nonnull MeterRegistry registry) {
+        this.registry = requireNonNull(registry);
+    }
+
+    @Override
+    public void onGet(String resource) {
+        meters(resource).gets.increment();
+    }
+
+    @Override
+    public void onFirstValue(String resource, long nanos) {
+        meters(resource).firstValue.record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void onFactory(String resource, long nanos, boolean success) {
+        ResourceMeters meters = meters(resource);
+        (success ? meters.factorySuccess : meters.factoryFailure).record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void onEventReceived(String resource) {
+        meters(resource).eventsReceived.increment();
+    }
+
+    @Override
+    public void onEventApplied(String resource) {
+        meters(resource).eventsApplied.increment();
+    }
+
+    @Override
+    public void onVersion(String resource, long mzxid) {
+        meters(resource).version.set(mzxid);
+    }
+
+    @Override
+    public void onCleanupQueued(String resource, long nanos) {
+        meters(resource).cleanupQueued.record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void onClientCreated(String connectString, @Nullable String namespace) {
+        registry.counter("zk.client.created", "connect", connectString, "namespace", nullToEmpty(namespace))
+                .increment();
+    }
+
+    @Override
+    public void onClientStateChanged(String connectString, @Nullable String namespace, String state) {
+        registry.counter("zk.client.state", "connect", connectString, "namespace", nullToEmpty(namespace),
+                "state", state).increment();
+    }
+
+    private ResourceMeters meters(String resource) {
+        // get first, computeIfAbsent would allocate the lambda on every call
+        ResourceMeters meters = resources.get(resource);
+        if (meters == null) {
+            meters = resources.computeIfAbsent(resource, r -> new ResourceMeters(registry, r));
+        }
+        return meters;
+    }
+
+    private static String nullToEmpty(@Nullable String value) {
+        return value == null ? "" : value;
+    }
+
+    private static final class ResourceMeters {
+
+        private final Counter gets;
+
+        private final Timer firstValue;
+
+        private final Timer factorySuccess;
+
+        private final Timer factoryFailure;
+
+        private final Counter eventsReceived;
+
+        private final Counter eventsApplied;
+
+        private final AtomicLong version = new AtomicLong();
+
+        private final Timer cleanupQueued;
+
+        ResourceMeters(MeterRegistry registry, String resource) {
+            this.gets = Counter.builder("zk.resource.get")
+                    .tag(RESOURCE, resource)
+                    .register(registry);
+            this.firstValue = Timer.builder("zk.resource.first.value")
+                    .description("from creation to the first published value")
+                    .tag(RESOURCE, resource)
+                    .register(registry);
+            this.factorySuccess = factoryTimer(registry, resource, "success");
+            this.factoryFailure = factoryTimer(registry, resource, "failure");
+            this.eventsReceived = Counter.builder("zk.resource.events")
+                    .tag(RESOURCE, resource)
+                    .tag("stage", "received")
+                    .register(registry);
+            this.eventsApplied = Counter.builder("zk.resource.events")
+                    .tag(RESOURCE, resource)
+                    .tag("stage", "applied")
+                    .register(registry);
+            Gauge.builder("zk.resource.version", version, AtomicLong::get)
+                    .description("mzxid the published value was built from")
+                    .tag(RESOURCE, resource)
+                    .register(registry);
+            this.cleanupQueued = Timer.builder("zk.resource.cleanup.queued")
+                    .tag(RESOURCE, resource)
+                    .register(registry);
+        }
+
+        private static Timer factoryTimer(MeterRegistry registry, String resource, String result) {
+            return Timer.builder("zk.resource.factory")
+                    .tag(RESOURCE, resource)
+                    .tag("result", result)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}